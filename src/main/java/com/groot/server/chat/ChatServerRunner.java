@@ -1,10 +1,18 @@
 package com.groot.server.chat;
 
 import com.groot.server.chat.config.DataStoreConfig;
+import com.groot.server.chat.config.NamePartitionerConfig;
+import com.groot.server.chat.config.ServerConfig;
+import com.groot.server.chat.connection.PeerConnectionPool;
+import com.groot.server.chat.constants.ClientIoMode;
 import com.groot.server.chat.database.ChatServer;
 import com.groot.server.chat.database.DataStore;
+import com.groot.server.chat.database.IdentityRegistry;
+import com.groot.server.chat.database.RegistryLog;
+import com.groot.server.chat.handler.ClientReactor;
 import com.groot.server.chat.handler.ClientServerHandler;
 import com.groot.server.chat.handler.ServerServerHandler;
+import com.groot.server.chat.repository.ClientRepository;
 import com.groot.server.chat.service.*;
 import com.groot.server.chat.util.*;
 import org.kohsuke.args4j.CmdLineParser;
@@ -12,8 +20,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.*;
 
 /**
@@ -37,6 +48,7 @@ public class ChatServerRunner {
             String serverId = reader.getServerId();
             String serversConfiguration = reader.getServersConfiguration();
             List<ChatServer> availableServers = ConfigFileReader.read(serversConfiguration);
+            initializeServerConfig(reader);
             initializeDataStore(availableServers, serverId);
             DataStore store = DataStoreConfig.getInstance();
 
@@ -44,15 +56,29 @@ public class ChatServerRunner {
                 ChatServer current = store.getCurrent();
                 LOGGER.info("Server {} started on {} with clients port: {} and coordination port {} ... ",
                         current.getServerId(), current.getServerAddress(), current.getClientsPort(), current.getCoordinationPort());
+                ServerConfig config = ServerConfig.getInstance();
+                if (Objects.nonNull(config.getDataDirectory())) {
+                    RegistryLog.open(config.getDataDirectory(), store, config.getSyncBudget());
+                    ServerMetrics.markSinceStart("startup.registry.restored.ms");
+                }
                 chatRoomService.createMainHallChatRoom();
+                NamePartitionerConfig.getInstance();
 
-                // A process Pi recovers from failure
-                electionService.recoverFromFailure();
-                startClientServerCommunication(current.getClientsPort());
+                // the clients are accepted right away, the ones asking for an identity wait until the recovery completes
+                if (config.getClientIoMode() == ClientIoMode.REACTOR) {
+                    startClientReactors(current.getClientsPort());
+                } else {
+                    startClientServerCommunication(current.getClientsPort());
+                }
+                ServerMetrics.markSinceStart("startup.client.port.ms");
                 startServerServerCommunication(current.getCoordinationPort());
 
-                // start heart beating
                 new Thread(() -> {
+                    // A process Pi recovers from failure
+                    electionService.recoverFromFailure();
+                    store.markRecovered();
+                    ServerMetrics.markSinceStart("startup.recovered.ms");
+                    // start heart beating
                     while (true) {
                         try {
                             heartBeatService.start();
@@ -62,12 +88,61 @@ public class ChatServerRunner {
                         }
                     }
                 }).start();
+                startMetricsReporting();
             }
         } catch (Exception e) {
             LOGGER.error("Server starting error ... {}", e.getMessage(), e);
         }
     }
 
+    private static void initializeServerConfig(CmdLineReader reader) {
+        ServerConfig config = ServerConfig.getInstance();
+        config.setClientIoMode(reader.getClientIoMode());
+        config.setReactorThreads(reader.getReactorThreads());
+        config.setThreadMode(reader.getThreadMode());
+        config.setOutboundQueueCapacity(reader.getOutboundQueueCapacity());
+        config.setSlowConsumerPolicy(reader.getSlowConsumerPolicy());
+        config.setFlushMode(reader.getFlushMode());
+        config.setCoalesceWindow(reader.getCoalesceWindow());
+        config.setPeerWireFormat(reader.getPeerWireFormat());
+        config.setRoomExecutionMode(reader.getRoomExecutionMode());
+        config.setDataDirectory(reader.getDataDirectory());
+        config.setSyncBudget(reader.getSyncBudget());
+        config.setNameRegistryMode(reader.getNameRegistryMode());
+        config.setBatchWindow(reader.getBatchWindow());
+        config.setPendingTimeout(reader.getPendingTimeout());
+    }
+
+    private static void startMetricsReporting() {
+        ClientRepository clientRepository = new ClientRepository();
+        ServerMetrics.registerGauge("client.outbound.queued", clientRepository::getQueuedMessagesByClient);
+        ServerMetrics.registerGauge("client.outbound.queued.max", () -> clientRepository.getQueuedMessagesByClient()
+                .values().stream().mapToInt(Integer::intValue).max().orElse(0));
+        ServerMetrics.registerGauge("peer.requests.pending", PeerConnectionPool.getInstance()::getPendingRequestsByServer);
+        ServerMetrics.registerGauge("registry.pending.clients", DataStoreConfig.getInstance()::getPendingClientsCount);
+        ServerMetrics.registerGauge("registry.pending.rooms", DataStoreConfig.getInstance()::getPendingChatRoomsCount);
+        ServerMetrics.registerGauge("timing.wheel.pending", TimingWheel.getInstance()::getPending);
+        IdentityRegistry globalClients = DataStoreConfig.getInstance().getGlobalClientRegistry();
+        ServerMetrics.registerGauge("registry.global.clients", globalClients::size);
+        ServerMetrics.registerGauge("registry.global.clients.bytes", globalClients::getFootprint);
+        ServerMetrics.registerGauge("registry.global.clients.bytes.per.million", () -> {
+            int size = globalClients.size();
+            return size == 0 ? 0 : globalClients.getFootprint() * 1000000 / size;
+        });
+        // a stopped server reports what it counted since the last report
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> LOGGER.info("Server metrics ... {}", ServerMetrics.snapshot())));
+        new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(60 * 1000);
+                    LOGGER.info("Server metrics ... {}", ServerMetrics.snapshot());
+                } catch (Exception e) {
+                    LOGGER.error("An error occurred while reporting metrics ... {}", e.getMessage(), e);
+                }
+            }
+        }).start();
+    }
+
     private static void initializeDataStore(List<ChatServer> servers, String serverId) {
         DataStore store = DataStoreConfig.getInstance();
         for (ChatServer server : servers) {
@@ -84,13 +159,37 @@ public class ChatServerRunner {
         ServerSocket serverSocket = new ServerSocket(port);
         new Thread(() -> {
             Socket socket;
-            ClientServerHandler clientServerHandler;
             while (true) {
                 try {
                     socket = serverSocket.accept();
                     LOGGER.info("New client connected ...");
-                    clientServerHandler = new ClientServerHandler(socket);
-                    clientServerHandler.start();
+                    TaskExecutor.execute(new ClientServerHandler(socket));
+                } catch (Exception e) {
+                    LOGGER.error("New client connection error ... {}", e.getMessage(), e);
+                }
+            }
+        }).start();
+    }
+
+    private static void startClientReactors(int port) throws IOException {
+        int reactorThreads = ServerConfig.getInstance().getReactorThreads();
+        ClientReactor[] reactors = new ClientReactor[reactorThreads];
+        for (int i = 0; i < reactorThreads; i++) {
+            reactors[i] = new ClientReactor("client-reactor-" + i);
+            reactors[i].start();
+        }
+        LOGGER.info("Started {} client reactor(s) ...", reactorThreads);
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        new Thread(() -> {
+            SocketChannel channel;
+            int next = 0;
+            while (true) {
+                try {
+                    channel = serverChannel.accept();
+                    LOGGER.info("New client connected ...");
+                    reactors[next].register(channel);
+                    next = (next + 1) % reactorThreads;
                 } catch (Exception e) {
                     LOGGER.error("New client connection error ... {}", e.getMessage(), e);
                 }
@@ -102,13 +201,11 @@ public class ChatServerRunner {
         ServerSocket serverSocket = new ServerSocket(port);
         new Thread(() -> {
             Socket socket;
-            ServerServerHandler serverServerHandler;
             while (true) {
                 try {
                     socket = serverSocket.accept();
                     LOGGER.info("New server request received ...");
-                    serverServerHandler = new ServerServerHandler(socket);
-                    serverServerHandler.start();
+                    TaskExecutor.execute(new ServerServerHandler(socket));
                 } catch (Exception e) {
                     LOGGER.error("New server connection error ... {}", e.getMessage(), e);
                 }
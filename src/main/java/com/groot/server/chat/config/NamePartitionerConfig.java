@@ -0,0 +1,39 @@
+package com.groot.server.chat.config;
+
+import com.groot.server.chat.service.ConsistentHashNamePartitioner;
+import com.groot.server.chat.service.LeaderNamePartitioner;
+import com.groot.server.chat.service.LeasedNamePartitioner;
+import com.groot.server.chat.service.NamePartitioner;
+
+import java.util.Objects;
+
+/**
+ * Partitioner of the names selected by the configured name registry mode.
+ */
+public class NamePartitionerConfig {
+    private static NamePartitioner partitioner;
+
+    private NamePartitionerConfig() {
+    }
+
+    public static NamePartitioner getInstance() {
+        if (Objects.isNull(partitioner)) {
+            synchronized (NamePartitionerConfig.class) {
+                if (Objects.isNull(partitioner)) {
+                    switch (ServerConfig.getInstance().getNameRegistryMode()) {
+                        case LEASED:
+                            partitioner = new LeasedNamePartitioner();
+                            break;
+                        case CONSISTENT_HASH:
+                            partitioner = new ConsistentHashNamePartitioner();
+                            break;
+                        default:
+                            partitioner = new LeaderNamePartitioner();
+                            break;
+                    }
+                }
+            }
+        }
+        return partitioner;
+    }
+}
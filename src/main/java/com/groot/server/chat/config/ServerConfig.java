@@ -0,0 +1,159 @@
+package com.groot.server.chat.config;
+
+import com.groot.server.chat.constants.ClientIoMode;
+import com.groot.server.chat.constants.FlushMode;
+import com.groot.server.chat.constants.NameRegistryMode;
+import com.groot.server.chat.constants.RoomExecutionMode;
+import com.groot.server.chat.constants.SlowConsumerPolicy;
+import com.groot.server.chat.constants.ThreadMode;
+import com.groot.server.chat.constants.WireFormat;
+
+import java.util.Objects;
+
+/**
+ * Runtime options of the current server loaded from the command line.
+ */
+public class ServerConfig {
+    private static ServerConfig config;
+    private ClientIoMode clientIoMode = ClientIoMode.BLOCKING;
+    private int reactorThreads = 2;
+    private ThreadMode threadMode = ThreadMode.PLATFORM;
+    private int outboundQueueCapacity = 1024;
+    private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.DISCONNECT;
+    private FlushMode flushMode = FlushMode.COALESCE;
+    private int coalesceWindow = 0;
+    private WireFormat peerWireFormat = WireFormat.BINARY;
+    private RoomExecutionMode roomExecutionMode = RoomExecutionMode.CALLER;
+    // the global clients and chat rooms are kept in memory only without a data directory
+    private String dataDirectory;
+    private int syncBudget = 5;
+    private NameRegistryMode nameRegistryMode = NameRegistryMode.LEADER;
+    private int batchWindow = 0;
+    private int pendingTimeout = 30000;
+
+    private ServerConfig() {
+    }
+
+    public static ServerConfig getInstance() {
+        if (Objects.isNull(config)) {
+            synchronized (ServerConfig.class) {
+                if (Objects.isNull(config)) {
+                    config = new ServerConfig();
+                }
+            }
+        }
+        return config;
+    }
+
+    public ClientIoMode getClientIoMode() {
+        return clientIoMode;
+    }
+
+    public void setClientIoMode(ClientIoMode clientIoMode) {
+        this.clientIoMode = clientIoMode;
+    }
+
+    public int getReactorThreads() {
+        return reactorThreads;
+    }
+
+    public void setReactorThreads(int reactorThreads) {
+        this.reactorThreads = Math.max(1, reactorThreads);
+    }
+
+    public ThreadMode getThreadMode() {
+        return threadMode;
+    }
+
+    public void setThreadMode(ThreadMode threadMode) {
+        this.threadMode = threadMode;
+    }
+
+    public int getOutboundQueueCapacity() {
+        return outboundQueueCapacity;
+    }
+
+    public void setOutboundQueueCapacity(int outboundQueueCapacity) {
+        this.outboundQueueCapacity = Math.max(1, outboundQueueCapacity);
+    }
+
+    public SlowConsumerPolicy getSlowConsumerPolicy() {
+        return slowConsumerPolicy;
+    }
+
+    public void setSlowConsumerPolicy(SlowConsumerPolicy slowConsumerPolicy) {
+        this.slowConsumerPolicy = slowConsumerPolicy;
+    }
+
+    public FlushMode getFlushMode() {
+        return flushMode;
+    }
+
+    public void setFlushMode(FlushMode flushMode) {
+        this.flushMode = flushMode;
+    }
+
+    public int getCoalesceWindow() {
+        return coalesceWindow;
+    }
+
+    public void setCoalesceWindow(int coalesceWindow) {
+        this.coalesceWindow = Math.max(0, coalesceWindow);
+    }
+
+    public WireFormat getPeerWireFormat() {
+        return peerWireFormat;
+    }
+
+    public void setPeerWireFormat(WireFormat peerWireFormat) {
+        this.peerWireFormat = peerWireFormat;
+    }
+
+    public RoomExecutionMode getRoomExecutionMode() {
+        return roomExecutionMode;
+    }
+
+    public void setRoomExecutionMode(RoomExecutionMode roomExecutionMode) {
+        this.roomExecutionMode = roomExecutionMode;
+    }
+
+    public String getDataDirectory() {
+        return dataDirectory;
+    }
+
+    public void setDataDirectory(String dataDirectory) {
+        this.dataDirectory = dataDirectory;
+    }
+
+    public int getSyncBudget() {
+        return syncBudget;
+    }
+
+    public void setSyncBudget(int syncBudget) {
+        this.syncBudget = Math.max(0, syncBudget);
+    }
+
+    public NameRegistryMode getNameRegistryMode() {
+        return nameRegistryMode;
+    }
+
+    public void setNameRegistryMode(NameRegistryMode nameRegistryMode) {
+        this.nameRegistryMode = nameRegistryMode;
+    }
+
+    public int getBatchWindow() {
+        return batchWindow;
+    }
+
+    public void setBatchWindow(int batchWindow) {
+        this.batchWindow = Math.max(0, batchWindow);
+    }
+
+    public int getPendingTimeout() {
+        return pendingTimeout;
+    }
+
+    public void setPendingTimeout(int pendingTimeout) {
+        this.pendingTimeout = Math.max(1, pendingTimeout);
+    }
+}
@@ -0,0 +1,218 @@
+package com.groot.server.chat.connection;
+
+import com.groot.server.chat.config.ServerConfig;
+import com.groot.server.chat.constants.FlushMode;
+import com.groot.server.chat.database.ChatClient;
+import com.groot.server.chat.util.EncodedMessage;
+import com.groot.server.chat.util.FrameDecoder;
+import com.groot.server.chat.util.ServerMetrics;
+import com.groot.server.chat.util.TaskExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.function.Consumer;
+
+/**
+ * Client connection multiplexed on a reactor selector over a non-blocking socket channel.
+ * Newline delimited requests are queued until a worker takes them, and responses that cannot be
+ * written straight away are kept in the outbound queue until the reactor reports the channel as writable.
+ * In COALESCE flush mode the pending responses are sent with one gathering write.
+ */
+public class ChannelClientConnection implements ClientConnection {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChannelClientConnection.class);
+    private final SocketChannel channel;
+    private final Selector selector;
+    private final SelectionKey key;
+    private final Consumer<ChannelClientConnection> onFailure;
+    private static final int MAX_BATCH = 64;
+    private final OutboundQueue<ByteBuffer> outbound;
+    private final int batchSize;
+    private final int coalesceWindow;
+    private final FrameDecoder decoder = new FrameDecoder();
+    private final Queue<byte[]> frames = new ArrayDeque<>();
+    private volatile boolean closing;
+    private volatile ChatClient client;
+    private boolean processing;
+    private boolean endOfStream;
+
+    public ChannelClientConnection(SocketChannel channel, Selector selector,
+                                   Consumer<ChannelClientConnection> onFailure) throws IOException {
+        ServerConfig config = ServerConfig.getInstance();
+        this.channel = channel;
+        this.selector = selector;
+        this.onFailure = onFailure;
+        this.outbound = new OutboundQueue<>(config.getOutboundQueueCapacity(), config.getSlowConsumerPolicy());
+        this.batchSize = config.getFlushMode() == FlushMode.COALESCE ? MAX_BATCH : 1;
+        this.coalesceWindow = config.getFlushMode() == FlushMode.COALESCE ? config.getCoalesceWindow() : 0;
+        channel.configureBlocking(false);
+        this.key = channel.register(selector, SelectionKey.OP_READ, this);
+    }
+
+    /**
+     * Reads the available bytes from the channel and queues the completed frames.
+     *
+     * @return true if a worker should be scheduled to process the queued frames
+     */
+    public boolean read(ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        if (channel.read(buffer) < 0) {
+            LOGGER.error("Unable to communicate with the client ... end of stream");
+            endOfStream();
+            return false;
+        }
+        buffer.flip();
+        synchronized (frames) {
+            int queued = frames.size();
+            decoder.decode(buffer, (frame, length) -> frames.add(Arrays.copyOf(frame, length)));
+            if (processing || frames.size() == queued) {
+                return false;
+            }
+            processing = true;
+            return true;
+        }
+    }
+
+    /**
+     * @return the next queued frame or null once the queue is drained, which releases the worker
+     */
+    public byte[] nextFrame() {
+        synchronized (frames) {
+            byte[] frame = frames.poll();
+            if (frame == null) {
+                processing = false;
+                if (endOfStream) {
+                    close();
+                }
+            }
+            return frame;
+        }
+    }
+
+    /**
+     * Marks that the client closed its side, the connection is closed once the queued frames are processed.
+     */
+    private void endOfStream() {
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        synchronized (frames) {
+            endOfStream = true;
+            if (!processing) {
+                close();
+            }
+        }
+    }
+
+    @Override
+    public void send(EncodedMessage message) throws IOException {
+        if (closing || !channel.isOpen()) {
+            throw new ClosedChannelException();
+        }
+        switch (outbound.offer(message.asByteBuffer())) {
+            case FIRST:
+                if (coalesceWindow > 0) {
+                    TaskExecutor.schedule(this::delayedFlush, coalesceWindow);
+                } else {
+                    flush();
+                }
+                break;
+            case DROPPED:
+                ServerMetrics.increment("client.outbound.dropped");
+                break;
+            case OVERFLOW:
+                ServerMetrics.increment("client.outbound.disconnected");
+                LOGGER.error("Disconnecting the client since the outbound queue is full ...");
+                onFailure.accept(this);
+                throw new ClosedChannelException();
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Writes the queued responses until the channel stops accepting bytes, in which case the rest is
+     * written by the reactor once the channel becomes writable.
+     */
+    public synchronized void flush() throws IOException {
+        List<ByteBuffer> batch;
+        while (!(batch = outbound.take(batchSize)).isEmpty()) {
+            ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+            channel.write(buffers);
+            int written = 0;
+            while (written < buffers.length && !buffers[written].hasRemaining()) {
+                written++;
+            }
+            ServerMetrics.increment("client.outbound.writes");
+            ServerMetrics.add("client.outbound.messages", written);
+            outbound.remove(written);
+            if (written < buffers.length) {
+                if (key.isValid() && (key.interestOps() & SelectionKey.OP_WRITE) == 0) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    selector.wakeup();
+                }
+                return;
+            }
+        }
+        if (closing) {
+            closeNow();
+        } else if (key.isValid()) {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void delayedFlush() {
+        try {
+            flush();
+        } catch (IOException e) {
+            LOGGER.error("Client writing error ... {}", e.getMessage());
+            onFailure.accept(this);
+        }
+    }
+
+    @Override
+    public void close() {
+        closing = true;
+        if (outbound.isEmpty()) {
+            closeNow();
+        }
+    }
+
+    public void closeNow() {
+        closing = true;
+        outbound.clear();
+        try {
+            key.cancel();
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.error("Client channel closing error ... {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closing && channel.isOpen();
+    }
+
+    @Override
+    public int getQueuedMessages() {
+        return outbound.size();
+    }
+
+    @Override
+    public ChatClient getClient() {
+        return client;
+    }
+
+    @Override
+    public void setClient(ChatClient client) {
+        this.client = client;
+    }
+}
@@ -0,0 +1,30 @@
+package com.groot.server.chat.connection;
+
+import com.groot.server.chat.database.ChatClient;
+import com.groot.server.chat.util.EncodedMessage;
+import org.json.simple.JSONObject;
+
+import java.io.IOException;
+
+/**
+ * A connection from a chat client to the clients port of the current server.
+ * Messages are queued by send and written asynchronously in order, close waits until the queued
+ * messages are written. The connection is bound to its chat client once the identity is accepted, so
+ * a request finds its client without searching the data store.
+ */
+public interface ClientConnection {
+    void send(EncodedMessage message) throws IOException;
+    void close();
+    boolean isOpen();
+    int getQueuedMessages();
+
+    /**
+     * @return the client bound to this connection or null before the identity is accepted
+     */
+    ChatClient getClient();
+    void setClient(ChatClient client);
+
+    default void send(JSONObject message) throws IOException {
+        send(EncodedMessage.of(message));
+    }
+}
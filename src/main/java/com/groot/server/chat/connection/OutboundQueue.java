@@ -0,0 +1,111 @@
+package com.groot.server.chat.connection;
+
+import com.groot.server.chat.constants.SlowConsumerPolicy;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Bounded queue of the messages waiting to be written to a client.
+ * The messages taken by the writer, or at least the head of a non empty queue, are treated as being
+ * written, they are only removed by the writer once fully sent and are never dropped by the slow
+ * consumer policy.
+ */
+public class OutboundQueue<T> {
+    public enum Offer {
+        // queued into an empty queue, the caller has to start writing
+        FIRST,
+        // queued behind the messages already being written
+        QUEUED,
+        // a message was discarded by the slow consumer policy
+        DROPPED,
+        // the queue is full and the client has to be disconnected
+        OVERFLOW
+    }
+
+    private final ArrayDeque<T> queue = new ArrayDeque<>();
+    private final int capacity;
+    private final SlowConsumerPolicy policy;
+    private int writing;
+
+    public OutboundQueue(int capacity, SlowConsumerPolicy policy) {
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    public synchronized Offer offer(T message) {
+        if (queue.size() < capacity) {
+            queue.add(message);
+            return queue.size() == 1 ? Offer.FIRST : Offer.QUEUED;
+        }
+        switch (policy) {
+            case DROP_OLDEST:
+                int inFlight = Math.max(1, writing);
+                // when every queued message is being written the new one is dropped instead
+                if (queue.size() > inFlight) {
+                    Iterator<T> iterator = queue.iterator();
+                    for (int i = 0; i <= inFlight; i++) {
+                        iterator.next();
+                    }
+                    iterator.remove();
+                    queue.add(message);
+                }
+                return Offer.DROPPED;
+            case DROP_NEWEST:
+                return Offer.DROPPED;
+            default:
+                return Offer.OVERFLOW;
+        }
+    }
+
+    /**
+     * Takes up to the given number of messages from the head of the queue to be written together.
+     * The messages stay queued until they are removed.
+     */
+    public synchronized List<T> take(int max) {
+        List<T> batch = new ArrayList<>(Math.min(max, queue.size()));
+        Iterator<T> iterator = queue.iterator();
+        while (batch.size() < max && iterator.hasNext()) {
+            batch.add(iterator.next());
+        }
+        writing = batch.size();
+        return batch;
+    }
+
+    /**
+     * Removes the written head of the queue.
+     *
+     * @return true if more messages are waiting to be written
+     */
+    public synchronized boolean remove() {
+        return remove(1);
+    }
+
+    /**
+     * Removes the given number of written messages from the head of the queue.
+     *
+     * @return true if more messages are waiting to be written
+     */
+    public synchronized boolean remove(int count) {
+        for (int i = 0; i < count; i++) {
+            queue.poll();
+        }
+        writing = Math.max(0, writing - count);
+        return !queue.isEmpty();
+    }
+
+    public synchronized boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    public synchronized int size() {
+        return queue.size();
+    }
+
+    public synchronized void clear() {
+        queue.clear();
+        writing = 0;
+    }
+}
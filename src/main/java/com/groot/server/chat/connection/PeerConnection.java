@@ -0,0 +1,174 @@
+package com.groot.server.chat.connection;
+
+import com.groot.server.chat.constants.MessageType;
+import com.groot.server.chat.constants.WireFormat;
+import com.groot.server.chat.database.ChatServer;
+import com.groot.server.chat.util.MessageGenerator;
+import com.groot.server.chat.util.TaskExecutor;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-lived connection to the coordination port of a neighbour server, shared by all the callers.
+ * Every request is tagged with a correlation ID which the neighbour copies into its response, so many
+ * requests can be in flight at once. A reader task completes the pending request of each response.
+ * When the binary wire format is offered, the neighbour chooses the format of the connection in a hello
+ * handshake before the first request.
+ */
+public class PeerConnection {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PeerConnection.class);
+    private final String serverId;
+    private final Socket socket;
+    private final PeerStream stream;
+    private final AtomicLong correlationIds = new AtomicLong();
+    private final Map<Long, CompletableFuture<JSONObject>> pending = new ConcurrentHashMap<>();
+    private volatile boolean open = true;
+
+    /**
+     * @throws ProtocolException if the neighbour closed the connection during the handshake, which older
+     *                           servers do since they only understand JSON
+     */
+    PeerConnection(ChatServer server, int connectTimeout, WireFormat offered) throws IOException {
+        this.serverId = server.getServerId();
+        this.socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(server.getServerAddress(), server.getCoordinationPort()), connectTimeout);
+            this.stream = new PeerStream(socket);
+            if (offered == WireFormat.BINARY) {
+                handshake(connectTimeout);
+            }
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        TaskExecutor.execute(this::readResponses);
+    }
+
+    private void handshake(int timeout) throws IOException {
+        stream.send(MessageGenerator.helloMessage(Arrays.asList(WireFormat.BINARY.name(), WireFormat.JSON.name())));
+        socket.setSoTimeout(timeout);
+        JSONObject hello;
+        try {
+            hello = stream.readHandshake();
+        } catch (ParseException e) {
+            throw new ProtocolException("Invalid handshake from server " + serverId);
+        }
+        if (Objects.isNull(hello) || !"hello".equals(hello.get("type"))) {
+            throw new ProtocolException("Server " + serverId + " does not support the handshake");
+        }
+        stream.setFormat(WireFormat.valueOf(hello.get("format").toString()));
+        socket.setSoTimeout(0);
+    }
+
+    /**
+     * Sends a message which is not answered by the neighbour.
+     */
+    public void send(JSONObject message) throws IOException {
+        stream.send(message);
+    }
+
+    /**
+     * Sends a request tagged with a new correlation ID.
+     *
+     * @return the response of the neighbour, completed exceptionally if the connection fails first
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<JSONObject> request(JSONObject message) {
+        long correlationId = correlationIds.incrementAndGet();
+        CompletableFuture<JSONObject> response = new CompletableFuture<>();
+        pending.put(correlationId, response);
+        JSONObject request = new JSONObject(message);
+        request.put("cid", correlationId);
+        try {
+            if (!open) {
+                throw new SocketException("Connection to server " + serverId + " is closed");
+            }
+            send(request);
+        } catch (IOException e) {
+            pending.remove(correlationId);
+            response.completeExceptionally(e);
+        }
+        return response;
+    }
+
+    /**
+     * Forgets a request whose response is no longer awaited, a late response is then discarded.
+     */
+    public void cancel(CompletableFuture<JSONObject> response) {
+        pending.values().remove(response);
+    }
+
+    private void readResponses() {
+        IOException failure;
+        try {
+            JSONObject response;
+            while (Objects.nonNull(response = stream.next())) {
+                Object correlationId = response.remove("cid");
+                CompletableFuture<JSONObject> request = Objects.isNull(correlationId) ? null
+                        : pending.remove(((Number) correlationId).longValue());
+                if (Objects.nonNull(request) && MessageType.get(String.valueOf(response.get("type"))) == MessageType.ERROR) {
+                    request.completeExceptionally(new ProtocolException("Server " + serverId + " cannot handle a "
+                            + response.get("request") + " request"));
+                } else if (Objects.nonNull(request)) {
+                    request.complete(response);
+                } else {
+                    LOGGER.error("Discarding unexpected response from server {} ... {}", serverId, response);
+                }
+            }
+            failure = new EOFException("Connection closed by server " + serverId);
+        } catch (Exception e) {
+            failure = e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+        }
+        if (open) {
+            LOGGER.error("Connection with server {} failed ... {}", serverId, failure.getMessage());
+        }
+        close();
+        for (Long correlationId : pending.keySet()) {
+            CompletableFuture<JSONObject> request = pending.remove(correlationId);
+            if (Objects.nonNull(request)) {
+                request.completeExceptionally(failure);
+            }
+        }
+    }
+
+    public String getServerId() {
+        return serverId;
+    }
+
+    public WireFormat getWireFormat() {
+        return stream.getFormat();
+    }
+
+    public int getPendingRequests() {
+        return pending.size();
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public void close() {
+        open = false;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            LOGGER.error("Server socket closing error ... {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.groot.server.chat.connection;
+
+import com.groot.server.chat.config.ServerConfig;
+import com.groot.server.chat.constants.WireFormat;
+import com.groot.server.chat.database.ChatServer;
+import com.groot.server.chat.util.ServerMetrics;
+import com.groot.server.chat.util.TaskExecutor;
+import com.groot.server.chat.util.TimingWheel;
+import org.json.simple.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Pool of the connections to the coordination ports of the neighbour servers, keyed by the server ID.
+ * Each neighbour is reached through one multiplexed connection shared by all the callers, which is
+ * reopened on the next request after it fails. After a failed connect attempt the server is not
+ * contacted again until an exponentially growing backoff has elapsed.
+ */
+public class PeerConnectionPool {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PeerConnectionPool.class);
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final long MIN_BACKOFF = 100;
+    private static final long MAX_BACKOFF = 10000;
+    private static PeerConnectionPool pool;
+    private final Map<String, Peer> peers = new ConcurrentHashMap<>();
+
+    private static class Peer {
+        private volatile PeerConnection connection;
+        private WireFormat format = ServerConfig.getInstance().getPeerWireFormat();
+        private int failures;
+        private long retryAt;
+    }
+
+    private PeerConnectionPool() {
+    }
+
+    public static PeerConnectionPool getInstance() {
+        if (Objects.isNull(pool)) {
+            synchronized (PeerConnectionPool.class) {
+                if (Objects.isNull(pool)) {
+                    pool = new PeerConnectionPool();
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Sends a message which is not answered by the server.
+     */
+    public void send(ChatServer server, JSONObject message) throws IOException {
+        PeerConnection connection = getConnection(server);
+        try {
+            connection.send(message);
+        } catch (IOException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends a request without waiting for the response.
+     *
+     * @param timeout milliseconds to wait for the response, zero waits until the server responds
+     * @return the response of the server, completed exceptionally if the server is unreachable or does not
+     * respond within the timeout
+     */
+    public CompletableFuture<JSONObject> requestAsync(ChatServer server, JSONObject message, long timeout) {
+        PeerConnection connection;
+        try {
+            connection = getConnection(server);
+        } catch (IOException e) {
+            CompletableFuture<JSONObject> response = new CompletableFuture<>();
+            response.completeExceptionally(e);
+            return response;
+        }
+        CompletableFuture<JSONObject> response = connection.request(message);
+        if (timeout > 0 && !response.isDone()) {
+            // the callbacks of the caller run on the executor rather than on the wheel
+            TimingWheel.Timeout expiry = TimingWheel.getInstance().schedule(() -> TaskExecutor.execute(() -> {
+                if (response.completeExceptionally(new SocketTimeoutException("No response from server "
+                        + server.getServerId() + " within " + timeout + " ms"))) {
+                    connection.cancel(response);
+                    ServerMetrics.increment("peer.requests.expired");
+                }
+            }), timeout);
+            response.whenComplete((result, error) -> expiry.cancel());
+        }
+        return response;
+    }
+
+    /**
+     * Sends a request and waits for the response of the server.
+     *
+     * @param timeout milliseconds to wait for the response, zero waits until the server responds
+     */
+    public JSONObject request(ChatServer server, JSONObject message, long timeout) throws IOException {
+        PeerConnection connection = getConnection(server);
+        CompletableFuture<JSONObject> response = connection.request(message);
+        try {
+            return timeout > 0 ? response.get(timeout, TimeUnit.MILLISECONDS) : response.get();
+        } catch (TimeoutException e) {
+            connection.cancel(response);
+            throw new SocketTimeoutException("No response from server " + server.getServerId() + " within " + timeout + " ms");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            connection.cancel(response);
+            throw new InterruptedIOException("Interrupted while waiting for server " + server.getServerId());
+        }
+    }
+
+    /**
+     * Closes the connection to a server which left the view or restarted.
+     */
+    public void evict(String serverId) {
+        Peer peer = peers.get(serverId);
+        if (Objects.nonNull(peer)) {
+            synchronized (peer) {
+                if (Objects.nonNull(peer.connection)) {
+                    peer.connection.close();
+                    peer.connection = null;
+                }
+                // a restarted server may support another wire format
+                peer.format = ServerConfig.getInstance().getPeerWireFormat();
+            }
+        }
+    }
+
+    /**
+     * @return the number of requests waiting for a response from each server
+     */
+    public Map<String, Integer> getPendingRequestsByServer() {
+        Map<String, Integer> pendingRequests = new ConcurrentHashMap<>();
+        peers.forEach((serverId, peer) -> {
+            PeerConnection connection = peer.connection;
+            if (Objects.nonNull(connection) && connection.getPendingRequests() > 0) {
+                pendingRequests.put(serverId, connection.getPendingRequests());
+            }
+        });
+        return pendingRequests;
+    }
+
+    private PeerConnection getConnection(ChatServer server) throws IOException {
+        Peer peer = peers.computeIfAbsent(server.getServerId(), serverId -> new Peer());
+        // concurrent callers wait for the same connect attempt instead of opening their own
+        synchronized (peer) {
+            if (Objects.nonNull(peer.connection) && peer.connection.isOpen()) {
+                return peer.connection;
+            }
+            long wait = peer.retryAt - System.currentTimeMillis();
+            if (wait > 0) {
+                throw new ConnectException("Server " + server.getServerId() + " is unreachable, retrying in " + wait + " ms");
+            }
+            try {
+                try {
+                    peer.connection = new PeerConnection(server, CONNECT_TIMEOUT, peer.format);
+                } catch (ProtocolException e) {
+                    LOGGER.info("Falling back to JSON for server {} ... {}", server.getServerId(), e.getMessage());
+                    peer.format = WireFormat.JSON;
+                    peer.connection = new PeerConnection(server, CONNECT_TIMEOUT, peer.format);
+                }
+                peer.failures = 0;
+                peer.retryAt = 0;
+                ServerMetrics.increment("peer.connections.opened");
+                return peer.connection;
+            } catch (IOException e) {
+                long backoff = Math.min(MAX_BACKOFF, MIN_BACKOFF << Math.min(peer.failures, 16));
+                peer.failures++;
+                peer.retryAt = System.currentTimeMillis() + backoff;
+                peer.connection = null;
+                LOGGER.error("Connecting to server {} failed, backing off for {} ms ... {}",
+                        server.getServerId(), backoff, e.getMessage());
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.groot.server.chat.connection;
+
+import com.groot.server.chat.constants.WireFormat;
+import com.groot.server.chat.util.BinaryMessageCodec;
+import com.groot.server.chat.util.EncodedMessage;
+import com.groot.server.chat.util.MessageReader;
+import com.groot.server.chat.util.ServerMetrics;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Message framing of a coordination connection in the wire format agreed during the handshake.
+ * The handshake messages are always JSON, the agreed format applies from the following message on.
+ */
+public class PeerStream {
+    private final InputStream input;
+    private final OutputStream output;
+    private volatile WireFormat format = WireFormat.JSON;
+    private MessageReader jsonReader;
+    private DataInputStream binaryReader;
+
+    public PeerStream(Socket socket) throws IOException {
+        this.input = socket.getInputStream();
+        this.output = socket.getOutputStream();
+    }
+
+    /**
+     * Reads the first JSON message byte by byte, so nothing that follows it is buffered before the wire
+     * format of the connection is known.
+     *
+     * @return the message or null if the stream is closed
+     */
+    public JSONObject readHandshake() throws IOException, ParseException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int next;
+        while ((next = input.read()) >= 0 && next != '\n') {
+            line.write(next);
+        }
+        if (next < 0) {
+            return null;
+        }
+        return MessageReader.parse(new String(line.toByteArray(), StandardCharsets.UTF_8).trim());
+    }
+
+    /**
+     * @return the next message of the connection or null if the stream is closed
+     */
+    public JSONObject next() throws IOException, ParseException {
+        if (format == WireFormat.BINARY) {
+            if (Objects.isNull(binaryReader)) {
+                binaryReader = new DataInputStream(new BufferedInputStream(input, 8192));
+            }
+            return BinaryMessageCodec.read(binaryReader);
+        }
+        if (Objects.isNull(jsonReader)) {
+            jsonReader = new MessageReader(input);
+        }
+        return jsonReader.next();
+    }
+
+    public synchronized void send(JSONObject message) throws IOException {
+        int length;
+        if (format == WireFormat.BINARY) {
+            byte[] frame = BinaryMessageCodec.encode(message);
+            output.write(frame);
+            length = frame.length;
+        } else {
+            EncodedMessage frame = EncodedMessage.of(message);
+            frame.writeTo(output);
+            length = frame.length();
+        }
+        output.flush();
+        ServerMetrics.increment("peer.messages.sent." + format.name().toLowerCase());
+        ServerMetrics.add("peer.bytes.sent." + format.name().toLowerCase(), length);
+    }
+
+    public WireFormat getFormat() {
+        return format;
+    }
+
+    public void setFormat(WireFormat format) {
+        this.format = format;
+    }
+}
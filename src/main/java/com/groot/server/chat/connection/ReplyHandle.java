@@ -0,0 +1,15 @@
+package com.groot.server.chat.connection;
+
+import org.json.simple.JSONObject;
+
+import java.io.IOException;
+
+/**
+ * Sends the response of a request received on the coordination port.
+ * The response is tagged with the correlation ID of the request, so the requesting server can match it
+ * while other requests on the same connection are still in flight.
+ */
+@FunctionalInterface
+public interface ReplyHandle {
+    void send(JSONObject response) throws IOException;
+}
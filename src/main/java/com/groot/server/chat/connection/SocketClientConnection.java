@@ -0,0 +1,167 @@
+package com.groot.server.chat.connection;
+
+import com.groot.server.chat.config.ServerConfig;
+import com.groot.server.chat.constants.FlushMode;
+import com.groot.server.chat.database.ChatClient;
+import com.groot.server.chat.util.ClientRequest;
+import com.groot.server.chat.util.ClientRequestDecoder;
+import com.groot.server.chat.util.EncodedMessage;
+import com.groot.server.chat.util.FrameDecoder;
+import com.groot.server.chat.util.MessageSender;
+import com.groot.server.chat.util.ServerMetrics;
+import com.groot.server.chat.util.TaskExecutor;
+import org.json.simple.parser.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Client connection served by a dedicated handler thread over a blocking socket.
+ * Responses are written by a writer task started whenever the outbound queue becomes non empty, so a
+ * stalled client never blocks the thread which sends to it. In COALESCE flush mode the writer sends every
+ * pending message through one buffered write and a single flush.
+ */
+public class SocketClientConnection implements ClientConnection {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SocketClientConnection.class);
+    private final Socket socket;
+    private static final int MAX_BATCH = 64;
+    private final OutboundQueue<EncodedMessage> outbound;
+    private final int batchSize;
+    private final int coalesceWindow;
+    private volatile boolean closing;
+    private volatile ChatClient client;
+    private final FrameDecoder decoder = new FrameDecoder();
+    private final byte[] readBuffer = new byte[8192];
+    private int readPosition;
+    private int readLimit;
+    private InputStream input;
+    // only one writer task runs at a time, the buffer is kept for the lifetime of the connection
+    private OutputStream output;
+
+    public SocketClientConnection(Socket socket) {
+        ServerConfig config = ServerConfig.getInstance();
+        this.socket = socket;
+        this.outbound = new OutboundQueue<>(config.getOutboundQueueCapacity(), config.getSlowConsumerPolicy());
+        this.batchSize = config.getFlushMode() == FlushMode.COALESCE ? MAX_BATCH : 1;
+        this.coalesceWindow = config.getFlushMode() == FlushMode.COALESCE ? config.getCoalesceWindow() : 0;
+    }
+
+    /**
+     * Decodes the next request of the client into the given request, bytes read ahead of the request are kept
+     * for the next call.
+     *
+     * @return false if the client closed the connection
+     */
+    public boolean read(ClientRequest request) throws IOException, ParseException {
+        if (Objects.isNull(input)) {
+            input = socket.getInputStream();
+        }
+        do {
+            if (readPosition == readLimit) {
+                readLimit = input.read(readBuffer);
+                readPosition = 0;
+                if (readLimit < 0) {
+                    readLimit = 0;
+                    return false;
+                }
+            }
+            readPosition += decoder.decodeFrame(readBuffer, readPosition, readLimit - readPosition);
+        } while (!decoder.hasFrame());
+        ClientRequestDecoder.decode(decoder.getFrame(), 0, decoder.getFrameLength(), request);
+        return true;
+    }
+
+    @Override
+    public void send(EncodedMessage message) throws IOException {
+        if (closing || socket.isClosed()) {
+            throw new SocketException("Socket is closed");
+        }
+        switch (outbound.offer(message)) {
+            case FIRST:
+                if (coalesceWindow > 0) {
+                    TaskExecutor.schedule(this::write, coalesceWindow);
+                } else {
+                    TaskExecutor.execute(this::write);
+                }
+                break;
+            case DROPPED:
+                ServerMetrics.increment("client.outbound.dropped");
+                break;
+            case OVERFLOW:
+                ServerMetrics.increment("client.outbound.disconnected");
+                LOGGER.error("Disconnecting the client since the outbound queue is full ...");
+                closeNow();
+                throw new SocketException("Outbound queue is full");
+            default:
+                break;
+        }
+    }
+
+    private void write() {
+        try {
+            if (Objects.isNull(output)) {
+                output = batchSize > 1 ? new BufferedOutputStream(socket.getOutputStream(), 8192) : socket.getOutputStream();
+            }
+            List<EncodedMessage> batch;
+            do {
+                batch = outbound.take(batchSize);
+                MessageSender.send(output, batch);
+                ServerMetrics.increment("client.outbound.writes");
+                ServerMetrics.add("client.outbound.messages", batch.size());
+            } while (outbound.remove(batch.size()));
+        } catch (IOException e) {
+            LOGGER.error("Client writing error ... {}", e.getMessage());
+            closeNow();
+            return;
+        }
+        if (closing) {
+            closeNow();
+        }
+    }
+
+    @Override
+    public void close() {
+        closing = true;
+        if (outbound.isEmpty()) {
+            closeNow();
+        }
+    }
+
+    public void closeNow() {
+        closing = true;
+        outbound.clear();
+        try {
+            socket.close();
+        } catch (IOException e) {
+            LOGGER.error("Client socket closing error ... {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closing && !socket.isClosed();
+    }
+
+    @Override
+    public int getQueuedMessages() {
+        return outbound.size();
+    }
+
+    @Override
+    public ChatClient getClient() {
+        return client;
+    }
+
+    @Override
+    public void setClient(ChatClient client) {
+        this.client = client;
+    }
+}
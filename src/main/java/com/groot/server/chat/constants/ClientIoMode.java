@@ -0,0 +1,11 @@
+package com.groot.server.chat.constants;
+
+/**
+ * How the client port accepts and serves connections.
+ * BLOCKING runs a dedicated handler thread per client socket while REACTOR multiplexes
+ * all the client channels onto a fixed number of selector threads.
+ */
+public enum ClientIoMode {
+    BLOCKING,
+    REACTOR
+}
@@ -0,0 +1,11 @@
+package com.groot.server.chat.constants;
+
+/**
+ * How the messages queued for a client are written to its connection.
+ */
+public enum FlushMode {
+    // write and flush every message on its own, for the lowest latency per message
+    IMMEDIATE,
+    // gather every pending message of the client into a single write
+    COALESCE
+}
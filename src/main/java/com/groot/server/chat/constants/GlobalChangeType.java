@@ -0,0 +1,11 @@
+package com.groot.server.chat.constants;
+
+/**
+ * Kinds of changes recorded in the change log of the global clients and chat rooms.
+ */
+public enum GlobalChangeType {
+    ADD_CLIENT,
+    REMOVE_CLIENT,
+    ADD_CHAT_ROOM,
+    REMOVE_CHAT_ROOM
+}
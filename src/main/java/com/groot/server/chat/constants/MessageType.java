@@ -1,6 +1,8 @@
 package com.groot.server.chat.constants;
 
-import java.util.Arrays;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * @author Melanga Kasun
@@ -23,20 +25,57 @@ public enum MessageType {
     QUIT("quit"),
     IAM_UP("iamup"),
     ELECTION("election"),
+    ANSWER("answer"),
+    NOMINATION("nomination"),
     COORDINATOR("coordinator"),
     HEARTBEAT("heartbeat"),
     HEARTBEAT_RESPONSE("heartbeatresponse"),
     GLOBALS("globals"),
+    LEASE("lease"),
+    GLOBAL_DELTA("globaldelta"),
+    HELLO("hello"),
+    ERROR("error"),
     UNAVAILABLE("unavailable");
 
+    private static final Map<String, MessageType> TYPES = new HashMap<>();
+    private static final MessageType[] VALUES = values();
     private final String type;
+    private final byte[] bytes;
+
+    static {
+        for (MessageType value : VALUES) {
+            TYPES.put(value.type, value);
+        }
+    }
 
     MessageType(String type) {
         this.type = type;
+        this.bytes = type.getBytes(StandardCharsets.UTF_8);
     }
 
     public static MessageType get(String text) {
-        return Arrays.stream(MessageType.values()).filter(env -> env.type.equals(text)).findFirst().orElse(UNAVAILABLE);
+        return TYPES.getOrDefault(text, UNAVAILABLE);
+    }
+
+    /**
+     * Resolves the type from its UTF-8 bytes without decoding them into a string.
+     */
+    public static MessageType get(byte[] text, int offset, int length) {
+        for (MessageType value : VALUES) {
+            if (value.bytes.length == length && regionMatches(value.bytes, text, offset)) {
+                return value;
+            }
+        }
+        return UNAVAILABLE;
+    }
+
+    private static boolean regionMatches(byte[] expected, byte[] text, int offset) {
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] != text[offset + i]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
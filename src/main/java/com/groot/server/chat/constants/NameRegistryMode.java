@@ -0,0 +1,13 @@
+package com.groot.server.chat.constants;
+
+/**
+ * Which server decides whether an identity or a chat room id is still available.
+ * LEADER asks the leader about every name while LEASED lets the leader lease ranges of the name hashes to
+ * the servers, so a server approves the names of its own ranges without a round trip. CONSISTENT_HASH spreads
+ * the names over the servers in the view with a hash ring, without any coordination by the leader.
+ */
+public enum NameRegistryMode {
+    LEADER,
+    LEASED,
+    CONSISTENT_HASH
+}
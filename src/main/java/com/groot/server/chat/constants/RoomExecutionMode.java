@@ -0,0 +1,12 @@
+package com.groot.server.chat.constants;
+
+/**
+ * Where the membership changes and broadcasts of a chat room run.
+ * CALLER runs them on the handler thread of the client which caused them while MAILBOX queues them on the
+ * mailbox of the room, which processes them one at a time so every member observes the events of the room
+ * in the same order.
+ */
+public enum RoomExecutionMode {
+    CALLER,
+    MAILBOX
+}
@@ -0,0 +1,13 @@
+package com.groot.server.chat.constants;
+
+/**
+ * What to do with a message for a client whose outbound queue is already full.
+ */
+public enum SlowConsumerPolicy {
+    // discard the oldest queued message which is not being written
+    DROP_OLDEST,
+    // discard the new message
+    DROP_NEWEST,
+    // close the connection with the client
+    DISCONNECT
+}
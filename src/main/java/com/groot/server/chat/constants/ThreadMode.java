@@ -0,0 +1,10 @@
+package com.groot.server.chat.constants;
+
+/**
+ * Kind of threads the handlers and the coordination tasks run on.
+ * VIRTUAL needs a Java 21 runtime and falls back to PLATFORM threads otherwise.
+ */
+public enum ThreadMode {
+    PLATFORM,
+    VIRTUAL
+}
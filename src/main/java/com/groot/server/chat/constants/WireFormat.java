@@ -0,0 +1,11 @@
+package com.groot.server.chat.constants;
+
+/**
+ * Encoding of the messages on a coordination connection, agreed by the two servers when it is opened.
+ */
+public enum WireFormat {
+    // newline delimited JSON text, understood by every server
+    JSON,
+    // length prefixed binary encoding of the same messages
+    BINARY
+}
@@ -1,6 +1,6 @@
 package com.groot.server.chat.database;
 
-import java.net.Socket;
+import com.groot.server.chat.connection.ClientConnection;
 
 /**
  * @author Melanga Kasun
@@ -8,21 +8,21 @@ import java.net.Socket;
  */
 public class ChatClient {
     private final String identity;
-    private final Socket socket;
+    private final ClientConnection connection;
     private String roomId;
 
-    public ChatClient(String identity, String roomId, Socket socket) {
+    public ChatClient(String identity, String roomId, ClientConnection connection) {
         this.identity = identity;
         this.roomId = roomId;
-        this.socket = socket;
+        this.connection = connection;
     }
 
     public String getIdentity() {
         return identity;
     }
 
-    public Socket getSocket() {
-        return socket;
+    public ClientConnection getConnection() {
+        return connection;
     }
 
     public String getRoomId() {
@@ -1,21 +1,29 @@
 package com.groot.server.chat.database;
 
-import java.util.ArrayList;
+import com.groot.server.chat.util.SerialExecutor;
+
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
+ * The members are kept in an array which is replaced on every join or leave and never modified after it is
+ * published, so a broadcast iterates a consistent snapshot without taking a lock.
+ *
  * @author Melanga Kasun
  * @date (Sun) 20-Feb-2022
  */
 public class ChatRoom {
     private final String roomId;
     private final String owner;
-    private final List<ChatClient> clients;
+    private static final ChatClient[] EMPTY = new ChatClient[0];
+    private volatile ChatClient[] clients;
+    private final SerialExecutor mailbox = new SerialExecutor();
 
     public ChatRoom(String roomId, String owner) {
         this.roomId = roomId;
         this.owner = owner;
-        this.clients = new ArrayList<>();
+        this.clients = EMPTY;
     }
 
     public String getOwner() {
@@ -26,15 +34,37 @@ public class ChatRoom {
         return roomId;
     }
 
-    public void removeClient(ChatClient client) {
-        this.clients.remove(client);
+    /**
+     * @return the queue of the room events, used when the rooms run in MAILBOX mode
+     */
+    public SerialExecutor getMailbox() {
+        return mailbox;
+    }
+
+    public synchronized void removeClient(ChatClient client) {
+        ChatClient[] current = this.clients;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].equals(client)) {
+                ChatClient[] updated = new ChatClient[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                this.clients = updated;
+                return;
+            }
+        }
     }
 
-    public void addClient(ChatClient client) {
-        this.clients.add(client);
+    public synchronized void addClient(ChatClient client) {
+        ChatClient[] current = this.clients;
+        ChatClient[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = client;
+        this.clients = updated;
     }
 
+    /**
+     * @return the members at the time of the call, later joins and leaves are not reflected
+     */
     public List<ChatClient> getAllClients() {
-        return this.clients;
+        return Collections.unmodifiableList(Arrays.asList(this.clients));
     }
 }
@@ -1,27 +1,64 @@
 package com.groot.server.chat.database;
 
+import com.groot.server.chat.config.ServerConfig;
+import com.groot.server.chat.constants.GlobalChangeType;
+import com.groot.server.chat.util.ServerMetrics;
+import com.groot.server.chat.util.TimingWheel;
+
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * The maps are concurrent so lookups never wait for a writer and the views returned to callers can be
+ * iterated while other threads update them. The membership of a chat room is updated by the room itself,
+ * so joins and leaves of different rooms do not contend.
+ * <p>
+ * Every change of the global clients and chat rooms advances the global version and is kept in a bounded
+ * change log, so a server which synchronized at an earlier version can catch up with the changes since then.
+ * The versions are numbered within an epoch, which changes whenever the versions start over, so a version
+ * is only compared with the versions of the same epoch.
+ *
  * @author Melanga Kasun
  * @date (Sun) 20-Feb-2022
  */
 public class DataStore {
+    private static final int MAX_GLOBAL_CHANGES = 10000;
     private String mainHall;
     private ChatServer current;
-    private ChatServer leader;
-    private final HashMap<String, ChatServer> views = new HashMap<>();
+    private volatile ChatServer leader;
+    private volatile long leaderUpdatedAt;
+    // released once the server has found the leader and caught up with the global data after starting
+    private final CompletableFuture<Void> recovered = new CompletableFuture<>();
+    private final Map<String, ChatServer> views = new ConcurrentHashMap<>();
+    // counts the changes of the view, so the structures derived from it are only rebuilt after a change
+    private final AtomicLong viewsVersion = new AtomicLong();
     // other neighbour servers in the distributed chat server
-    private final HashMap<String, ChatServer> neighbours = new HashMap<>();
+    private final Map<String, ChatServer> neighbours = new ConcurrentHashMap<>();
     // chat clients and chat rooms exists in the current server
-    private final HashMap<String, ChatClient> clients = new HashMap<>();
-    private final HashMap<String, ChatRoom> chatRooms = new HashMap<>();
+    private final Map<String, ChatClient> clients = new ConcurrentHashMap<>();
+    private final Map<String, ChatRoom> chatRooms = new ConcurrentHashMap<>();
     // clients and chat rooms exists in the entire system
-    private final List<String> globalClients = new ArrayList<>();
-    private final HashMap<String, String> globalChatRooms = new HashMap<>();
+    private final IdentityRegistry globalClients = new IdentityRegistry();
+    private final Map<String, String> globalChatRooms = new ConcurrentHashMap<>();
     // leader approved clients and chat rooms before actual creation
-    private final List<String> pendingClients = new ArrayList<>();
-    private final HashMap<String, String> pendingChatRooms = new HashMap<>();
+    private final IdentityRegistry pendingClients = new IdentityRegistry();
+    private final Map<String, String> pendingChatRooms = new ConcurrentHashMap<>();
+    // deadlines of the reservations, a reservation is dropped when the creation is never confirmed
+    private final Map<String, TimingWheel.Timeout> pendingExpiries = new ConcurrentHashMap<>();
+    // guards the global version together with the change log, the global registries are read without it
+    private final Object globalLock = new Object();
+    private final ArrayDeque<GlobalChange> globalChanges = new ArrayDeque<>();
+    private long globalVersion;
+    private long globalEpoch = ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE;
+    // server, epoch and version of the global data this server last synchronized with
+    private String globalSyncServer;
+    private long globalSyncEpoch;
+    private long globalSyncVersion;
+    // persists the global changes when a data directory is configured
+    private RegistryLog globalLog;
 
     public void setCurrent(ChatServer current) {
         this.current = current;
@@ -38,12 +75,28 @@ public class DataStore {
 
     public void setLeader(ChatServer leader) {
         this.leader = leader;
+        this.leaderUpdatedAt = System.currentTimeMillis();
+    }
+
+    public long getLeaderUpdatedAt() {
+        return leaderUpdatedAt;
     }
 
     public ChatServer getLeader() {
         return leader;
     }
 
+    public void markRecovered() {
+        this.recovered.complete(null);
+    }
+
+    /**
+     * @return completed once the server has recovered
+     */
+    public CompletableFuture<Void> getRecovery() {
+        return this.recovered;
+    }
+
     public boolean isLeaderMyself() {
         return current.getServerId().equals(leader.getServerId())
                 && current.getServerAddress().equals(leader.getServerAddress())
@@ -53,36 +106,36 @@ public class DataStore {
 
     public void addView(ChatServer server) {
         if (Objects.nonNull(server)) {
-            synchronized (this.views) {
-                if (!this.views.containsKey(server.getServerId())) {
-                    this.views.put(server.getServerId(), server);
-                }
+            if (Objects.isNull(this.views.putIfAbsent(server.getServerId(), server))) {
+                viewsVersion.incrementAndGet();
             }
         }
     }
 
     public Map<String, ChatServer> getViews() {
-        synchronized (this.views) {
-            return views;
-        }
+        return Collections.unmodifiableMap(views);
     }
 
     public void removeViews(List<String> identities) {
-        synchronized (this.views) {
-            identities.forEach(this.views::remove);
-        }
+        identities.forEach(serverId -> {
+            if (Objects.nonNull(this.views.remove(serverId))) {
+                viewsVersion.incrementAndGet();
+            }
+        });
+    }
+
+    public long getViewsVersion() {
+        return viewsVersion.get();
     }
 
     public void addNeighbour(ChatServer server) {
         if (Objects.nonNull(server)) {
-            synchronized (this.neighbours) {
-                this.neighbours.put(server.getServerId(), server);
-            }
+            this.neighbours.put(server.getServerId(), server);
         }
     }
 
     public Map<String, ChatServer> getNeighbours() {
-        return neighbours;
+        return Collections.unmodifiableMap(neighbours);
     }
 
     public ChatServer getNeighbourById(String serverId) {
@@ -90,35 +143,27 @@ public class DataStore {
     }
 
     public void addClient(ChatClient client) {
-        synchronized (this.clients) {
-            this.clients.put(client.getIdentity(), client);
-        }
+        this.clients.put(client.getIdentity(), client);
     }
 
     public ChatClient getClient(String identity) {
-        synchronized (this.neighbours) {
-            return this.clients.getOrDefault(identity, null);
-        }
+        return this.clients.get(identity);
     }
 
     public Map<String, ChatClient> getClients() {
-        return clients;
+        return Collections.unmodifiableMap(clients);
     }
 
     public void removeClient(String identity) {
-        synchronized (this.clients) {
-            this.clients.remove(identity);
-        }
+        this.clients.remove(identity);
     }
 
     public void addChatRoom(ChatRoom chatRoom) {
-        synchronized (this.chatRooms) {
-            this.chatRooms.put(chatRoom.getRoomId(), chatRoom);
-        }
+        this.chatRooms.put(chatRoom.getRoomId(), chatRoom);
     }
 
     public ChatRoom getChatRoom(String roomId) {
-        return this.chatRooms.getOrDefault(roomId, null);
+        return this.chatRooms.get(roomId);
     }
 
     public List<String> getAllChatRoomIds() {
@@ -126,69 +171,73 @@ public class DataStore {
     }
 
     public void removeFromChatRoom(String roomId, ChatClient client) {
-        synchronized (this.chatRooms) {
-            this.chatRooms.get(roomId).removeClient(client);
-        }
+        this.chatRooms.get(roomId).removeClient(client);
     }
 
     public void addToChatRoom(String roomId, ChatClient client) {
-        synchronized (this.chatRooms) {
-            this.chatRooms.get(roomId).addClient(client);
-        }
+        this.chatRooms.get(roomId).addClient(client);
     }
 
+    /**
+     * @return a snapshot of the members, which stays safe to iterate while clients join or leave the room
+     */
     public List<ChatClient> getAllClientsOfChatRoom(String roomId) {
         return this.chatRooms.get(roomId).getAllClients();
     }
 
     public void deleteChatRoom(String roomId) {
-        synchronized (this.chatRooms) {
-            this.chatRooms.remove(roomId);
-        }
+        this.chatRooms.remove(roomId);
     }
 
     public boolean isGlobalClient(String identity) {
         return this.globalClients.contains(identity);
     }
 
-    public void addNewGlobalClient(String identity) {
-        synchronized (this.globalClients) {
-            this.globalClients.add(identity);
+    /**
+     * @return the global version after adding the client
+     */
+    public long addNewGlobalClient(String identity) {
+        synchronized (this.globalLock) {
+            return this.globalClients.add(identity) ? record(GlobalChangeType.ADD_CLIENT, identity, null) : globalVersion;
         }
     }
 
     public List<String> getGlobalClients() {
-        return this.globalClients;
+        return this.globalClients.toList();
     }
 
     public void deleteGlobalClient(String identity) {
-        synchronized (this.globalClients) {
-            this.globalClients.remove(identity);
+        synchronized (this.globalLock) {
+            if (this.globalClients.remove(identity)) {
+                record(GlobalChangeType.REMOVE_CLIENT, identity, null);
+            }
         }
     }
 
+    public IdentityRegistry getGlobalClientRegistry() {
+        return globalClients;
+    }
+
     public void updateGlobalClients(List<String> clients) {
-        synchronized (this.globalClients) {
-            clients.forEach(client -> {
-                if (!this.globalClients.contains(client)) {
-                    this.globalClients.add(client);
-                }
-            });
-        }
+        clients.forEach(this::addNewGlobalClient);
     }
 
     public boolean isGlobalChatRoom(String roomId) {
         return this.globalChatRooms.containsKey(roomId);
     }
 
-    public void addNewGlobalChatRoom(String roomId, String serverId) {
-        synchronized (this.globalChatRooms) {
-            this.globalChatRooms.put(roomId, serverId);
+    /**
+     * @return the global version after adding the chat room
+     */
+    public long addNewGlobalChatRoom(String roomId, String serverId) {
+        synchronized (this.globalLock) {
+            String previous = this.globalChatRooms.put(roomId, serverId);
+            return Objects.equals(previous, serverId) ? globalVersion : record(GlobalChangeType.ADD_CHAT_ROOM, roomId, serverId);
         }
     }
 
     public Map<String, String> getGlobalChatRooms() {
-        return globalChatRooms;
+        return Collections.unmodifiableMap(globalChatRooms);
     }
 
     public String getGlobalServerByChatRoomId(String roomId) {
@@ -196,55 +245,276 @@ public class DataStore {
     }
 
     public void deleteGlobalChatRoom(String roomId) {
-        synchronized (this.globalChatRooms) {
-            this.globalChatRooms.remove(roomId);
+        synchronized (this.globalLock) {
+            if (Objects.nonNull(this.globalChatRooms.remove(roomId))) {
+                record(GlobalChangeType.REMOVE_CHAT_ROOM, roomId, null);
+            }
         }
     }
 
     public void updateGlobalChatRooms(Map<String, String> chatRooms) {
-        synchronized (this.globalChatRooms) {
-            chatRooms.forEach((roomId, server) -> {
-                if (!this.globalChatRooms.containsKey(roomId)) {
-                    this.globalChatRooms.put(roomId, server);
+        synchronized (this.globalLock) {
+            chatRooms.forEach((roomId, serverId) -> {
+                if (Objects.isNull(this.globalChatRooms.putIfAbsent(roomId, serverId))) {
+                    record(GlobalChangeType.ADD_CHAT_ROOM, roomId, serverId);
                 }
             });
         }
     }
 
-    public boolean isPendingClient(String identity) {
-        synchronized (this.pendingClients) {
-            if (!this.pendingClients.contains(identity)) {
-                this.pendingClients.add(identity);
-                return false;
+    /**
+     * Applies the changes of a batch at once, so the snapshots and the change log include all of them or none.
+     */
+    public void applyGlobalChanges(List<GlobalChange> changes) {
+        synchronized (this.globalLock) {
+            for (GlobalChange change : changes) {
+                switch (change.getType()) {
+                    case ADD_CLIENT:
+                        addNewGlobalClient(change.getId());
+                        break;
+                    case REMOVE_CLIENT:
+                        deleteGlobalClient(change.getId());
+                        break;
+                    case ADD_CHAT_ROOM:
+                        addNewGlobalChatRoom(change.getId(), change.getServerId());
+                        break;
+                    case REMOVE_CHAT_ROOM:
+                        deleteGlobalChatRoom(change.getId());
+                        break;
+                    default:
+                        break;
+                }
             }
         }
-        return true;
     }
 
-    public void removePendingClient(String identity) {
-        synchronized (this.pendingClients) {
-            this.pendingClients.remove(identity);
+    public long getGlobalVersion() {
+        synchronized (this.globalLock) {
+            return globalVersion;
         }
     }
 
-    public boolean isPendingChatRoom(String roomId, String serverId) {
-        synchronized (this.pendingChatRooms) {
-            if (!this.pendingChatRooms.containsKey(roomId)) {
-                this.pendingChatRooms.put(roomId, serverId);
-                return false;
-            } else {
-                return true;
+    /**
+     * @return the changes after the given version in order, or null if the change log no longer reaches back to it
+     */
+    public List<GlobalChange> getGlobalChangesSince(long version) {
+        synchronized (this.globalLock) {
+            long oldest = this.globalChanges.isEmpty() ? globalVersion + 1 : this.globalChanges.peekFirst().getVersion();
+            if (version < oldest - 1 || version > globalVersion) {
+                return null;
+            }
+            List<GlobalChange> changes = new ArrayList<>((int) (globalVersion - version));
+            for (GlobalChange change : this.globalChanges) {
+                if (change.getVersion() > version) {
+                    changes.add(change);
+                }
+            }
+            return changes;
+        }
+    }
+
+    public long getGlobalEpoch() {
+        synchronized (this.globalLock) {
+            return globalEpoch;
+        }
+    }
+
+    public GlobalSnapshot getGlobalSnapshot() {
+        synchronized (this.globalLock) {
+            return new GlobalSnapshot(globalVersion, this.globalClients.toList(), new HashMap<>(this.globalChatRooms));
+        }
+    }
+
+    /**
+     * Remembers the latest version of the given server this server has applied, a later version of the same
+     * server and epoch replaces it while a version of another server or epoch starts over.
+     */
+    public void setGlobalSyncVersion(String serverId, long epoch, long version) {
+        synchronized (this.globalLock) {
+            if (!serverId.equals(globalSyncServer) || epoch != globalSyncEpoch || version > globalSyncVersion) {
+                globalSyncServer = serverId;
+                globalSyncEpoch = epoch;
+                globalSyncVersion = version;
+                if (Objects.nonNull(globalLog)) {
+                    globalLog.appendSync(serverId, epoch, version);
+                }
+            }
+        }
+    }
+
+    public String getGlobalSyncServer() {
+        synchronized (this.globalLock) {
+            return globalSyncServer;
+        }
+    }
+
+    /**
+     * @return the epoch of the given server to synchronize from, or -1 if nothing was applied from it
+     */
+    public long getGlobalSyncEpoch(String serverId) {
+        synchronized (this.globalLock) {
+            return serverId.equals(globalSyncServer) ? globalSyncEpoch : -1;
+        }
+    }
+
+    /**
+     * @return the version of the given server to synchronize from, or -1 if nothing was applied from it
+     */
+    public long getGlobalSyncVersion(String serverId) {
+        synchronized (this.globalLock) {
+            return serverId.equals(globalSyncServer) ? globalSyncVersion : -1;
+        }
+    }
+
+    /**
+     * Replaces the global clients and chat rooms with the persisted ones, which continue the given epoch.
+     */
+    public void restoreGlobals(long epoch, GlobalSnapshot snapshot) {
+        synchronized (this.globalLock) {
+            this.globalClients.clear();
+            this.globalClients.addAll(snapshot.getClients());
+            this.globalChatRooms.clear();
+            this.globalChatRooms.putAll(snapshot.getChatRooms());
+            this.globalChanges.clear();
+            globalEpoch = epoch;
+            globalVersion = snapshot.getVersion();
+        }
+    }
+
+    /**
+     * Applies a persisted change again, the changes the current version already includes are ignored.
+     */
+    public void replayGlobalChange(GlobalChange change) {
+        synchronized (this.globalLock) {
+            if (change.getVersion() <= globalVersion) {
+                return;
+            }
+            switch (change.getType()) {
+                case ADD_CLIENT:
+                    this.globalClients.add(change.getId());
+                    break;
+                case REMOVE_CLIENT:
+                    this.globalClients.remove(change.getId());
+                    break;
+                case ADD_CHAT_ROOM:
+                    this.globalChatRooms.put(change.getId(), change.getServerId());
+                    break;
+                case REMOVE_CHAT_ROOM:
+                    this.globalChatRooms.remove(change.getId());
+                    break;
+                default:
+                    break;
             }
+            append(change);
+        }
+    }
+
+    public void setGlobalLog(RegistryLog globalLog) {
+        synchronized (this.globalLock) {
+            this.globalLog = globalLog;
+        }
+    }
+
+    /**
+     * Waits until the global changes up to the given version are persisted, if they are persisted at all.
+     *
+     * @return false if the changes could not be persisted in time
+     */
+    public boolean awaitGlobalPersisted(long version) {
+        RegistryLog log;
+        synchronized (this.globalLock) {
+            log = globalLog;
+        }
+        return Objects.isNull(log) || log.await(version);
+    }
+
+    private long record(GlobalChangeType type, String id, String serverId) {
+        append(new GlobalChange(globalVersion + 1, type, id, serverId));
+        return globalVersion;
+    }
+
+    private void append(GlobalChange change) {
+        globalVersion = change.getVersion();
+        if (this.globalChanges.size() == MAX_GLOBAL_CHANGES) {
+            this.globalChanges.pollFirst();
+        }
+        this.globalChanges.addLast(change);
+        if (Objects.nonNull(globalLog)) {
+            globalLog.append(change);
+        }
+    }
+
+    /**
+     * Reserves the identity for a client waiting to be created.
+     *
+     * @return true if the identity was already reserved
+     */
+    public boolean isPendingClient(String identity) {
+        if (!this.pendingClients.add(identity)) {
+            return true;
+        }
+        expirePending("client:" + identity, () -> this.pendingClients.remove(identity), "registry.pending.clients.expired");
+        return false;
+    }
+
+    public void removePendingClient(String identity) {
+        cancelExpiry("client:" + identity);
+        this.pendingClients.remove(identity);
+    }
+
+    public int getPendingClientsCount() {
+        return this.pendingClients.size();
+    }
+
+    /**
+     * Reserves the chat room for the given server until the room is created.
+     *
+     * @return true if the chat room was already reserved
+     */
+    public boolean isPendingChatRoom(String roomId, String serverId) {
+        if (Objects.nonNull(this.pendingChatRooms.putIfAbsent(roomId, serverId))) {
+            return true;
         }
+        expirePending("room:" + roomId, () -> this.pendingChatRooms.remove(roomId), "registry.pending.rooms.expired");
+        return false;
+    }
+
+    public String getPendingChatRoomServer(String roomId) {
+        return this.pendingChatRooms.get(roomId);
     }
 
     public String removePendingChatRoom(String roomId) {
-        String serverId = this.pendingChatRooms.get(roomId);
-        if (Objects.nonNull(serverId)) {
-            synchronized (this.pendingChatRooms) {
-                this.pendingChatRooms.remove(roomId);
+        cancelExpiry("room:" + roomId);
+        return this.pendingChatRooms.remove(roomId);
+    }
+
+    public int getPendingChatRoomsCount() {
+        return this.pendingChatRooms.size();
+    }
+
+    /**
+     * Drops a reservation after the pending timeout, unless the reservation is removed before.
+     * A server which crashed or lost its client before confirming the creation would otherwise hold the name forever.
+     */
+    private void expirePending(String key, Runnable release, String counter) {
+        TimingWheel.Timeout[] expiry = new TimingWheel.Timeout[1];
+        expiry[0] = TimingWheel.getInstance().schedule(() -> {
+            // a later reservation of the same name has a deadline of its own
+            if (this.pendingExpiries.remove(key, expiry[0])) {
+                release.run();
+                ServerMetrics.increment(counter);
             }
+        }, ServerConfig.getInstance().getPendingTimeout());
+        TimingWheel.Timeout previous = this.pendingExpiries.put(key, expiry[0]);
+        if (Objects.nonNull(previous)) {
+            previous.cancel();
+        }
+    }
+
+    private void cancelExpiry(String key) {
+        TimingWheel.Timeout expiry = this.pendingExpiries.remove(key);
+        if (Objects.nonNull(expiry)) {
+            expiry.cancel();
         }
-        return serverId;
     }
 }
@@ -0,0 +1,38 @@
+package com.groot.server.chat.database;
+
+import com.groot.server.chat.constants.GlobalChangeType;
+
+/**
+ * A change of the global clients or chat rooms with the version it produced.
+ */
+public class GlobalChange {
+    private final long version;
+    private final GlobalChangeType type;
+    // identity of the client or id of the chat room
+    private final String id;
+    // owner of an added chat room
+    private final String serverId;
+
+    public GlobalChange(long version, GlobalChangeType type, String id, String serverId) {
+        this.version = version;
+        this.type = type;
+        this.id = id;
+        this.serverId = serverId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public GlobalChangeType getType() {
+        return type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getServerId() {
+        return serverId;
+    }
+}
@@ -0,0 +1,31 @@
+package com.groot.server.chat.database;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copy of the global clients and chat rooms taken at a single version.
+ */
+public class GlobalSnapshot {
+    private final long version;
+    private final List<String> clients;
+    private final Map<String, String> chatRooms;
+
+    public GlobalSnapshot(long version, List<String> clients, Map<String, String> chatRooms) {
+        this.version = version;
+        this.clients = clients;
+        this.chatRooms = chatRooms;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<String> getClients() {
+        return clients;
+    }
+
+    public Map<String, String> getChatRooms() {
+        return chatRooms;
+    }
+}
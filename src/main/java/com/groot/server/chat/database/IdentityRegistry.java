@@ -0,0 +1,224 @@
+package com.groot.server.chat.database;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Set of client identities kept in an open addressing table of their UTF-8 bytes.
+ * An entry costs one byte array and two table slots instead of a string and a hash map node, which keeps
+ * the registry of a leader small when it holds the identities of the whole system. Lookups run on an
+ * optimistic read, so they only wait for a writer when the table changed while they were probing it.
+ */
+public class IdentityRegistry {
+    private static final byte[] REMOVED = new byte[0];
+    private static final int INITIAL_CAPACITY = 16;
+    // object header and length field of an array with compressed references
+    private static final int ARRAY_HEADER = 16;
+    private final StampedLock lock = new StampedLock();
+    private byte[][] keys = new byte[INITIAL_CAPACITY][];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int size;
+    // live and removed entries, an empty slot ends a probe
+    private int used;
+    private long keyBytes;
+
+    public boolean contains(String identity) {
+        byte[] key = encode(identity);
+        int hash = hash(key);
+        long stamp = lock.tryOptimisticRead();
+        boolean found = find(key, hash) >= 0;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                found = find(key, hash) >= 0;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return false if the identity was already registered
+     */
+    public boolean add(String identity) {
+        byte[] key = encode(identity);
+        int hash = hash(key);
+        long stamp = lock.writeLock();
+        try {
+            return insert(key, hash);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void addAll(Collection<String> identities) {
+        long stamp = lock.writeLock();
+        try {
+            for (String identity : identities) {
+                byte[] key = encode(identity);
+                insert(key, hash(key));
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return false if the identity was not registered
+     */
+    public boolean remove(String identity) {
+        byte[] key = encode(identity);
+        int hash = hash(key);
+        long stamp = lock.writeLock();
+        try {
+            int slot = find(key, hash);
+            if (slot < 0) {
+                return false;
+            }
+            // the slot stays used so that the probes passing through it still reach the entries after it
+            keys[slot] = REMOVED;
+            size--;
+            keyBytes -= footprint(key);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            keys = new byte[INITIAL_CAPACITY][];
+            hashes = new int[INITIAL_CAPACITY];
+            size = 0;
+            used = 0;
+            keyBytes = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public List<String> toList() {
+        long stamp = lock.readLock();
+        try {
+            List<String> identities = new ArrayList<>(size);
+            for (byte[] key : keys) {
+                if (key != null && key != REMOVED) {
+                    identities.add(new String(key, StandardCharsets.UTF_8));
+                }
+            }
+            return identities;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return the approximate number of heap bytes held by the registry, the table and the identities
+     */
+    public long getFootprint() {
+        long stamp = lock.readLock();
+        try {
+            return 2L * (ARRAY_HEADER + 4L * keys.length) + keyBytes;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Probes the table as read at the time of the call. During an optimistic read the table may be replaced
+     * concurrently, so the probe is bounded and a torn read only yields a result which fails validation.
+     *
+     * @return the slot of the identity or -1 if it is not registered
+     */
+    private int find(byte[] key, int hash) {
+        byte[][] keys = this.keys;
+        int[] hashes = this.hashes;
+        if (keys.length != hashes.length) {
+            return -1;
+        }
+        int mask = keys.length - 1;
+        for (int i = 0, slot = hash & mask; i < keys.length; i++, slot = (slot + 1) & mask) {
+            byte[] candidate = keys[slot];
+            if (candidate == null) {
+                return -1;
+            }
+            if (candidate != REMOVED && hashes[slot] == hash && Arrays.equals(candidate, key)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private boolean insert(byte[] key, int hash) {
+        if (find(key, hash) >= 0) {
+            return false;
+        }
+        if ((used + 1) * 2 > keys.length) {
+            // rehash into a table where the live entries fill at most a quarter, which also drops the removed ones
+            resize(Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, size + 1) * 4 - 1) << 1));
+        }
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+        while (keys[slot] != null && keys[slot] != REMOVED) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == null) {
+            used++;
+        }
+        hashes[slot] = hash;
+        keys[slot] = key;
+        size++;
+        keyBytes += footprint(key);
+        return true;
+    }
+
+    private void resize(int capacity) {
+        byte[][] newKeys = new byte[capacity][];
+        int[] newHashes = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < keys.length; i++) {
+            byte[] key = keys[i];
+            if (key == null || key == REMOVED) {
+                continue;
+            }
+            int slot = hashes[i] & mask;
+            while (newKeys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            newKeys[slot] = key;
+            newHashes[slot] = hashes[i];
+        }
+        // publish the hashes first, a reader which sees tables of different lengths retries under the lock
+        hashes = newHashes;
+        keys = newKeys;
+        used = size;
+    }
+
+    private static byte[] encode(String identity) {
+        return identity.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int hash(byte[] key) {
+        int hash = Arrays.hashCode(key);
+        return hash ^ (hash >>> 16);
+    }
+
+    private static long footprint(byte[] key) {
+        return (ARRAY_HEADER + key.length + 7) & ~7L;
+    }
+}
@@ -0,0 +1,499 @@
+package com.groot.server.chat.database;
+
+import com.groot.server.chat.constants.GlobalChangeType;
+import com.groot.server.chat.util.ServerMetrics;
+import com.groot.server.chat.util.TaskExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Write-ahead log of the global clients and chat rooms kept in a data directory.
+ * The changes recorded by the data store are appended to the current segment and a writer thread syncs
+ * all the appended changes at once. Before syncing it gathers more changes until the oldest one is as close
+ * to the sync budget as the slowest recent sync took, so a change waits the budget at most while the
+ * number of syncs stays low under load. After every SNAPSHOT_INTERVAL changes the log moves to a new
+ * segment and a snapshot of the registry is written, which makes the earlier segments obsolete.
+ * <p>
+ * On startup the latest readable snapshot and the segments after it are replayed into the data store,
+ * so the server comes back with its registry, its global version and the position it synchronized to.
+ */
+public class RegistryLog {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RegistryLog.class);
+    // the last byte of a magic number is the version of the file format
+    private static final int SEGMENT_MAGIC = 0x47524c31;
+    private static final int SNAPSHOT_MAGIC = 0x47525331;
+    // record kind of a synchronized position, the changes use the ordinal of their type
+    private static final byte SYNC = -1;
+    private static final int MAX_RECORD = 1 << 20;
+    private static final int SNAPSHOT_INTERVAL = 50000;
+    private static final long AWAIT_TIMEOUT = 1000;
+    private final Path directory;
+    private final DataStore store;
+    private final long syncBudget;
+    private final Object lock = new Object();
+    private final AtomicBoolean snapshotting = new AtomicBoolean();
+    // framed records waiting for the writer and the time the oldest of them was appended
+    private List<byte[]> pending = new ArrayList<>();
+    private long pendingSince;
+    private long appendedVersion;
+    private long durableVersion;
+    private boolean failed;
+    // owned by the writer thread
+    private FileChannel segment;
+    private int segmentIndex;
+    private int changesSinceSnapshot;
+    private long lastSyncTime;
+    // the slowest recent time from the end of the gathering until the changes were synced, decaying by a 32nd
+    // on every sync so a single slow one does not shrink the batches for long
+    private long syncEstimate;
+
+    private RegistryLog(Path directory, DataStore store, long syncBudget) {
+        this.directory = directory;
+        this.store = store;
+        this.syncBudget = TimeUnit.MILLISECONDS.toNanos(syncBudget);
+    }
+
+    /**
+     * Replays the data directory into the store and starts logging the changes of the store.
+     *
+     * @param syncBudget milliseconds a change may wait until it is synced to the disk
+     */
+    public static RegistryLog open(String directory, DataStore store, long syncBudget) throws IOException {
+        RegistryLog log = new RegistryLog(Paths.get(directory), store, syncBudget);
+        Files.createDirectories(log.directory);
+        log.replay();
+        log.segment = log.createSegment(log.segmentIndex);
+        log.appendedVersion = log.durableVersion = store.getGlobalVersion();
+        store.setGlobalLog(log);
+        Thread writer = new Thread(log::write, "registry-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        return log;
+    }
+
+    /**
+     * Queues the change for the next sync, called by the store in the order of the versions.
+     */
+    void append(GlobalChange change) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(change.getType().ordinal());
+            out.writeLong(change.getVersion());
+            out.writeUTF(change.getId());
+            out.writeBoolean(Objects.nonNull(change.getServerId()));
+            if (Objects.nonNull(change.getServerId())) {
+                out.writeUTF(change.getServerId());
+            }
+            enqueue(frame(bytes.toByteArray()), change.getVersion());
+        } catch (IOException e) {
+            LOGGER.error("Registry change encoding error ... {}", e.getMessage(), e);
+        }
+    }
+
+    void appendSync(String serverId, long epoch, long version) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(SYNC);
+            out.writeUTF(serverId);
+            out.writeLong(epoch);
+            out.writeLong(version);
+            enqueue(frame(bytes.toByteArray()), -1);
+        } catch (IOException e) {
+            LOGGER.error("Registry position encoding error ... {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Waits until the changes up to the given version are synced to the disk.
+     *
+     * @return false if the log failed or the changes were not synced in time
+     */
+    public boolean await(long version) {
+        long deadline = System.currentTimeMillis() + AWAIT_TIMEOUT;
+        synchronized (lock) {
+            while (durableVersion < version && !failed) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    LOGGER.warn("Registry version {} is not synced after {} ms ...", version, AWAIT_TIMEOUT);
+                    return false;
+                }
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return !failed;
+        }
+    }
+
+    private void enqueue(byte[] record, long version) {
+        synchronized (lock) {
+            if (failed) {
+                return;
+            }
+            if (pending.isEmpty()) {
+                pendingSince = System.nanoTime();
+            }
+            pending.add(record);
+            if (version > appendedVersion) {
+                appendedVersion = version;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    private void write() {
+        try {
+            while (true) {
+                long since;
+                synchronized (lock) {
+                    while (pending.isEmpty()) {
+                        lock.wait();
+                    }
+                    since = pendingSince;
+                }
+                // the gathering stops early enough for the oldest change to be synced by its deadline
+                long deadline = since + syncBudget - Math.min(syncEstimate, syncBudget);
+                long gathered = Math.max(deadline, System.nanoTime());
+                for (long gather = deadline - System.nanoTime(); gather > 0; gather = deadline - System.nanoTime()) {
+                    LockSupport.parkNanos(gather);
+                }
+                List<byte[]> batch;
+                long version;
+                synchronized (lock) {
+                    batch = pending;
+                    pending = new ArrayList<>();
+                    version = appendedVersion;
+                }
+                long started = System.nanoTime();
+                writeRecords(batch);
+                segment.force(false);
+                long synced = System.nanoTime();
+                lastSyncTime = synced - started;
+                // a late wake up from the gathering delays the changes as much as a slow sync does
+                syncEstimate = Math.max(synced - gathered, syncEstimate - syncEstimate / 32);
+                ServerMetrics.increment("registry.log.syncs");
+                ServerMetrics.add("registry.log.records", batch.size());
+                ServerMetrics.add("registry.log.sync.micros", TimeUnit.NANOSECONDS.toMicros(lastSyncTime));
+                if (synced - since > syncBudget) {
+                    ServerMetrics.increment("registry.log.syncs.over.budget");
+                }
+                synchronized (lock) {
+                    durableVersion = version;
+                    lock.notifyAll();
+                }
+                changesSinceSnapshot += batch.size();
+                if (changesSinceSnapshot >= SNAPSHOT_INTERVAL && snapshotting.compareAndSet(false, true)) {
+                    changesSinceSnapshot = 0;
+                    // the snapshot covers every change of the earlier segments since it is taken after moving on
+                    segment.close();
+                    segment = createSegment(++segmentIndex);
+                    int index = segmentIndex;
+                    TaskExecutor.execute(() -> writeSnapshot(index));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            LOGGER.error("Registry log writing error, the registry changes are no longer persisted ... {}", e.getMessage(), e);
+            synchronized (lock) {
+                failed = true;
+                pending.clear();
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void writeRecords(List<byte[]> records) throws IOException {
+        int size = 0;
+        for (byte[] record : records) {
+            size += record.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        records.forEach(buffer::put);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+    }
+
+    private FileChannel createSegment(int index) throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve(segmentName(index)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(12);
+        header.putInt(SEGMENT_MAGIC).putLong(store.getGlobalEpoch()).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        return channel;
+    }
+
+    private void writeSnapshot(int index) {
+        try {
+            GlobalSnapshot snapshot = store.getGlobalSnapshot();
+            String syncServer = store.getGlobalSyncServer();
+            Path temporary = directory.resolve(snapshotName(index) + ".tmp");
+            try (FileOutputStream file = new FileOutputStream(temporary.toFile())) {
+                CRC32 crc = new CRC32();
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc)));
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeLong(store.getGlobalEpoch());
+                out.writeLong(snapshot.getVersion());
+                out.writeUTF(Objects.isNull(syncServer) ? "" : syncServer);
+                out.writeLong(Objects.isNull(syncServer) ? 0 : store.getGlobalSyncEpoch(syncServer));
+                out.writeLong(Objects.isNull(syncServer) ? -1 : store.getGlobalSyncVersion(syncServer));
+                out.writeInt(snapshot.getClients().size());
+                for (String identity : snapshot.getClients()) {
+                    out.writeUTF(identity);
+                }
+                out.writeInt(snapshot.getChatRooms().size());
+                for (Map.Entry<String, String> chatRoom : snapshot.getChatRooms().entrySet()) {
+                    out.writeUTF(chatRoom.getKey());
+                    out.writeUTF(chatRoom.getValue());
+                }
+                out.flush();
+                new DataOutputStream(file).writeInt((int) crc.getValue());
+                file.getChannel().force(true);
+            }
+            Files.move(temporary, directory.resolve(snapshotName(index)), StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.info("Wrote the registry snapshot {} at version {} ...", index, snapshot.getVersion());
+            for (Path path : list()) {
+                int fileIndex = indexOf(path);
+                if (fileIndex >= 0 && fileIndex < index) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.error("Registry snapshot writing error ... {}", e.getMessage(), e);
+        } finally {
+            snapshotting.set(false);
+        }
+    }
+
+    private void replay() throws IOException {
+        TreeMap<Integer, Path> snapshots = new TreeMap<>();
+        TreeMap<Integer, Path> segments = new TreeMap<>();
+        for (Path path : list()) {
+            String name = path.getFileName().toString();
+            if (name.endsWith(".tmp")) {
+                Files.deleteIfExists(path);
+            } else if (name.startsWith("snapshot-")) {
+                snapshots.put(indexOf(path), path);
+            } else if (name.startsWith("wal-")) {
+                segments.put(indexOf(path), path);
+            }
+        }
+        int from = 0;
+        for (Map.Entry<Integer, Path> snapshot : snapshots.descendingMap().entrySet()) {
+            try {
+                readSnapshot(snapshot.getValue());
+                from = snapshot.getKey();
+                break;
+            } catch (IOException e) {
+                LOGGER.error("Skipping the unreadable registry snapshot {} ... {}", snapshot.getValue(), e.getMessage());
+            }
+        }
+        boolean restored = from > 0;
+        for (Map.Entry<Integer, Path> segment : segments.tailMap(from).entrySet()) {
+            restored = replaySegment(segment.getValue(), restored) || restored;
+        }
+        segmentIndex = Math.max(from, segments.isEmpty() ? 0 : segments.lastKey()) + 1;
+        LOGGER.info("Restored {} global clients and {} global chat rooms at version {} from {} ...",
+                store.getGlobalClientRegistry().size(), store.getGlobalChatRooms().size(), store.getGlobalVersion(), directory);
+    }
+
+    /**
+     * Maps the snapshot into memory and reads it in place, so loading a large registry costs one pass
+     * over the pages to verify the checksum and one to decode the entries.
+     */
+    private void readSnapshot(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 4 || size > Integer.MAX_VALUE) {
+                throw new IOException("Unexpected snapshot size " + size);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int end = (int) size - 4;
+            if (checksum(buffer, end) != buffer.getInt(end)) {
+                throw new IOException("Checksum mismatch");
+            }
+            buffer.limit(end);
+            if (buffer.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a registry snapshot");
+            }
+            long epoch = buffer.getLong();
+            long version = buffer.getLong();
+            String syncServer = readString(buffer);
+            long syncEpoch = buffer.getLong();
+            long syncVersion = buffer.getLong();
+            int clientCount = buffer.getInt();
+            List<String> clients = new ArrayList<>(clientCount);
+            for (int i = 0; i < clientCount; i++) {
+                clients.add(readString(buffer));
+            }
+            int chatRoomCount = buffer.getInt();
+            Map<String, String> chatRooms = new HashMap<>();
+            for (int i = 0; i < chatRoomCount; i++) {
+                chatRooms.put(readString(buffer), readString(buffer));
+            }
+            store.restoreGlobals(epoch, new GlobalSnapshot(version, clients, chatRooms));
+            if (!syncServer.isEmpty()) {
+                store.setGlobalSyncVersion(syncServer, syncEpoch, syncVersion);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated snapshot", e);
+        }
+    }
+
+    private static int checksum(ByteBuffer buffer, int length) {
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[65536];
+        ByteBuffer source = buffer.duplicate();
+        for (int offset = 0; offset < length; offset += chunk.length) {
+            int count = Math.min(chunk.length, length - offset);
+            source.get(chunk, 0, count);
+            crc.update(chunk, 0, count);
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Reads a string written with {@link DataOutputStream#writeUTF}, which is plain ASCII for the usual identities.
+     */
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getShort() & 0xffff;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        for (byte value : bytes) {
+            if (value < 0) {
+                ByteBuffer encoded = ByteBuffer.allocate(2 + length).putShort((short) length).put(bytes);
+                return new DataInputStream(new ByteArrayInputStream(encoded.array())).readUTF();
+            }
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Applies the records of the segment up to the first incomplete one, which is cut off since its sync never finished.
+     *
+     * @param restored whether an earlier snapshot or segment already set the epoch of the store
+     * @return whether the header of the segment was readable
+     */
+    private boolean replaySegment(Path path, boolean restored) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            long offset = 0;
+            try {
+                if (in.readInt() != SEGMENT_MAGIC) {
+                    LOGGER.error("Skipping the registry log {} with an unknown header ...", path);
+                    return false;
+                }
+                long epoch = in.readLong();
+                offset = 12;
+                if (!restored) {
+                    store.restoreGlobals(epoch, new GlobalSnapshot(0, Collections.emptyList(), Collections.emptyMap()));
+                }
+                CRC32 crc = new CRC32();
+                while (true) {
+                    int length;
+                    try {
+                        length = in.readInt();
+                    } catch (EOFException e) {
+                        return true;
+                    }
+                    int checksum = in.readInt();
+                    if (length <= 0 || length > MAX_RECORD) {
+                        break;
+                    }
+                    byte[] payload = new byte[length];
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(payload, 0, length);
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+                    apply(payload);
+                    offset += 8 + length;
+                }
+            } catch (EOFException e) {
+                // a record cut off by the end of the file
+            }
+            LOGGER.warn("Truncating the incomplete tail of the registry log {} at {} ...", path, offset);
+            channel.truncate(offset);
+            return offset > 0;
+        }
+    }
+
+    private void apply(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte kind = in.readByte();
+        if (kind == SYNC) {
+            store.setGlobalSyncVersion(in.readUTF(), in.readLong(), in.readLong());
+            return;
+        }
+        GlobalChangeType type = GlobalChangeType.values()[kind];
+        long version = in.readLong();
+        String id = in.readUTF();
+        String serverId = in.readBoolean() ? in.readUTF() : null;
+        store.replayGlobalChange(new GlobalChange(version, type, id, serverId));
+    }
+
+    private static byte[] frame(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return ByteBuffer.allocate(8 + payload.length)
+                .putInt(payload.length).putInt((int) crc.getValue()).put(payload).array();
+    }
+
+    private List<Path> list() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            List<Path> files = new ArrayList<>();
+            paths.filter(path -> indexOf(path) >= 0).forEach(files::add);
+            return files;
+        }
+    }
+
+    /**
+     * @return the index in the name of a snapshot or segment file, or -1 for the other files
+     */
+    private static int indexOf(Path path) {
+        String name = path.getFileName().toString();
+        int start = name.indexOf('-');
+        int end = name.indexOf('.');
+        if (start < 0 || end <= start || !(name.startsWith("snapshot-") || name.startsWith("wal-"))) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(start + 1, end));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String segmentName(int index) {
+        return String.format("wal-%010d.log", index);
+    }
+
+    private static String snapshotName(int index) {
+        return String.format("snapshot-%010d.dat", index);
+    }
+}
@@ -0,0 +1,108 @@
+package com.groot.server.chat.handler;
+
+import com.groot.server.chat.connection.ChannelClientConnection;
+import com.groot.server.chat.util.ClientRequest;
+import com.groot.server.chat.util.ClientRequestDecoder;
+import com.groot.server.chat.util.TaskExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Event loop serving many client channels from a single selector thread.
+ * The reactor only moves bytes, the decoded requests of a connection are dispatched one after the
+ * other on the shared task executor, a request awaiting another server is parked by the services.
+ */
+public class ClientReactor extends Thread {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientReactor.class);
+    private final ClientRequestDispatcher dispatcher = new ClientRequestDispatcher();
+    private final Queue<SocketChannel> registrations = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(8192);
+    private final Selector selector;
+
+    public ClientReactor(String name) throws IOException {
+        super(name);
+        this.selector = Selector.open();
+    }
+
+    public void register(SocketChannel channel) {
+        registrations.add(channel);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                selector.select();
+                registerPendingChannels();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+            } catch (Exception e) {
+                LOGGER.error("An error occurred in the reactor ... {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void registerPendingChannels() {
+        SocketChannel channel;
+        while ((channel = registrations.poll()) != null) {
+            try {
+                new ChannelClientConnection(channel, selector, this::failed);
+            } catch (IOException e) {
+                LOGGER.error("New client registration error ... {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        ChannelClientConnection connection = (ChannelClientConnection) key.attachment();
+        try {
+            if (key.isValid() && key.isReadable() && connection.read(readBuffer)) {
+                TaskExecutor.execute(() -> process(connection));
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.flush();
+            }
+        } catch (IOException e) {
+            LOGGER.error("Connection failed with the client ... {}", e.getMessage());
+            failed(connection);
+        }
+    }
+
+    private void failed(ChannelClientConnection connection) {
+        connection.closeNow();
+        TaskExecutor.execute(() -> dispatcher.removeFailedClient(connection));
+    }
+
+    private void process(ChannelClientConnection connection) {
+        ClientRequest request = new ClientRequest();
+        byte[] frame;
+        while (connection.isOpen() && (frame = connection.nextFrame()) != null) {
+            try {
+                ClientRequestDecoder.decode(frame, 0, frame.length, request);
+                if (!dispatcher.dispatch(connection, request)) {
+                    connection.close();
+                }
+            } catch (NullPointerException e) {
+                LOGGER.error("Unable to communicate with the client ... {}", e.getMessage());
+                connection.close();
+            } catch (Exception e) {
+                LOGGER.error("An error occurred ... {}", e.getMessage(), e);
+                connection.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.groot.server.chat.handler;
+
+import com.groot.server.chat.connection.ClientConnection;
+import com.groot.server.chat.constants.MessageType;
+import com.groot.server.chat.service.ChatRoomService;
+import com.groot.server.chat.service.ChatRoomServiceImpl;
+import com.groot.server.chat.service.ClientService;
+import com.groot.server.chat.service.ClientServiceImpl;
+import com.groot.server.chat.util.ClientRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Routes a client request to the matching service, shared by the blocking handlers and the reactors.
+ */
+public class ClientRequestDispatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientRequestDispatcher.class);
+    private final ClientService clientService = new ClientServiceImpl();
+    private final ChatRoomService chatRoomService = new ChatRoomServiceImpl();
+
+    /**
+     * @return false if the connection with the client should be closed
+     */
+    public boolean dispatch(ClientConnection connection, ClientRequest request) {
+        LOGGER.info("Received request ... {}", request);
+        MessageType type = required(request.getType(), "type");
+        boolean isConnected = true;
+        switch (type) {
+            case NEW_IDENTITY:
+                isConnected = parked(connection, clientService.createNewClient(connection, required(request.getIdentity(), "identity")));
+                break;
+            case LIST:
+                chatRoomService.getAllChatRooms(connection);
+                break;
+            case WHO:
+                chatRoomService.getAllClients(connection);
+                break;
+            case CREATE_ROOM:
+                chatRoomService.createNewChatRoom(connection, required(request.getRoomId(), "roomid"));
+                break;
+            case JOIN_ROOM:
+                isConnected = parked(connection, chatRoomService.joinChatRoom(connection, required(request.getRoomId(), "roomid")));
+                break;
+            case MOVE_JOIN:
+                clientService.moveJoin(connection, required(request.getIdentity(), "identity"),
+                        required(request.getFormer(), "former"), required(request.getRoomId(), "roomid"));
+                break;
+            case DELETE_ROOM:
+                chatRoomService.deleteChatRoom(connection, required(request.getRoomId(), "roomid"));
+                break;
+            case MESSAGE:
+                chatRoomService.sendMessage(connection, required(request.getContent(), "content"));
+                break;
+            case QUIT:
+                isConnected = clientService.removeClient(connection, false);
+                break;
+            default:
+                LOGGER.error("Message type {} not acceptable ...", type);
+                break;
+        }
+        return isConnected;
+    }
+
+    /**
+     * A request awaiting another server is parked, the connection keeps being served and is closed once the request
+     * completes with false. A request completed right away decides like any other request.
+     */
+    private static boolean parked(ClientConnection connection, CompletableFuture<Boolean> isConnected) {
+        if (isConnected.isDone()) {
+            return isConnected.join();
+        }
+        isConnected.thenAccept(connected -> {
+            if (!connected) {
+                connection.close();
+            }
+        });
+        return true;
+    }
+
+    /**
+     * A request without a mandatory field fails the same way the connection handlers expect from a malformed request.
+     */
+    private static <T> T required(T value, String field) {
+        return Objects.requireNonNull(value, "Missing " + field);
+    }
+
+    public void removeFailedClient(ClientConnection connection) {
+        clientService.removeClient(connection, true);
+    }
+}
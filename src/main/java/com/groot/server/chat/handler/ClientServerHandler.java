@@ -1,12 +1,8 @@
 package com.groot.server.chat.handler;
 
-import com.groot.server.chat.constants.MessageType;
-import com.groot.server.chat.service.ChatRoomService;
-import com.groot.server.chat.service.ChatRoomServiceImpl;
-import com.groot.server.chat.service.ClientService;
-import com.groot.server.chat.service.ClientServiceImpl;
-import com.groot.server.chat.util.MessageReader;
-import org.json.simple.JSONObject;
+import com.groot.server.chat.connection.SocketClientConnection;
+import com.groot.server.chat.util.ClientRequest;
+import com.groot.server.chat.util.FrameTooLongException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,64 +13,37 @@ import java.net.SocketException;
  * @author Melanga Kasun
  * @date (Fri) 18-Feb-2022
  */
-public class ClientServerHandler extends Thread {
+public class ClientServerHandler implements Runnable {
     private static final Logger LOGGER = LoggerFactory.getLogger(ClientServerHandler.class);
-    private final ClientService clientService = new ClientServiceImpl();
-    private final ChatRoomService chatRoomService = new ChatRoomServiceImpl();
+    private final ClientRequestDispatcher dispatcher = new ClientRequestDispatcher();
     private boolean isConnected = true;
-    private final Socket socket;
+    private final SocketClientConnection connection;
 
     public ClientServerHandler(Socket socket) {
-        this.socket = socket;
+        this.connection = new SocketClientConnection(socket);
     }
 
     @Override
     public void run() {
-        JSONObject request;
-        MessageType type;
+        ClientRequest request = new ClientRequest();
         try {
             while (isConnected) {
-                request = MessageReader.read(socket.getInputStream());
-                LOGGER.info("Received request ... {}", request);
-                type = MessageType.get(request.get("type").toString());
-                switch (type) {
-                    case NEW_IDENTITY:
-                        isConnected = clientService.createNewClient(socket, request.get("identity").toString());
-                        break;
-                    case LIST:
-                        chatRoomService.getAllChatRooms(socket);
-                        break;
-                    case WHO:
-                        chatRoomService.getAllClients(socket);
-                        break;
-                    case CREATE_ROOM:
-                        chatRoomService.createNewChatRoom(socket, request.get("roomid").toString());
-                        break;
-                    case JOIN_ROOM:
-                        isConnected = chatRoomService.joinChatRoom(socket, request.get("roomid").toString());
-                        break;
-                    case MOVE_JOIN:
-                        clientService.moveJoin(socket, request.get("identity").toString(),
-                                request.get("former").toString(), request.get("roomid").toString());
-                        break;
-                    case DELETE_ROOM:
-                        chatRoomService.deleteChatRoom(socket, request.get("roomid").toString());
-                        break;
-                    case MESSAGE:
-                        chatRoomService.sendMessage(socket, request.get("content").toString());
-                        break;
-                    case QUIT:
-                        isConnected = clientService.removeClient(socket, false);
-                        break;
-                    default:
-                        LOGGER.error("Message type {} not acceptable ...", type);
-                        break;
+                if (!connection.read(request)) {
+                    LOGGER.error("Unable to communicate with the client ... end of stream");
+                    break;
                 }
+                isConnected = dispatcher.dispatch(connection, request);
             }
-            socket.close();
+            connection.close();
         } catch (SocketException e) {
             LOGGER.error("Connection failed with the client ... {}", e.getMessage());
-            isConnected = clientService.removeClient(socket, true);
+            dispatcher.removeFailedClient(connection);
+            isConnected = false;
+        } catch (FrameTooLongException e) {
+            LOGGER.error("Disconnecting the client since the frame is too long ... {}", e.getMessage());
+            connection.closeNow();
+            dispatcher.removeFailedClient(connection);
+            isConnected = false;
         } catch (NullPointerException e) {
             LOGGER.error("Unable to communicate with the client ... {}", e.getMessage());
             isConnected = false;
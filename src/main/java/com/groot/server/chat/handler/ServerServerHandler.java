@@ -1,25 +1,38 @@
 package com.groot.server.chat.handler;
 
+import com.groot.server.chat.config.ServerConfig;
+import com.groot.server.chat.connection.PeerStream;
+import com.groot.server.chat.connection.ReplyHandle;
 import com.groot.server.chat.constants.MessageType;
+import com.groot.server.chat.constants.WireFormat;
 import com.groot.server.chat.service.*;
-import com.groot.server.chat.util.MessageReader;
+import com.groot.server.chat.util.MessageGenerator;
+import com.groot.server.chat.util.TaskExecutor;
 import org.json.simple.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.Socket;
+import java.util.List;
 import java.util.Objects;
 
 /**
+ * A neighbour which opens the connection with a hello message gets the wire format of the connection
+ * chosen from the formats it offers, otherwise the connection stays on JSON.
+ * Requests tagged with a correlation ID are answered on their own task, so a slow request does not hold
+ * back the other requests in flight on the connection. Untagged messages are handled in arrival order.
+ *
  * @author Melanga Kasun
  * @date (Fri) 18-Feb-2022
  */
-public class ServerServerHandler extends Thread {
+public class ServerServerHandler implements Runnable {
     private static final Logger LOGGER = LoggerFactory.getLogger(ServerServerHandler.class);
     private final CoordinationService coordinationService = new CoordinationServiceImpl();
     private final LeaderService leaderService = new LeaderServiceImpl();
     private final HeartBeatService heartBeatService = new HeartBeatServiceImpl();
     private final Socket socket;
+    private PeerStream stream;
 
     public ServerServerHandler(Socket socket) {
         this.socket = socket;
@@ -28,9 +41,66 @@ public class ServerServerHandler extends Thread {
     @Override
     public void run() {
         JSONObject request;
+        try {
+            // neighbours keep the connection open and send many requests over it
+            stream = new PeerStream(socket);
+            request = stream.readHandshake();
+            if (Objects.nonNull(request) && MessageType.get(String.valueOf(request.get("type"))) == MessageType.HELLO) {
+                WireFormat format = chooseWireFormat((List<?>) request.get("formats"));
+                stream.send(MessageGenerator.helloResponse(format.name()));
+                stream.setFormat(format);
+                LOGGER.info("Using {} wire format with the connected server ...", format);
+                request = stream.next();
+            }
+            for (; Objects.nonNull(request); request = stream.next()) {
+                Object correlationId = request.remove("cid");
+                if (Objects.nonNull(correlationId)) {
+                    JSONObject taggedRequest = request;
+                    TaskExecutor.execute(() -> handle(taggedRequest, correlationId));
+                } else {
+                    handle(request, null);
+                }
+            }
+            LOGGER.info("Connection closed with the connected server ...");
+        } catch (Exception e) {
+            LOGGER.error("Connection failed with the connected server ... {}", e.getMessage());
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                LOGGER.error("Server socket closing error ... {}", e.getMessage());
+            }
+        }
+    }
+
+    private WireFormat chooseWireFormat(List<?> offered) {
+        WireFormat preferred = ServerConfig.getInstance().getPeerWireFormat();
+        if (Objects.nonNull(offered) && offered.contains(preferred.name())) {
+            return preferred;
+        }
+        return WireFormat.JSON;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ReplyHandle replyHandle(Object correlationId) {
+        return response -> {
+            if (Objects.nonNull(correlationId)) {
+                response.put("cid", correlationId);
+            }
+            stream.send(response);
+        };
+    }
+
+    /**
+     * A request which cannot be handled is answered with an error if the requester awaits a response, the
+     * connection stays open since the other requests in flight on it are not affected.
+     *
+     * @param correlationId the ID the response is tagged with, or null if no response is awaited
+     */
+    private void handle(JSONObject request, Object correlationId) {
+        ReplyHandle reply = replyHandle(correlationId);
         MessageType type;
         try {
-            request = MessageReader.read(socket.getInputStream());
             LOGGER.info("Received request ... {}", request);
             type = MessageType.get(request.get("type").toString());
 
@@ -39,77 +109,104 @@ public class ServerServerHandler extends Thread {
                     // request from server for check the identity uniqueness
                     if (Objects.nonNull(request.get("approved")) && request.get("approved").equals("forwarded")
                             && Objects.nonNull(request.get("serverid"))) {
-                        leaderService.checkClientRegistered(socket, request.get("identity").toString(),
+                        leaderService.checkClientRegistered(reply, request.get("identity").toString(),
                                 request.get("serverid").toString());
                     }
                     // request from server about the client creation
                     else if (Objects.nonNull(request.get("created")) && request.get("created").equals("true")) {
                         leaderService.createGlobalClient(request.get("identity").toString());
-                        socket.close();
                     }
                     // request from leader to update global client list
                     else if (Objects.nonNull(request.get("approved")) && request.get("approved").equals("true")) {
                         coordinationService.updateGlobalClients(request.get("identity").toString(), true);
-                        socket.close();
+                        updateGlobalSyncVersion(request);
                     }
                     break;
                 case CREATE_ROOM:
                     // request from server for check the identity uniqueness
                     if (Objects.nonNull(request.get("approved")) && request.get("approved").equals("forwarded")
                             && Objects.nonNull(request.get("serverid"))) {
-                        leaderService.checkChatRoomRegistered(socket, request.get("roomid").toString(),
+                        leaderService.checkChatRoomRegistered(reply, request.get("roomid").toString(),
                                 request.get("serverid").toString());
                     }
                     // request from server about the client creation
                     else if (Objects.nonNull(request.get("created")) && request.get("created").equals("true")) {
-                        leaderService.createGlobalChatRoom(request.get("roomid").toString());
-                        socket.close();
+                        // servers which reserved the room with another owner send the server of the room
+                        leaderService.createGlobalChatRoom(request.get("roomid").toString(),
+                                Objects.nonNull(request.get("serverid")) ? request.get("serverid").toString() : null);
                     }
                     // request from leader to update global client list
                     else if (Objects.nonNull(request.get("approved")) && request.get("approved").equals("true")
                             && Objects.nonNull(request.get("serverid"))) {
                         coordinationService.updateGlobalChatRooms(request.get("roomid").toString(),
                                 request.get("serverid").toString(), true);
-                        socket.close();
+                        updateGlobalSyncVersion(request);
                     }
                     break;
+                case GLOBAL_DELTA:
+                    // batch of changes from the leader or deletions from another server, applied at once
+                    @SuppressWarnings("unchecked")
+                    List<JSONObject> changes = (List<JSONObject>) request.get("changes");
+                    coordinationService.applyGlobalDelta(changes);
+                    updateGlobalSyncVersion(request);
+                    break;
                 case JOIN_ROOM:
-                    leaderService.getServerByChatRoomId(socket, request.get("roomid").toString());
+                    leaderService.getServerByChatRoomId(reply, request.get("roomid").toString());
                     break;
                 case DELETE_ROOM:
                     coordinationService.updateGlobalChatRooms(request.get("roomid").toString(),
                             request.get("serverid").toString(), false);
-                    socket.close();
                     break;
                 case QUIT:
                     coordinationService.updateGlobalClients(request.get("identity").toString(), false);
-                    socket.close();
                     break;
                 case IAM_UP:
-                    coordinationService.sendCurrentView(socket, request.get("serverid").toString());
+                    coordinationService.sendCurrentView(reply, request.get("serverid").toString());
                     break;
                 case ELECTION:
-                    coordinationService.participateElection(socket);
+                    coordinationService.participateElection(reply);
+                    break;
+                case NOMINATION:
+                    coordinationService.acceptNomination(reply, request.get("serverid").toString());
                     break;
                 case COORDINATOR:
                     coordinationService.updateLeader(request.get("leader").toString());
-                    socket.close();
                     break;
                 case GLOBALS:
-                    coordinationService.sendGlobalData(socket);
+                    // servers without a change log do not send the version they have applied
+                    coordinationService.sendGlobalData(reply, Objects.nonNull(request.get("since"))
+                            ? ((Number) request.get("since")).longValue() : -1, Objects.nonNull(request.get("epoch"))
+                            ? ((Number) request.get("epoch")).longValue() : -1);
+                    break;
+                case LEASE:
+                    @SuppressWarnings("unchecked")
+                    List<String> holders = (List<String>) request.get("holders");
+                    @SuppressWarnings("unchecked")
+                    List<Number> durations = (List<Number>) request.get("durations");
+                    coordinationService.updateNameLeases(holders, durations);
                     break;
                 case HEARTBEAT:
-                    heartBeatService.sendResponse(socket, request.get("serverid").toString());
+                    heartBeatService.sendResponse(reply, request.get("serverid").toString());
                     break;
                 default:
-                    LOGGER.error("Message type {} not acceptable ...", type);
-                    socket.close();
+                    LOGGER.error("Message type {} not acceptable ...", request.get("type"));
+                    if (Objects.nonNull(correlationId)) {
+                        reply.send(MessageGenerator.errorMessage(String.valueOf(request.get("type"))));
+                    }
                     break;
             }
         } catch (NullPointerException e) {
-            LOGGER.error("Connection closed with the connected server ... {}", e.getMessage());
+            LOGGER.error("Invalid request from the connected server ... {}", e.getMessage());
         } catch (Exception e) {
             LOGGER.error("An error occurred ... {}", e.getMessage(), e);
         }
     }
+
+    private void updateGlobalSyncVersion(JSONObject request) {
+        // the leaders without a change log do not send a version
+        if (Objects.nonNull(request.get("version")) && Objects.nonNull(request.get("epoch"))) {
+            coordinationService.updateGlobalSyncVersion(((Number) request.get("epoch")).longValue(),
+                    ((Number) request.get("version")).longValue());
+        }
+    }
 }
@@ -1,10 +1,12 @@
 package com.groot.server.chat.repository;
 
 import com.groot.server.chat.config.DataStoreConfig;
+import com.groot.server.chat.connection.ClientConnection;
 import com.groot.server.chat.database.ChatClient;
 import com.groot.server.chat.database.DataStore;
 
-import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -17,6 +19,7 @@ public class ClientRepository {
     public void createClient(ChatClient client) {
         store = DataStoreConfig.getInstance();
         store.addClient(client);
+        client.getConnection().setClient(client);
     }
 
     public ChatClient getClientById(String identity) {
@@ -26,16 +29,29 @@ public class ClientRepository {
 
     public void removeClient(String identity) {
         store = DataStoreConfig.getInstance();
+        ChatClient client = store.getClient(identity);
         store.removeClient(identity);
+        if (Objects.nonNull(client) && client.getConnection().getClient() == client) {
+            client.getConnection().setClient(null);
+        }
+    }
+
+    public ChatClient getClientByConnection(ClientConnection connection) {
+        return connection.getClient();
     }
 
-    public ChatClient getClientBySocket(Socket socket) {
+    /**
+     * @return the number of messages waiting to be written for each client with a non empty outbound queue
+     */
+    public Map<String, Integer> getQueuedMessagesByClient() {
         store = DataStoreConfig.getInstance();
+        Map<String, Integer> queued = new HashMap<>();
         for (ChatClient client : store.getClients().values()) {
-            if (Objects.equals(client.getSocket(), socket)) {
-                return client;
+            int size = client.getConnection().getQueuedMessages();
+            if (size > 0) {
+                queued.put(client.getIdentity(), size);
             }
         }
-        return null;
+        return queued;
     }
 }
@@ -2,6 +2,7 @@ package com.groot.server.chat.repository;
 
 import com.groot.server.chat.config.DataStoreConfig;
 import com.groot.server.chat.database.DataStore;
+import com.groot.server.chat.database.GlobalChange;
 
 import java.util.List;
 import java.util.Map;
@@ -13,9 +14,9 @@ import java.util.Map;
 public class CoordinationRepository {
     private DataStore store;
 
-    public void addNewGlobalClient(String identity) {
+    public long addNewGlobalClient(String identity) {
         store = DataStoreConfig.getInstance();
-        store.addNewGlobalClient(identity);
+        return store.addNewGlobalClient(identity);
     }
 
     public boolean isGlobalClient(String identity) {
@@ -33,9 +34,9 @@ public class CoordinationRepository {
         store.updateGlobalClients(clients);
     }
 
-    public void addNewGlobalChatRoom(String roomId, String serverId) {
+    public long addNewGlobalChatRoom(String roomId, String serverId) {
         store = DataStoreConfig.getInstance();
-        store.addNewGlobalChatRoom(roomId, serverId);
+        return store.addNewGlobalChatRoom(roomId, serverId);
     }
 
     public boolean isGlobalChatRoom(String roomId) {
@@ -53,8 +54,23 @@ public class CoordinationRepository {
         store.deleteGlobalChatRoom(roomId);
     }
 
+    public void applyGlobalChanges(List<GlobalChange> changes) {
+        store = DataStoreConfig.getInstance();
+        store.applyGlobalChanges(changes);
+    }
+
     public void updateGlobalChatRooms(Map<String, String> chatRooms) {
         store = DataStoreConfig.getInstance();
         store.updateGlobalChatRooms(chatRooms);
     }
+
+    public long getGlobalEpoch() {
+        store = DataStoreConfig.getInstance();
+        return store.getGlobalEpoch();
+    }
+
+    public boolean awaitGlobalPersisted(long version) {
+        store = DataStoreConfig.getInstance();
+        return store.awaitGlobalPersisted(version);
+    }
 }
@@ -25,6 +25,11 @@ public class LeaderRepository {
         return store.isPendingChatRoom(roomId, serverId);
     }
 
+    public String getPendingChatRoomServer(String roomId) {
+        store = DataStoreConfig.getInstance();
+        return store.getPendingChatRoomServer(roomId);
+    }
+
     public String removePendingChatRoom(String roomId) {
         store = DataStoreConfig.getInstance();
         return store.removePendingChatRoom(roomId);
@@ -1,22 +1,33 @@
 package com.groot.server.chat.service;
 
+import com.groot.server.chat.connection.ClientConnection;
 import com.groot.server.chat.database.ChatClient;
-import org.json.simple.JSONObject;
+import com.groot.server.chat.util.EncodedMessage;
 
-import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Melanga Kasun
  * @date (Fri) 18-Feb-2022
  */
 public interface ChatRoomService {
-    void getAllChatRooms(Socket socket);
-    void getAllClients(Socket socket);
-    boolean createNewChatRoom(Socket socket, String roomId);
+    void getAllChatRooms(ClientConnection connection);
+    void getAllClients(ClientConnection connection);
+    /**
+     * @return completed with true once the chat room is created, the approval of another server is awaited without
+     * holding the calling thread
+     */
+    CompletableFuture<Boolean> createNewChatRoom(ClientConnection connection, String roomId);
     void createMainHallChatRoom();
-    boolean joinChatRoom(Socket socket, String roomId);
-    boolean deleteChatRoom(Socket socket, String roomId);
-    void sendMessage(Socket socket, String content);
+    /**
+     * @return completed with false once the client is routed to another server or fails and the connection should be
+     * closed, the owner of a remote chat room is looked up without holding the calling thread
+     */
+    CompletableFuture<Boolean> joinChatRoom(ClientConnection connection, String roomId);
+    boolean deleteChatRoom(ClientConnection connection, String roomId);
+    void sendMessage(ClientConnection connection, String content);
     void addToMainHall(ChatClient client);
-    void broadCastMessage(JSONObject message, String roomId, String identity);
+    void addToChatRoom(ChatClient client, String roomId, EncodedMessage message, String identity);
+    void removeFromChatRoom(ChatClient client, String roomId, EncodedMessage message, String identity);
+    void broadCastMessage(EncodedMessage message, String roomId, String identity);
 }
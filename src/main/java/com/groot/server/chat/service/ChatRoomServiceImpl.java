@@ -1,25 +1,32 @@
 package com.groot.server.chat.service;
 
 import com.groot.server.chat.config.DataStoreConfig;
+import com.groot.server.chat.config.ServerConfig;
+import com.groot.server.chat.connection.ClientConnection;
+import com.groot.server.chat.constants.RoomExecutionMode;
 import com.groot.server.chat.database.ChatClient;
 import com.groot.server.chat.database.ChatRoom;
 import com.groot.server.chat.database.ChatServer;
 import com.groot.server.chat.repository.ChatRoomRepository;
 import com.groot.server.chat.repository.ClientRepository;
 import com.groot.server.chat.repository.CoordinationRepository;
+import com.groot.server.chat.util.ClientMessageEncoder;
 import com.groot.server.chat.util.DataValidator;
-import com.groot.server.chat.util.MessageGenerator;
-import com.groot.server.chat.util.MessageSender;
-import org.json.simple.JSONObject;
+import com.groot.server.chat.util.EncodedMessage;
+import com.groot.server.chat.util.ServerMetrics;
+import com.groot.server.chat.util.TaskExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.net.Socket;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
+ * The membership changes and broadcasts of a room, and the listings of its members, run through
+ * {@link #inRoom(ChatRoom, Runnable)} so that in MAILBOX mode they are processed in order by the mailbox of the room.
+ *
  * @author Melanga Kasun
  * @date (Fri) 18-Feb-2022
  */
@@ -32,29 +39,26 @@ public class ChatRoomServiceImpl implements ChatRoomService {
     private final CoordinationRepository coordinationRepository = new CoordinationRepository();
 
     @Override
-    public void getAllChatRooms(Socket socket) {
+    public void getAllChatRooms(ClientConnection connection) {
         LOGGER.info("Getting all the chat rooms ...");
         try {
             List<String> chatRoomList = repository.getAllChatRoomIds();
             LOGGER.info("Successfully retrieved the chat rooms {} ...", chatRoomList.toArray());
-            MessageSender.send(socket.getOutputStream(), MessageGenerator.roomListMessage(chatRoomList));
+            connection.send(ClientMessageEncoder.roomListMessage(chatRoomList));
         } catch (Exception e) {
             LOGGER.error("Chat rooms retrieval error ... {}", e.getMessage(), e);
         }
     }
 
     @Override
-    public void getAllClients(Socket socket) {
+    public void getAllClients(ClientConnection connection) {
         try {
-            ChatClient client = clientRepository.getClientBySocket(socket);
+            ChatClient client = clientRepository.getClientByConnection(connection);
             if (Objects.nonNull(client)) {
                 LOGGER.info("Getting all the clients of the chat room {} ...", client.getRoomId());
                 ChatRoom chatRoom = repository.getChatRoomById(client.getRoomId());
                 if (Objects.nonNull(chatRoom)) {
-                    List<String> clients = chatRoom.getAllClients().stream().map(ChatClient::getIdentity).collect(Collectors.toList());
-                    LOGGER.info("Successfully retrieved the clients {} ...", clients);
-                    MessageSender.send(socket.getOutputStream(),
-                            MessageGenerator.roomContentsMessage(client.getRoomId(), chatRoom.getOwner(), clients));
+                    inRoom(chatRoom, () -> sendRoomContents(connection, chatRoom));
                 }
             }
         } catch (Exception e) {
@@ -62,61 +66,80 @@ public class ChatRoomServiceImpl implements ChatRoomService {
         }
     }
 
+    private void sendRoomContents(ClientConnection connection, ChatRoom chatRoom) {
+        try {
+            List<String> clients = chatRoom.getAllClients().stream().map(ChatClient::getIdentity).collect(Collectors.toList());
+            LOGGER.info("Successfully retrieved the clients {} ...", clients);
+            connection.send(ClientMessageEncoder.roomContentsMessage(chatRoom.getRoomId(), chatRoom.getOwner(), clients));
+        } catch (Exception e) {
+            LOGGER.error("Clients retrieval error ... {}", e.getMessage(), e);
+        }
+    }
+
     @Override
-    public boolean createNewChatRoom(Socket socket, String roomId) {
+    public CompletableFuture<Boolean> createNewChatRoom(ClientConnection connection, String roomId) {
         LOGGER.info("Validating chat room {} ...", roomId);
         try {
             if (!DataValidator.validateString(roomId)) {
                 LOGGER.error("Chat room {} not a valid string ...", roomId);
-                MessageSender.send(socket.getOutputStream(), MessageGenerator.createRoomMessage(roomId, "false"));
-                return false;
+                connection.send(ClientMessageEncoder.createRoomMessage(roomId, "false"));
+                return CompletableFuture.completedFuture(false);
             }
-            ChatClient client = clientRepository.getClientBySocket(socket);
+            ChatClient client = clientRepository.getClientByConnection(connection);
             if (Objects.isNull(client)) {
                 LOGGER.error("Client not exists ...");
-                MessageSender.send(socket.getOutputStream(), MessageGenerator.createRoomMessage(roomId, "false"));
-                return false;
+                connection.send(ClientMessageEncoder.createRoomMessage(roomId, "false"));
+                return CompletableFuture.completedFuture(false);
             }
             // check uniqueness locally
             ChatRoom chatRoom = repository.getChatRoomById(roomId);
             if (Objects.nonNull(chatRoom)) {
                 LOGGER.error("Chat room {} already exists ...", roomId);
-                MessageSender.send(socket.getOutputStream(), MessageGenerator.createRoomMessage(roomId, "false"));
-                return false;
+                connection.send(ClientMessageEncoder.createRoomMessage(roomId, "false"));
+                return CompletableFuture.completedFuture(false);
             }
-            if (coordinationService.isLeaderAcceptedChatRoom(roomId)) {
-                LOGGER.info("Chat room {} is is accepted by the leader ...", roomId);
-                return saveChatRoom(roomId, client);
-            }
-            LOGGER.error("Chat room {} already exists in another server ...", roomId);
-            MessageSender.send(socket.getOutputStream(), MessageGenerator.createRoomMessage(roomId, "false"));
-            return false;
+            long t1 = 10000;
+            return TaskExecutor.handle(coordinationService.isLeaderAcceptedChatRoomAsync(roomId, t1), (isAccepted, e) -> {
+                if (Objects.nonNull(e)) {
+                    LOGGER.error("Chat room creation acceptance error ... {}", e.getMessage());
+                } else if (isAccepted) {
+                    LOGGER.info("Chat room {} is is accepted by the leader ...", roomId);
+                    return saveChatRoom(roomId, client);
+                } else {
+                    LOGGER.error("Chat room {} already exists in another server ...", roomId);
+                }
+                send(connection, ClientMessageEncoder.createRoomMessage(roomId, "false"));
+                return false;
+            });
         } catch (Exception e) {
             LOGGER.error("Chat room validation error ... {}", e.getMessage(), e);
-            return false;
+            return CompletableFuture.completedFuture(false);
         }
     }
 
     private boolean saveChatRoom(String roomId, ChatClient client) {
         LOGGER.info("Creating chat room {} ...", roomId);
         try {
+            if (!client.getConnection().isOpen()) {
+                // the reservation of the chat room expires at its owner like the one of any rejected chat room
+                LOGGER.error("Client {} disconnected while the chat room {} was awaited ...", client.getIdentity(), roomId);
+                return false;
+            }
             // create the chat room
             ChatRoom chatRoom = new ChatRoom(roomId, client.getIdentity());
             repository.createChatRoom(chatRoom);
             LOGGER.info("Successfully saved the chat room {} ...", roomId);
-            MessageSender.send(client.getSocket().getOutputStream(), MessageGenerator.createRoomMessage(roomId, "true"));
+            client.getConnection().send(ClientMessageEncoder.createRoomMessage(roomId, "true"));
 
-            ChatRoom oldChatRoom = repository.getChatRoomById(client.getRoomId());
-            broadCastMessage(MessageGenerator.roomChangeMessage(client.getIdentity(), oldChatRoom.getRoomId(), roomId),
-                    oldChatRoom.getRoomId(), "");
-
-            // remove owner from old chat room and add owner to the chat room
-            repository.removeClientFromChatRoom(oldChatRoom.getRoomId(), client);
+            // add owner to the chat room before announcing the leave, so a member reacting to the announcement
+            // already finds the owner in the new chat room
+            String former = client.getRoomId();
+            addToChatRoom(client, roomId, null, "");
             client.setRoomId(roomId);
-            repository.addClientToChatRoom(roomId, client);
+            removeFromChatRoom(client, former, ClientMessageEncoder.roomChangeMessage(client.getIdentity(), former, roomId), "");
 
             if (DataStoreConfig.getInstance().isLeaderMyself()) {
-                leaderService.createGlobalChatRoom(roomId);
+                leaderService.createGlobalChatRoom(roomId, DataStoreConfig.getInstance().getCurrent().getServerId());
             } else {
                 // inform the leader
                 coordinationService.notifyChatRoomCreation(roomId);
@@ -141,40 +164,47 @@ public class ChatRoomServiceImpl implements ChatRoomService {
     }
 
     @Override
-    public boolean joinChatRoom(Socket socket, String roomId) {
+    public CompletableFuture<Boolean> joinChatRoom(ClientConnection connection, String roomId) {
+        long start = System.nanoTime();
+        CompletableFuture<Boolean> joined = join(connection, roomId);
+        joined.whenComplete((isConnected, e) -> ServerMetrics.sample("room.join.micros", (System.nanoTime() - start) / 1000));
+        return joined;
+    }
+
+    private CompletableFuture<Boolean> join(ClientConnection connection, String roomId) {
         try {
-            ChatClient client = clientRepository.getClientBySocket(socket);
+            ChatClient client = clientRepository.getClientByConnection(connection);
             // check the owner
             if (repository.getChatRoomById(client.getRoomId()).getOwner().equals(client.getIdentity())) {
                 LOGGER.error("Client {} is the owner of the current chat room ...", client.getIdentity());
-                MessageSender.send(socket.getOutputStream(),
-                        MessageGenerator.roomChangeMessage(client.getIdentity(), roomId, roomId));
-                return true;
+                connection.send(ClientMessageEncoder.roomChangeMessage(client.getIdentity(), roomId, roomId));
+                return CompletableFuture.completedFuture(true);
             }
             ChatRoom chatRoom = repository.getChatRoomById(roomId);
             if (Objects.isNull(chatRoom)) {
-                String globalServerId = coordinationService.getChatRoomOwningServer(roomId, client.getIdentity());
-                if (Objects.nonNull(globalServerId)) {
-                    LOGGER.info("Successfully retrieved the server {} of the chat room {} ...", globalServerId, roomId);
-                    return addToRoomInNewServer(roomId, client.getIdentity(), globalServerId);
-                }
-                LOGGER.error("Chat room {} is not available in the system ...", roomId);
-                MessageSender.send(socket.getOutputStream(),
-                        MessageGenerator.roomChangeMessage(client.getIdentity(), roomId, roomId));
-                return true;
+                long t1 = 10000;
+                return TaskExecutor.handle(coordinationService.getChatRoomOwningServerAsync(roomId, t1), (globalServerId, e) -> {
+                    if (Objects.nonNull(e)) {
+                        LOGGER.error("Room owning server finding error ... {}", e.getMessage());
+                    } else if (Objects.nonNull(globalServerId)) {
+                        LOGGER.info("Successfully retrieved the server {} of the chat room {} ...", globalServerId, roomId);
+                        return addToRoomInNewServer(roomId, client.getIdentity(), globalServerId);
+                    }
+                    LOGGER.error("Chat room {} is not available in the system ...", roomId);
+                    send(connection, ClientMessageEncoder.roomChangeMessage(client.getIdentity(), roomId, roomId));
+                    return true;
+                });
             }
             // room is in same server
-            repository.removeClientFromChatRoom(client.getRoomId(), client);
-            LOGGER.info("Removed the Client {} from the chat room {} ...", client.getIdentity(), client.getRoomId());
-            broadCastMessage(MessageGenerator.roomChangeMessage(client.getIdentity(), client.getRoomId(), roomId), client.getRoomId(), "");
-            repository.addClientToChatRoom(roomId, client);
-            LOGGER.info("Added the Client {} to the chat room {} ...", client.getIdentity(), roomId);
-            broadCastMessage(MessageGenerator.roomChangeMessage(client.getIdentity(), client.getRoomId(), roomId), roomId, "");
+            EncodedMessage roomChange = ClientMessageEncoder.roomChangeMessage(client.getIdentity(), client.getRoomId(), roomId);
+            String former = client.getRoomId();
+            addToChatRoom(client, roomId, roomChange, "");
             client.setRoomId(roomId);
-            return true;
+            removeFromChatRoom(client, former, roomChange, client.getIdentity());
+            return CompletableFuture.completedFuture(true);
         } catch (Exception e) {
             LOGGER.error("Chat room joining error ... {}", e.getMessage(), e);
-            return false;
+            return CompletableFuture.completedFuture(false);
         }
     }
 
@@ -185,15 +215,12 @@ public class ChatRoomServiceImpl implements ChatRoomService {
                 ChatServer server = DataStoreConfig.getInstance().getNeighbourById(serverId);
 
                 if (Objects.nonNull(client) && Objects.nonNull(server)) {
-                    MessageSender.send(client.getSocket().getOutputStream(),
-                            MessageGenerator.routeMessage(roomId, server.getServerAddress(), server.getClientsPort()));
+                    client.getConnection().send(ClientMessageEncoder.routeMessage(roomId, server.getServerAddress(), server.getClientsPort()));
                     LOGGER.info("Chat room {} exists in server {} {}:{} ...", roomId, serverId, server.getServerAddress(), server.getClientsPort());
-                    repository.removeClientFromChatRoom(client.getRoomId(), client);
-                    LOGGER.info("Removed the Client {} from the chat room {} ...", client.getIdentity(), client.getRoomId());
+                    removeFromChatRoom(client, client.getRoomId(),
+                            ClientMessageEncoder.roomChangeMessage(client.getIdentity(), client.getRoomId(), roomId), client.getIdentity());
                     clientRepository.removeClient(identity);
                     LOGGER.info("Removed the Client {} from the server ...", client.getIdentity());
-                    broadCastMessage(MessageGenerator.roomChangeMessage(client.getIdentity(), client.getRoomId(), roomId),
-                            client.getRoomId(), client.getIdentity());
                     // close the connection with the client
                     return false;
                 }
@@ -205,9 +232,9 @@ public class ChatRoomServiceImpl implements ChatRoomService {
     }
 
     @Override
-    public boolean deleteChatRoom(Socket socket, String roomId) {
+    public boolean deleteChatRoom(ClientConnection connection, String roomId) {
         try {
-            ChatClient client = clientRepository.getClientBySocket(socket);
+            ChatClient client = clientRepository.getClientByConnection(connection);
             if (Objects.isNull(client)) {
                 LOGGER.error("Client not exists ...");
                 return false;
@@ -215,23 +242,21 @@ public class ChatRoomServiceImpl implements ChatRoomService {
             ChatRoom chatRoom = repository.getChatRoomById(roomId);
             if (Objects.isNull(chatRoom)) {
                 LOGGER.error("Chat room {} not exists ...", roomId);
-                MessageSender.send(socket.getOutputStream(), MessageGenerator.deleteRoomMessageToClient(roomId, "false"));
+                connection.send(ClientMessageEncoder.deleteRoomMessageToClient(roomId, "false"));
                 return false;
             }
             LOGGER.info("Successfully retrieved the chat room {} ...", roomId);
             if (!chatRoom.getOwner().equals(client.getIdentity())) {
                 LOGGER.error("Client {} is not the owner of the chat room {} ...", client.getIdentity(), roomId);
-                MessageSender.send(socket.getOutputStream(), MessageGenerator.deleteRoomMessageToClient(roomId, "false"));
+                connection.send(ClientMessageEncoder.deleteRoomMessageToClient(roomId, "false"));
                 return false;
             }
             String mainHall = DataStoreConfig.getInstance().getMainHall();
-            MessageSender.send(socket.getOutputStream(), MessageGenerator.deleteRoomMessageToClient(roomId, "true"));
-            for (ChatClient participant : chatRoom.getAllClients()) {
-                addToMainHall(participant);
-                broadCastMessage(MessageGenerator.roomChangeMessage(participant.getIdentity(), chatRoom.getRoomId(),
-                        mainHall), chatRoom.getRoomId(), "");
-                broadCastMessage(MessageGenerator.roomChangeMessage(participant.getIdentity(), chatRoom.getRoomId(),
-                        mainHall), mainHall, participant.getIdentity());
+            connection.send(ClientMessageEncoder.deleteRoomMessageToClient(roomId, "true"));
+            for (ChatClient participant : repository.getAllClientsOfChatRoom(chatRoom.getRoomId())) {
+                EncodedMessage roomChange = ClientMessageEncoder.roomChangeMessage(participant.getIdentity(), chatRoom.getRoomId(), mainHall);
+                addToChatRoom(participant, mainHall, roomChange, participant.getIdentity());
+                broadCastMessage(roomChange, chatRoom.getRoomId(), "");
                 participant.setRoomId(mainHall);
             }
             repository.deleteChatRoom(roomId);
@@ -247,12 +272,12 @@ public class ChatRoomServiceImpl implements ChatRoomService {
     }
 
     @Override
-    public void sendMessage(Socket socket, String content) {
+    public void sendMessage(ClientConnection connection, String content) {
         try {
-            ChatClient client = clientRepository.getClientBySocket(socket);
+            ChatClient client = clientRepository.getClientByConnection(connection);
             if (Objects.nonNull(client)) {
                 LOGGER.info("Broadcasting the message by client {} ...", client.getIdentity());
-                broadCastMessage(MessageGenerator.message(client.getIdentity(), content), client.getRoomId(), client.getIdentity());
+                broadCastMessage(ClientMessageEncoder.message(client.getIdentity(), content), client.getRoomId(), client.getIdentity());
             }
         } catch (Exception e) {
             LOGGER.error("Message broadcasting error ... {}", e.getMessage(), e);
@@ -261,21 +286,84 @@ public class ChatRoomServiceImpl implements ChatRoomService {
 
     @Override
     public void addToMainHall(ChatClient client) {
-        repository.addClientToChatRoom(DataStoreConfig.getInstance().getMainHall(), client);
-        LOGGER.info("Added the Client {} to the Main Hall ...", client.getIdentity());
+        addToChatRoom(client, DataStoreConfig.getInstance().getMainHall(), null, "");
     }
 
+    /**
+     * Adds the client to the chat room and announces it to the members except the given identity.
+     */
     @Override
-    public void broadCastMessage(JSONObject message, String roomId, String identity) {
-        try {
-            for (ChatClient client : repository.getAllClientsOfChatRoom(roomId)) {
-                if (!client.getIdentity().equals(identity)) {
-                    MessageSender.send(client.getSocket().getOutputStream(), message);
-                    LOGGER.info("Sent message to client {} ...", client.getIdentity());
-                }
+    public void addToChatRoom(ChatClient client, String roomId, EncodedMessage message, String identity) {
+        ChatRoom chatRoom = repository.getChatRoomById(roomId);
+        inRoom(chatRoom, () -> {
+            repository.addClientToChatRoom(roomId, client);
+            LOGGER.info("Added the Client {} to the chat room {} ...", client.getIdentity(), roomId);
+            if (Objects.nonNull(message)) {
+                sendToMembers(message, chatRoom, identity);
             }
+        });
+    }
+
+    /**
+     * Announces the leave to the members except the given identity and removes the client from the chat room.
+     */
+    @Override
+    public void removeFromChatRoom(ChatClient client, String roomId, EncodedMessage message, String identity) {
+        ChatRoom chatRoom = repository.getChatRoomById(roomId);
+        inRoom(chatRoom, () -> {
+            if (Objects.nonNull(message)) {
+                sendToMembers(message, chatRoom, identity);
+            }
+            repository.removeClientFromChatRoom(roomId, client);
+            LOGGER.info("Removed the Client {} from the chat room {} ...", client.getIdentity(), roomId);
+        });
+    }
+
+    @Override
+    public void broadCastMessage(EncodedMessage message, String roomId, String identity) {
+        try {
+            ChatRoom chatRoom = repository.getChatRoomById(roomId);
+            inRoom(chatRoom, () -> sendToMembers(message, chatRoom, identity));
         } catch (Exception e) {
             LOGGER.error("Message sending error ... {}", e.getMessage(), e);
         }
     }
+
+    private void inRoom(ChatRoom chatRoom, Runnable action) {
+        if (ServerConfig.getInstance().getRoomExecutionMode() == RoomExecutionMode.MAILBOX) {
+            chatRoom.getMailbox().execute(action);
+        } else {
+            action.run();
+        }
+    }
+
+    private void sendToMembers(EncodedMessage message, ChatRoom chatRoom, String identity) {
+        // the frame is encoded once and shared with every member of the room
+        for (ChatClient client : chatRoom.getAllClients()) {
+            if (!client.getIdentity().equals(identity)) {
+                sendToClient(client, message);
+            }
+        }
+    }
+
+    /**
+     * Sends the response of a request completed after awaiting another server, the connection may be gone by then.
+     */
+    private void send(ClientConnection connection, EncodedMessage message) {
+        try {
+            connection.send(message);
+        } catch (Exception e) {
+            LOGGER.error("Response sending error ... {}", e.getMessage());
+        }
+    }
+
+    private void sendToClient(ChatClient client, EncodedMessage message) {
+        // a failing member must not stop the rest of the room from receiving the message
+        try {
+            client.getConnection().send(message);
+            LOGGER.info("Sent message to client {} ...", client.getIdentity());
+        } catch (Exception e) {
+            LOGGER.error("Message sending error to client {} ... {}", client.getIdentity(), e.getMessage());
+        }
+    }
 }
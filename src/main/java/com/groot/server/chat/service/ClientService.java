@@ -1,13 +1,19 @@
 package com.groot.server.chat.service;
 
-import java.net.Socket;
+import com.groot.server.chat.connection.ClientConnection;
+
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Melanga Kasun
  * @date (Fri) 18-Feb-2022
  */
 public interface ClientService {
-    boolean createNewClient(Socket socket, String identity);
-    boolean removeClient(Socket socket, boolean isFailed);
-    void moveJoin(Socket socket, String identity, String former, String roomId);
+    /**
+     * @return completed with false once the identity is rejected and the connection should be closed, the approval
+     * of another server is awaited without holding the calling thread
+     */
+    CompletableFuture<Boolean> createNewClient(ClientConnection connection, String identity);
+    boolean removeClient(ClientConnection connection, boolean isFailed);
+    void moveJoin(ClientConnection connection, String identity, String former, String roomId);
 }
@@ -1,20 +1,23 @@
 package com.groot.server.chat.service;
 
 import com.groot.server.chat.config.DataStoreConfig;
+import com.groot.server.chat.connection.ClientConnection;
 import com.groot.server.chat.database.ChatClient;
 import com.groot.server.chat.database.ChatRoom;
 import com.groot.server.chat.database.DataStore;
 import com.groot.server.chat.repository.ChatRoomRepository;
 import com.groot.server.chat.repository.ClientRepository;
 import com.groot.server.chat.repository.CoordinationRepository;
+import com.groot.server.chat.util.ClientMessageEncoder;
 import com.groot.server.chat.util.DataValidator;
-import com.groot.server.chat.util.MessageGenerator;
-import com.groot.server.chat.util.MessageSender;
+import com.groot.server.chat.util.EncodedMessage;
+import com.groot.server.chat.util.ServerMetrics;
+import com.groot.server.chat.util.TaskExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.net.Socket;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Melanga Kasun
@@ -30,42 +33,62 @@ public class ClientServiceImpl implements ClientService {
     private final CoordinationRepository coordinationRepository = new CoordinationRepository();
 
     @Override
-    public boolean createNewClient(Socket socket, String identity) {
+    public CompletableFuture<Boolean> createNewClient(ClientConnection connection, String identity) {
         LOGGER.info("Validating the client {} ...", identity);
         try {
             // validate the string
             if (!DataValidator.validateString(identity)) {
                 LOGGER.error("Client {} not a valid string ...", identity);
-                MessageSender.send(socket.getOutputStream(), MessageGenerator.newIdentityMessage("false"));
-                return false;
+                connection.send(ClientMessageEncoder.newIdentityMessage("false"));
+                return CompletableFuture.completedFuture(false);
             }
             // check uniqueness locally
             if (Objects.nonNull(repository.getClientById(identity))) {
                 LOGGER.error("Client {} already exists ...", identity);
-                MessageSender.send(socket.getOutputStream(), MessageGenerator.newIdentityMessage("false"));
-                return false;
+                connection.send(ClientMessageEncoder.newIdentityMessage("false"));
+                return CompletableFuture.completedFuture(false);
             }
-            if (coordinationService.isLeaderAcceptedClient(identity)) {
-                LOGGER.info("Client {} is is accepted by the leader ...", identity);
-                return saveClient(socket, identity);
-            }
-            LOGGER.error("Client {} already exists in another server ...", identity);
-            MessageSender.send(socket.getOutputStream(), MessageGenerator.newIdentityMessage("false"));
-            return false;
+            long t1 = 10000;
+            return TaskExecutor.handle(coordinationService.isLeaderAcceptedClientAsync(identity, t1), (isAccepted, e) -> {
+                if (Objects.nonNull(e)) {
+                    LOGGER.error("Client creation acceptance error ... {}", e.getMessage());
+                } else if (isAccepted) {
+                    LOGGER.info("Client {} is is accepted by the leader ...", identity);
+                    return saveClient(connection, identity);
+                } else {
+                    LOGGER.error("Client {} already exists in another server ...", identity);
+                }
+                return rejectClient(connection);
+            });
         } catch (Exception e) {
             LOGGER.error("Client validation error ... {}", e.getMessage(), e);
-            return false;
+            return CompletableFuture.completedFuture(false);
         }
     }
 
-    private boolean saveClient(Socket socket, String identity) {
+    private boolean rejectClient(ClientConnection connection) {
         try {
+            connection.send(ClientMessageEncoder.newIdentityMessage("false"));
+        } catch (Exception e) {
+            LOGGER.error("Client rejecting error ... {}", e.getMessage());
+        }
+        return false;
+    }
+
+    private boolean saveClient(ClientConnection connection, String identity) {
+        try {
+            if (!connection.isOpen()) {
+                // the reservation of the identity expires at its owner like the one of any rejected client
+                LOGGER.error("Client {} disconnected while its identity was awaited ...", identity);
+                return false;
+            }
             LOGGER.info("Creating client {} ...", identity);
             // create the client
-            ChatClient client = new ChatClient(identity, DataStoreConfig.getInstance().getMainHall(), socket);
+            ChatClient client = new ChatClient(identity, DataStoreConfig.getInstance().getMainHall(), connection);
             repository.createClient(client);
             LOGGER.info("Successfully saved the client {} ...", identity);
-            MessageSender.send(socket.getOutputStream(), MessageGenerator.newIdentityMessage("true"));
+            connection.send(ClientMessageEncoder.newIdentityMessage("true"));
+            ServerMetrics.markSinceStart("startup.first.client.ms");
             // add to main hall
             chatRoomService.addToMainHall(client);
 
@@ -76,7 +99,7 @@ public class ClientServiceImpl implements ClientService {
                 coordinationService.notifyClientCreation(identity);
             }
             // broadcast message to main hall
-            chatRoomService.broadCastMessage(MessageGenerator.roomChangeMessage(identity, "", DataStoreConfig.getInstance().getMainHall()),
+            chatRoomService.broadCastMessage(ClientMessageEncoder.roomChangeMessage(identity, "", DataStoreConfig.getInstance().getMainHall()),
                     DataStoreConfig.getInstance().getMainHall(), "");
             return true;
         } catch (Exception e) {
@@ -86,9 +109,9 @@ public class ClientServiceImpl implements ClientService {
     }
 
     @Override
-    public boolean removeClient(Socket socket, boolean isFailed) {
+    public boolean removeClient(ClientConnection connection, boolean isFailed) {
         try {
-            ChatClient client = repository.getClientBySocket(socket);
+            ChatClient client = repository.getClientByConnection(connection);
             if (Objects.isNull(client)) {
                 LOGGER.error("Client not exists ...");
                 return false;
@@ -100,20 +123,14 @@ public class ClientServiceImpl implements ClientService {
                 return false;
             }
             if (!chatRoom.getOwner().equals(client.getIdentity())) {
-                chatRoomRepository.removeClientFromChatRoom(chatRoom.getRoomId(), client);
-                LOGGER.info("Removed the Client {} from the chat room {} ...", client.getIdentity(), chatRoom.getRoomId());
-                if (!isFailed) {
-                    chatRoomService.broadCastMessage(MessageGenerator.roomChangeMessage(client.getIdentity(), chatRoom.getRoomId(), ""),
-                            chatRoom.getRoomId(), client.getIdentity());
-                }
+                chatRoomService.removeFromChatRoom(client, chatRoom.getRoomId(), isFailed ? null
+                        : ClientMessageEncoder.roomChangeMessage(client.getIdentity(), chatRoom.getRoomId(), ""), client.getIdentity());
             } else {
                 String mainHall = DataStoreConfig.getInstance().getMainHall();
-                for (ChatClient participant : chatRoom.getAllClients()) {
-                    chatRoomService.addToMainHall(participant);
-                    chatRoomService.broadCastMessage(MessageGenerator.roomChangeMessage(participant.getIdentity(), "",
-                            mainHall), chatRoom.getRoomId(), participant.getIdentity());
-                    chatRoomService.broadCastMessage(MessageGenerator.roomChangeMessage(participant.getIdentity(), "",
-                            mainHall), mainHall, participant.getIdentity());
+                for (ChatClient participant : chatRoomRepository.getAllClientsOfChatRoom(chatRoom.getRoomId())) {
+                    EncodedMessage roomChange = ClientMessageEncoder.roomChangeMessage(participant.getIdentity(), "", mainHall);
+                    chatRoomService.addToChatRoom(participant, mainHall, roomChange, participant.getIdentity());
+                    chatRoomService.broadCastMessage(roomChange, chatRoom.getRoomId(), participant.getIdentity());
                     participant.setRoomId(mainHall);
                 }
                 chatRoomRepository.deleteChatRoom(chatRoom.getRoomId());
@@ -122,7 +139,7 @@ public class ClientServiceImpl implements ClientService {
                 LOGGER.info("Successfully deleted the chat room {} from global list ...", chatRoom.getRoomId());
                 coordinationService.informChatRoomDeletion(chatRoom.getRoomId());
                 if (!isFailed) {
-                    MessageSender.send(socket.getOutputStream(), MessageGenerator.deleteRoomMessageToClient(chatRoom.getRoomId(), "true"));
+                    connection.send(ClientMessageEncoder.deleteRoomMessageToClient(chatRoom.getRoomId(), "true"));
                 }
             }
             repository.removeClient(client.getIdentity());
@@ -130,7 +147,7 @@ public class ClientServiceImpl implements ClientService {
             coordinationRepository.deleteGlobalClient(client.getIdentity());
             LOGGER.info("Successfully deleted the client {} from global list ...", client.getIdentity());
             coordinationService.informClientDeletion(client.getIdentity());
-            MessageSender.send(socket.getOutputStream(), MessageGenerator.roomChangeMessage(client.getIdentity(), client.getRoomId(), ""));
+            connection.send(ClientMessageEncoder.roomChangeMessage(client.getIdentity(), client.getRoomId(), ""));
             return true;
         } catch (Exception e) {
             LOGGER.error("Client removing error ... {}", e.getMessage(), e);
@@ -139,30 +156,26 @@ public class ClientServiceImpl implements ClientService {
     }
 
     @Override
-    public void moveJoin(Socket socket, String identity, String former, String roomId) {
+    public void moveJoin(ClientConnection connection, String identity, String former, String roomId) {
         // since the client already saved in another server no need to check the validity
         try {
             DataStore store = DataStoreConfig.getInstance();
             // create the client
-            ChatClient client = new ChatClient(identity, store.getMainHall(), socket);
+            ChatClient client = new ChatClient(identity, store.getMainHall(), connection);
             repository.createClient(client);
             LOGGER.info("Successfully saved the client {} ...", identity);
-            MessageSender.send(socket.getOutputStream(),
-                    MessageGenerator.serverChangeMessage(store.getCurrent().getServerId(), "true"));
+            connection.send(ClientMessageEncoder.serverChangeMessage(store.getCurrent().getServerId(), "true"));
 
             ChatRoom chatRoom = chatRoomRepository.getChatRoomById(roomId);
             if (Objects.isNull(chatRoom)) {
                 LOGGER.error("Chat room {} not exists ...", roomId);
                 LOGGER.info("Adding client {} to the Main Hall ...", identity);
-                chatRoomService.addToMainHall(client);
                 // broadcast message to main hall
-                chatRoomService.broadCastMessage(MessageGenerator.roomChangeMessage(identity, former, store.getMainHall()),
-                        store.getMainHall(), identity);
+                chatRoomService.addToChatRoom(client, store.getMainHall(),
+                        ClientMessageEncoder.roomChangeMessage(identity, former, store.getMainHall()), identity);
             } else {
-                chatRoomRepository.addClientToChatRoom(roomId, client);
                 client.setRoomId(roomId);
-                LOGGER.info("Added the Client {} to the chat room {} ...", identity, roomId);
-                chatRoomService.broadCastMessage(MessageGenerator.roomChangeMessage(identity, former, roomId), roomId, "");
+                chatRoomService.addToChatRoom(client, roomId, ClientMessageEncoder.roomChangeMessage(identity, former, roomId), "");
             }
         } catch (Exception e) {
             LOGGER.error("Client shifting error ... {}", e.getMessage(), e);
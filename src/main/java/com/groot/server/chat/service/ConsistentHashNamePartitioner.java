@@ -0,0 +1,104 @@
+package com.groot.server.chat.service;
+
+import com.groot.server.chat.config.DataStoreConfig;
+import com.groot.server.chat.database.ChatServer;
+import com.groot.server.chat.database.DataStore;
+import com.groot.server.chat.util.ServerMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Spreads the names over the current server and the servers in its view with a hash ring.
+ * Every server places VIRTUAL_NODES points on the ring and owns the names hashing up to each of its points,
+ * so adding or removing a server only moves the names next to its points. The ring is built again when the
+ * version of the view changes, which every server does by itself without asking the leader.
+ * <p>
+ * While the servers disagree about the view, two of them may both consider themselves the owner of a name,
+ * and the reservations pending at the previous owner of a moved name are not handed over.
+ */
+public class ConsistentHashNamePartitioner implements NamePartitioner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConsistentHashNamePartitioner.class);
+    private static final int VIRTUAL_NODES = 64;
+    private volatile Ring ring = new Ring(new TreeSet<>(), -1, null);
+
+    @Override
+    public String getOwner(String name) {
+        return getRing().getOwner(NamePartitioner.hash(name));
+    }
+
+    @Override
+    public boolean isOwner(String name) {
+        return getOwner(name).equals(DataStoreConfig.getInstance().getCurrent().getServerId());
+    }
+
+    /**
+     * @return the ring of the current view, built again only after the view or the current server changed
+     */
+    private Ring getRing() {
+        DataStore store = DataStoreConfig.getInstance();
+        // the version is read before the view, a change in between only builds the same ring once more
+        long version = store.getViewsVersion();
+        ChatServer current = store.getCurrent();
+        Ring latest = ring;
+        if (latest.version != version || latest.current != current) {
+            synchronized (this) {
+                latest = ring;
+                if (latest.version != version || latest.current != current) {
+                    Set<String> servers = new TreeSet<>(store.getViews().keySet());
+                    servers.add(current.getServerId());
+                    if (!latest.servers.equals(servers)) {
+                        ServerMetrics.increment("registry.partition.rebalances");
+                        LOGGER.info("Rebalanced the names over the servers {} ...", servers);
+                    }
+                    latest = new Ring(servers, version, current);
+                    ring = latest;
+                }
+            }
+        }
+        return latest;
+    }
+
+    private static class Ring {
+        private final Set<String> servers;
+        // the version of the view and the current server the ring was built for
+        private final long version;
+        private final ChatServer current;
+        // positions of the points in ascending order and the server of each point
+        private final int[] points;
+        private final String[] owners;
+
+        private Ring(Set<String> servers, long version, ChatServer current) {
+            this.servers = servers;
+            this.version = version;
+            this.current = current;
+            long[] entries = new long[servers.size() * VIRTUAL_NODES];
+            String[] ids = servers.toArray(new String[0]);
+            int next = 0;
+            for (int i = 0; i < ids.length; i++) {
+                for (int node = 0; node < VIRTUAL_NODES; node++) {
+                    // the index of the server is kept in the low bits, so sorting the entries sorts the points
+                    entries[next++] = ((long) NamePartitioner.hash(ids[i] + "#" + node) << 32) | i;
+                }
+            }
+            Arrays.sort(entries);
+            this.points = new int[entries.length];
+            this.owners = new String[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                points[i] = (int) (entries[i] >> 32);
+                owners[i] = ids[(int) entries[i]];
+            }
+        }
+
+        private String getOwner(int hash) {
+            int index = Arrays.binarySearch(points, hash);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return owners[index == points.length ? 0 : index];
+        }
+    }
+}
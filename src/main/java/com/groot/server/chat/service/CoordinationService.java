@@ -1,6 +1,10 @@
 package com.groot.server.chat.service;
 
-import java.net.Socket;
+import com.groot.server.chat.connection.ReplyHandle;
+import org.json.simple.JSONObject;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Melanga Kasun
@@ -10,14 +14,21 @@ public interface CoordinationService {
     void notifyClientCreation(String identity);
     void notifyChatRoomCreation(String roomId);
     String getChatRoomOwningServer(String roomId, String identity);
+    CompletableFuture<String> getChatRoomOwningServerAsync(String roomId, long timeout);
     void informChatRoomDeletion(String roomId);
     void informClientDeletion(String identity);
     boolean isLeaderAcceptedClient(String identity);
+    CompletableFuture<Boolean> isLeaderAcceptedClientAsync(String identity, long timeout);
     boolean isLeaderAcceptedChatRoom(String roomId);
+    CompletableFuture<Boolean> isLeaderAcceptedChatRoomAsync(String roomId, long timeout);
     void updateGlobalClients(String identity, boolean isAdded);
     void updateGlobalChatRooms(String roomId, String serverId, boolean isAdded);
-    void sendCurrentView(Socket socket, String serverId);
-    void participateElection(Socket socket);
+    void applyGlobalDelta(List<JSONObject> changes);
+    void updateGlobalSyncVersion(long epoch, long version);
+    void updateNameLeases(List<String> holders, List<Number> durations);
+    void sendCurrentView(ReplyHandle reply, String serverId);
+    void participateElection(ReplyHandle reply);
+    void acceptNomination(ReplyHandle reply, String serverId);
     void updateLeader(String leader);
-    void sendGlobalData(Socket socket);
+    void sendGlobalData(ReplyHandle reply, long since, long epoch);
 }
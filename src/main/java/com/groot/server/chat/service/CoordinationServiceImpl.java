@@ -1,22 +1,35 @@
 package com.groot.server.chat.service;
 
 import com.groot.server.chat.config.DataStoreConfig;
+import com.groot.server.chat.config.NamePartitionerConfig;
+import com.groot.server.chat.connection.PeerConnectionPool;
+import com.groot.server.chat.connection.ReplyHandle;
+import com.groot.server.chat.constants.GlobalChangeType;
 import com.groot.server.chat.database.ChatServer;
 import com.groot.server.chat.database.DataStore;
+import com.groot.server.chat.database.GlobalChange;
+import com.groot.server.chat.database.GlobalSnapshot;
 import com.groot.server.chat.repository.CoordinationRepository;
 import com.groot.server.chat.repository.LeaderRepository;
 import com.groot.server.chat.util.MessageGenerator;
-import com.groot.server.chat.util.MessageReader;
-import com.groot.server.chat.util.MessageSender;
 import com.groot.server.chat.util.ServerBroadcaster;
+import com.groot.server.chat.util.ServerMetrics;
+import com.groot.server.chat.util.TaskExecutor;
 import org.json.simple.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.net.Socket;
+import java.net.ConnectException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * @author Melanga Kasun
@@ -27,13 +40,13 @@ public class CoordinationServiceImpl implements CoordinationService {
     private final CoordinationRepository repository = new CoordinationRepository();
     private final LeaderRepository leaderRepository = new LeaderRepository();
     private final FastBullyElectionService electionService = new FastBullyElectionServiceImpl();
+    private final PeerConnectionPool pool = PeerConnectionPool.getInstance();
 
     @Override
     public void notifyClientCreation(String identity) {
         try {
-            Socket socket = getLeaderSocket();
             LOGGER.info("Notifying the leader about the client {} creation ...", identity);
-            MessageSender.send(socket.getOutputStream(), MessageGenerator.addGlobalClientMessage(identity));
+            sendToLeader(MessageGenerator.addGlobalClientMessage(identity));
         } catch (IOException e) {
             LOGGER.error("Client creation notifying error ... {}", e.getMessage(), e);
         }
@@ -42,9 +55,9 @@ public class CoordinationServiceImpl implements CoordinationService {
     @Override
     public void notifyChatRoomCreation(String roomId) {
         try {
-            Socket socket = getLeaderSocket();
             LOGGER.info("Notifying the leader about the chat room {} creation ...", roomId);
-            MessageSender.send(socket.getOutputStream(), MessageGenerator.addGlobalChatRoomMessage(roomId));
+            sendToLeader(MessageGenerator.addGlobalChatRoomMessage(roomId,
+                    DataStoreConfig.getInstance().getCurrent().getServerId()));
         } catch (Exception e) {
             LOGGER.error("Chat room creation notifying error ... {}", e.getMessage(), e);
         }
@@ -53,29 +66,34 @@ public class CoordinationServiceImpl implements CoordinationService {
     @Override
     public String getChatRoomOwningServer(String roomId, String identity) {
         long t1 = 10000;
-        try {
-            if (DataStoreConfig.getInstance().isLeaderMyself()) {
-                return repository.getGlobalServerByChatRoomId(roomId);
-            } else {
-                Socket socket = getLeaderSocket();
-                MessageSender.send(socket.getOutputStream(), MessageGenerator.requestChatRoomOwningServerMessage(roomId));
-                LOGGER.info("Requesting the owner of the chat room {} from leader ...", roomId);
-
-                // wait T1 time for the response
-                Thread.sleep(t1);
-                JSONObject response = MessageReader.read(socket.getInputStream());
-                LOGGER.info("Received the owner details from leader ...");
-                return response.get("serverid").toString();
-            }
-        } catch (Exception e) {
-            LOGGER.error("Room owning server finding error ... {}", e.getMessage(), e);
+        return await(getChatRoomOwningServerAsync(roomId, t1), null, "Room owning server finding error");
+    }
+
+    @Override
+    public CompletableFuture<String> getChatRoomOwningServerAsync(String roomId, long timeout) {
+        // the global chat rooms are replicated from the leader and removed again when a room is deleted
+        String serverId = repository.getGlobalServerByChatRoomId(roomId);
+        if (Objects.nonNull(serverId) || DataStoreConfig.getInstance().isLeaderMyself()) {
+            ServerMetrics.increment(Objects.nonNull(serverId) ? "room.route.hits" : "room.route.misses");
+            return CompletableFuture.completedFuture(serverId);
         }
-        return null;
+        // a room created just now may not be replicated yet
+        ServerMetrics.increment("room.route.misses");
+        LOGGER.info("Requesting the owner of the chat room {} from leader ...", roomId);
+        return requestFromLeaderAsync(MessageGenerator.requestChatRoomOwningServerMessage(roomId), timeout)
+                .thenApply(response -> {
+                    LOGGER.info("Received the owner details from leader ...");
+                    return Objects.isNull(response.get("serverid")) ? null : response.get("serverid").toString();
+                });
     }
 
     @Override
     public void informClientDeletion(String identity) {
         try {
+            if (GlobalDeltaBatcher.isEnabled()) {
+                GlobalDeltaBatcher.getInstance().addDeletion(new GlobalChange(0, GlobalChangeType.REMOVE_CLIENT, identity, null));
+                return;
+            }
             ServerBroadcaster.broadcast(MessageGenerator.deleteClientMessageToServer(identity,
                     DataStoreConfig.getInstance().getCurrent().getServerId()));
             LOGGER.info("Informed neighbours about the client {} deletion ...", identity);
@@ -87,6 +105,11 @@ public class CoordinationServiceImpl implements CoordinationService {
     @Override
     public void informChatRoomDeletion(String roomId) {
         try {
+            if (GlobalDeltaBatcher.isEnabled()) {
+                GlobalDeltaBatcher.getInstance().addDeletion(new GlobalChange(0, GlobalChangeType.REMOVE_CHAT_ROOM, roomId,
+                        DataStoreConfig.getInstance().getCurrent().getServerId()));
+                return;
+            }
             ServerBroadcaster.broadcast(MessageGenerator.deleteRoomMessageToServer(roomId,
                     DataStoreConfig.getInstance().getCurrent().getServerId()));
             LOGGER.info("Informed neighbours about the chat room {} deletion ...", roomId);
@@ -97,64 +120,173 @@ public class CoordinationServiceImpl implements CoordinationService {
 
     @Override
     public boolean isLeaderAcceptedClient(String identity) {
-        try {
-            if (DataStoreConfig.getInstance().isLeaderMyself()) {
-                return !repository.isGlobalClient(identity) && !leaderRepository.isPendingClient(identity);
-            } else {
-                Socket socket = getLeaderSocket();
-                MessageSender.send(socket.getOutputStream(),
-                        MessageGenerator.clientAvailabilityMessage(identity, "forwarded",
-                                DataStoreConfig.getInstance().getCurrent().getServerId()));
-                LOGGER.info("Requesting client creation permission from leader ...");
-                JSONObject response = MessageReader.read(socket.getInputStream());
-                socket.close();
-                LOGGER.info("Received the permission: {} from leader ...", response.get("approved"));
-                return response.get("identity").equals(identity) && response.get("approved").equals("true");
+        long t1 = 10000;
+        return await(isLeaderAcceptedClientAsync(identity, t1), false, "Client creation acceptance error");
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isLeaderAcceptedClientAsync(String identity, long timeout) {
+        // the client port opens before the recovery, the first identities wait for the leader to be known
+        return TaskExecutor.within(DataStoreConfig.getInstance().getRecovery(), timeout).handle((recovered, e) -> {
+            if (Objects.nonNull(e)) {
+                LOGGER.error("Server is still recovering, approving the client {} with the current leader ...", identity);
             }
-        } catch (Exception e) {
-            LOGGER.error("Client creation acceptance error ... {}", e.getMessage(), e);
-            return false;
+            return acceptClient(identity, timeout);
+        }).thenCompose(Function.identity());
+    }
+
+    private CompletableFuture<Boolean> acceptClient(String identity, long timeout) {
+        if (NamePartitionerConfig.getInstance().isOwner(identity)) {
+            return CompletableFuture.completedFuture(!repository.isGlobalClient(identity)
+                    && !leaderRepository.isPendingClient(identity));
+        } else if (repository.isGlobalClient(identity)) {
+            // the global clients are replicated from the leader, so a taken identity needs no round trip
+            LOGGER.info("Client {} is already in the global list ...", identity);
+            ServerMetrics.increment("identity.rejected.locally");
+            return CompletableFuture.completedFuture(false);
         }
+        String owner = NamePartitionerConfig.getInstance().getOwner(identity);
+        LOGGER.info("Requesting client creation permission from server {} ...", owner);
+        CompletableFuture<Boolean> approval = requestFromOwnerAsync(owner, MessageGenerator.clientAvailabilityMessage(identity,
+                "forwarded", DataStoreConfig.getInstance().getCurrent().getServerId()), "identity", timeout)
+                .thenApply(response -> {
+                    LOGGER.info("Received the permission: {} from server {} ...", response.get("approved"), owner);
+                    return response.get("identity").equals(identity) && response.get("approved").equals("true");
+                });
+        return retryIfMoved(approval, owner, identity, () -> acceptClient(identity, timeout));
     }
 
     @Override
     public boolean isLeaderAcceptedChatRoom(String roomId) {
-        try {
-            if (DataStoreConfig.getInstance().isLeaderMyself()) {
-                return !repository.isGlobalChatRoom(roomId) &&
-                        !leaderRepository.isPendingChatRoom(roomId, DataStoreConfig.getInstance().getCurrent().getServerId());
-            } else {
-                Socket socket = getLeaderSocket();
-                MessageSender.send(socket.getOutputStream(),
-                        MessageGenerator.chatRoomAvailabilityMessage(roomId, "forwarded",
-                                DataStoreConfig.getInstance().getCurrent().getServerId()));
-                LOGGER.info("Requesting chat room creation permission from leader ...");
-                JSONObject response = MessageReader.read(socket.getInputStream());
-                socket.close();
-                LOGGER.info("Received the permission: {} from leader ...", response.get("approved"));
-                return response.get("roomid").equals(roomId) && response.get("approved").equals("true");
-            }
-        } catch (Exception e) {
-            LOGGER.error("Chat room creation acceptance error ... {}", e.getMessage(), e);
-            return false;
+        long t1 = 10000;
+        return await(isLeaderAcceptedChatRoomAsync(roomId, t1), false, "Chat room creation acceptance error");
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isLeaderAcceptedChatRoomAsync(String roomId, long timeout) {
+        if (NamePartitionerConfig.getInstance().isOwner(roomId)) {
+            return CompletableFuture.completedFuture(!repository.isGlobalChatRoom(roomId) &&
+                    !leaderRepository.isPendingChatRoom(roomId, DataStoreConfig.getInstance().getCurrent().getServerId()));
+        } else if (repository.isGlobalChatRoom(roomId)) {
+            LOGGER.info("Chat room {} is already in the global list ...", roomId);
+            ServerMetrics.increment("room.rejected.locally");
+            return CompletableFuture.completedFuture(false);
         }
+        String owner = NamePartitionerConfig.getInstance().getOwner(roomId);
+        LOGGER.info("Requesting chat room creation permission from server {} ...", owner);
+        CompletableFuture<Boolean> approval = requestFromOwnerAsync(owner, MessageGenerator.chatRoomAvailabilityMessage(roomId,
+                "forwarded", DataStoreConfig.getInstance().getCurrent().getServerId()), "room", timeout)
+                .thenApply(response -> {
+                    LOGGER.info("Received the permission: {} from server {} ...", response.get("approved"), owner);
+                    return response.get("roomid").equals(roomId) && response.get("approved").equals("true");
+                });
+        return retryIfMoved(approval, owner, roomId, () -> isLeaderAcceptedChatRoomAsync(roomId, timeout));
     }
 
-    private Socket getLeaderSocket() {
-        try {
+    /**
+     * Asks again when the owner of the name was unreachable and its names moved, even to this server.
+     */
+    private CompletableFuture<Boolean> retryIfMoved(CompletableFuture<Boolean> approval, String owner, String name,
+                                                    Supplier<CompletableFuture<Boolean>> retry) {
+        return approval.handle((approved, e) -> {
+            if (Objects.isNull(e)) {
+                return CompletableFuture.completedFuture(approved);
+            } else if (unwrap(e) instanceof ConnectException && !owner.equals(NamePartitionerConfig.getInstance().getOwner(name))) {
+                return retry.get();
+            }
+            throw new CompletionException(unwrap(e));
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * Asks the owner of a name, the leader is found again by an election if it is unreachable.
+     * Another unreachable owner is removed from the view like a server failing a broadcast, which moves its
+     * names to another server when the names are partitioned by the view.
+     *
+     * @param kind    the kind of the name counted in the metrics
+     * @param timeout milliseconds to wait for the response
+     */
+    private CompletableFuture<JSONObject> requestFromOwnerAsync(String owner, JSONObject message, String kind, long timeout) {
+        return getLeaderAsync().thenCompose(leader -> {
+            if (owner.equals(leader.getServerId())) {
+                ServerMetrics.increment("leader.requests." + kind);
+                return requestFromLeaderAsync(message, timeout);
+            }
+            ServerMetrics.increment("owner.requests." + kind);
             DataStore store = DataStoreConfig.getInstance();
-            ChatServer leader = store.getLeader();
-            if (Objects.nonNull(leader)) {
-                return new Socket(leader.getServerAddress(), leader.getCoordinationPort());
-            } else {
-                LOGGER.error("Unable to find the leader ...");
+            return pool.requestAsync(store.getNeighbourById(owner), message, timeout).whenComplete((response, e) -> {
+                if (unwrap(e) instanceof ConnectException) {
+                    LOGGER.error("Server {} owning the name is unreachable ... {}", owner, unwrap(e).getMessage());
+                    store.removeViews(Collections.singletonList(owner));
+                    pool.evict(owner);
+                }
+            });
+        });
+    }
+
+    private void sendToLeader(JSONObject message) throws IOException {
+        while (true) {
+            try {
+                pool.send(getLeader(), message);
+                return;
+            } catch (ConnectException e) {
+                LOGGER.error("Leader connecting error ... {}", e.getMessage());
                 electionService.startElection();
             }
-        } catch (Exception e) {
-            LOGGER.error("Leader socket getting error ... {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param timeout milliseconds to wait for the response, zero waits until the leader responds
+     */
+    private CompletableFuture<JSONObject> requestFromLeaderAsync(JSONObject message, long timeout) {
+        return getLeaderAsync().thenCompose(leader -> pool.requestAsync(leader, message, timeout)).handle((response, e) -> {
+            if (Objects.isNull(e)) {
+                return CompletableFuture.completedFuture(response);
+            } else if (unwrap(e) instanceof ConnectException) {
+                LOGGER.error("Leader connecting error ... {}", unwrap(e).getMessage());
+                return electionService.startElectionAsync().thenCompose(elected -> requestFromLeaderAsync(message, timeout));
+            }
+            throw new CompletionException(unwrap(e));
+        }).thenCompose(Function.identity());
+    }
+
+    private ChatServer getLeader() {
+        DataStore store = DataStoreConfig.getInstance();
+        while (Objects.isNull(store.getLeader())) {
+            LOGGER.error("Unable to find the leader ...");
             electionService.startElection();
         }
-        return getLeaderSocket();
+        return store.getLeader();
+    }
+
+    private CompletableFuture<ChatServer> getLeaderAsync() {
+        DataStore store = DataStoreConfig.getInstance();
+        ChatServer leader = store.getLeader();
+        if (Objects.nonNull(leader)) {
+            return CompletableFuture.completedFuture(leader);
+        }
+        LOGGER.error("Unable to find the leader ...");
+        return electionService.startElectionAsync().thenCompose(elected -> getLeaderAsync());
+    }
+
+    /**
+     * Waits for the result of a coordination request of a blocking caller.
+     */
+    private static <T> T await(CompletableFuture<T> future, T fallback, String error) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("{} ... {}", error, e.getMessage());
+        } catch (ExecutionException e) {
+            LOGGER.error("{} ... {}", error, e.getCause().getMessage(), e.getCause());
+        }
+        return fallback;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && Objects.nonNull(error.getCause()) ? error.getCause() : error;
     }
 
     @Override
@@ -164,6 +296,8 @@ public class CoordinationServiceImpl implements CoordinationService {
                 // add client to the global list
                 repository.addNewGlobalClient(identity);
                 LOGGER.info("Successfully added the client {} to global list ...", identity);
+                // the reservation is kept here when this server owns the identity
+                leaderRepository.removePendingClient(identity);
             } else {
                 // remove client from the global list
                 repository.deleteGlobalClient(identity);
@@ -181,6 +315,7 @@ public class CoordinationServiceImpl implements CoordinationService {
                 // add chat room to the global list
                 repository.addNewGlobalChatRoom(roomId, serverId);
                 LOGGER.info("Successfully added the chat room {} to global list ...", roomId);
+                leaderRepository.removePendingChatRoom(roomId);
             } else {
                 // remove chat room from the global list
                 repository.deleteGlobalChatRoom(roomId);
@@ -192,14 +327,65 @@ public class CoordinationServiceImpl implements CoordinationService {
     }
 
     @Override
-    public void sendCurrentView(Socket socket, String serverId) {
+    public void applyGlobalDelta(List<JSONObject> entries) {
         try {
+            List<GlobalChange> changes = new ArrayList<>(entries.size());
+            for (JSONObject entry : entries) {
+                GlobalChangeType type = GlobalChangeType.valueOf(entry.get("type").toString());
+                boolean isClient = type == GlobalChangeType.ADD_CLIENT || type == GlobalChangeType.REMOVE_CLIENT;
+                changes.add(new GlobalChange(0, type, entry.get(isClient ? "identity" : "roomid").toString(),
+                        Objects.nonNull(entry.get("serverid")) ? entry.get("serverid").toString() : null));
+            }
+            repository.applyGlobalChanges(changes);
+            // the reservations are kept here when this server owns the names
+            changes.forEach(change -> {
+                if (change.getType() == GlobalChangeType.ADD_CLIENT) {
+                    leaderRepository.removePendingClient(change.getId());
+                } else if (change.getType() == GlobalChangeType.ADD_CHAT_ROOM) {
+                    leaderRepository.removePendingChatRoom(change.getId());
+                }
+            });
+            LOGGER.info("Applied {} global changes at once ...", changes.size());
+        } catch (Exception e) {
+            LOGGER.error("Global changes applying error ... {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void updateGlobalSyncVersion(long epoch, long version) {
+        try {
+            // the global updates are broadcast by the leader, so its change log is the one to catch up with
             DataStore store = DataStoreConfig.getInstance();
-            MessageSender.send(socket.getOutputStream(),
-                    MessageGenerator.viewMessage(new ArrayList<>(store.getViews().keySet())));
+            store.setGlobalSyncVersion(store.getLeader().getServerId(), epoch, version);
+        } catch (Exception e) {
+            LOGGER.error("Global version updating error ... {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void updateNameLeases(List<String> holders, List<Number> durations) {
+        try {
+            NamePartitioner partitioner = NamePartitionerConfig.getInstance();
+            if (partitioner instanceof LeasedNamePartitioner) {
+                List<Long> leases = new ArrayList<>(durations.size());
+                durations.forEach(duration -> leases.add(duration.longValue()));
+                ((LeasedNamePartitioner) partitioner).updateLeases(holders, leases);
+            }
+        } catch (Exception e) {
+            LOGGER.error("Name leases updating error ... {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void sendCurrentView(ReplyHandle reply, String serverId) {
+        try {
+            DataStore store = DataStoreConfig.getInstance();
+            reply.send(MessageGenerator.viewMessage(new ArrayList<>(store.getViews().keySet())));
             LOGGER.info("Sent views to the server {} ...", serverId);
             store.addView(store.getNeighbourById(serverId));
             LOGGER.info("Added server {} into views ...", serverId);
+            // the connections opened before the server restarted are no longer usable
+            pool.evict(serverId);
             store.addNewGlobalChatRoom("MainHall-" + serverId, serverId);
         } catch (Exception e) {
             LOGGER.error("Current view setting error ... {}", e.getMessage(), e);
@@ -207,30 +393,36 @@ public class CoordinationServiceImpl implements CoordinationService {
     }
 
     @Override
-    public void participateElection(Socket socket) {
+    public void participateElection(ReplyHandle reply) {
         long t4 = 10000;
         try {
-            MessageSender.send(socket.getOutputStream(), MessageGenerator.answerMessage());
-            socket.setSoTimeout(Math.toIntExact(t4));
+            DataStore store = DataStoreConfig.getInstance();
+            long answeredAt = System.currentTimeMillis();
+            reply.send(MessageGenerator.answerMessage());
             LOGGER.info("Sent the availability for the election to the requested server ...");
-            JSONObject response = MessageReader.read(socket.getInputStream());
+            // the nomination or the coordinator message arrives as a separate request within T4
+            TaskExecutor.schedule(() -> {
+                if (store.getLeaderUpdatedAt() < answeredAt) {
+                    LOGGER.info("Restarting the election since the coordinator is not responding ...");
+                    electionService.startElection();
+                }
+            }, t4);
+        } catch (Exception e) {
+            LOGGER.error("Election participation error ... {}", e.getMessage(), e);
+        }
+    }
 
+    @Override
+    public void acceptNomination(ReplyHandle reply, String serverId) {
+        try {
             DataStore store = DataStoreConfig.getInstance();
-            if (Objects.isNull(response)) {
-                LOGGER.info("Restarting the election since the coordinator is not responding ...");
-                electionService.startElection();
-            } else if (response.get("type").equals("nomination")) {
-                // update lower priority neighbours
-                LOGGER.info("Nominated as the leader by server {} ...", response.get("serverid"));
-                electionService.broadcastToLowerNeighbours();
-                MessageSender.send(socket.getOutputStream(),
-                        MessageGenerator.coordinatorMessage(store.getCurrent().getServerId()));
-            } else if (response.get("type").equals("coordinator")) {
-                store.setLeader(store.getNeighbourById(response.get("leader").toString()));
-                LOGGER.info("Updated leader as server {} ...", store.getLeader().getServerId());
-            }
+            LOGGER.info("Nominated as the leader by server {} ...", serverId);
+            store.setLeader(store.getCurrent());
+            // update lower priority neighbours
+            electionService.broadcastToLowerNeighbours();
+            reply.send(MessageGenerator.coordinatorMessage(store.getCurrent().getServerId()));
         } catch (Exception e) {
-            LOGGER.error("Election participation error ... {}", e.getMessage(), e);
+            LOGGER.error("Nomination accepting error ... {}", e.getMessage(), e);
         }
     }
 
@@ -246,12 +438,22 @@ public class CoordinationServiceImpl implements CoordinationService {
     }
 
     @Override
-    public void sendGlobalData(Socket socket) {
+    public void sendGlobalData(ReplyHandle reply, long since, long epoch) {
         try {
             DataStore store = DataStoreConfig.getInstance();
+            long currentEpoch = store.getGlobalEpoch();
+            // a version of another epoch refers to versions this server no longer has
+            List<GlobalChange> changes = since < 0 || epoch != currentEpoch ? null : store.getGlobalChangesSince(since);
+            if (Objects.nonNull(changes)) {
+                LOGGER.info("Sending {} global changes since version {} to requested server ...", changes.size(), since);
+                long version = changes.isEmpty() ? since : changes.get(changes.size() - 1).getVersion();
+                reply.send(MessageGenerator.globalChangesMessage(changes, version, currentEpoch));
+                return;
+            }
             LOGGER.info("Sending global data to requested server ...");
-            MessageSender.send(socket.getOutputStream(),
-                    MessageGenerator.globalDataMessage(store.getGlobalClients(), store.getGlobalChatRooms()));
+            GlobalSnapshot snapshot = store.getGlobalSnapshot();
+            reply.send(MessageGenerator.globalDataMessage(snapshot.getClients(), snapshot.getChatRooms(), snapshot.getVersion(),
+                    currentEpoch));
         } catch (Exception e) {
             LOGGER.error("Global data setting error ... {}", e.getMessage(), e);
         }
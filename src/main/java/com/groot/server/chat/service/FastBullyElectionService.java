@@ -1,6 +1,7 @@
 package com.groot.server.chat.service;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Melanga Kasun
@@ -10,6 +11,7 @@ import java.util.List;
 public interface FastBullyElectionService {
     void recoverFromFailure();
     boolean startElection();
+    CompletableFuture<Boolean> startElectionAsync();
     void broadcastToLowerNeighbours();
     void updateView(List<String> ids);
     List<String> compareViews(List<String> ids, List<String> neighbours);
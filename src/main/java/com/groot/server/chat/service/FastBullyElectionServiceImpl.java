@@ -1,6 +1,8 @@
 package com.groot.server.chat.service;
 
 import com.groot.server.chat.config.DataStoreConfig;
+import com.groot.server.chat.connection.PeerConnectionPool;
+import com.groot.server.chat.constants.GlobalChangeType;
 import com.groot.server.chat.database.ChatServer;
 import com.groot.server.chat.database.DataStore;
 import com.groot.server.chat.util.*;
@@ -9,12 +11,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * @author Melanga Kasun
@@ -23,118 +26,121 @@ import java.util.concurrent.TimeUnit;
 
 public class FastBullyElectionServiceImpl implements FastBullyElectionService {
     private static final Logger LOGGER = LoggerFactory.getLogger(FastBullyElectionServiceImpl.class);
+    private final PeerConnectionPool pool = PeerConnectionPool.getInstance();
 
     @Override
     public boolean startElection() {
-        long t2 = 10000;
         try {
-            LOGGER.info("Starting the election since the leader is not available ...");
-            Map<String, Socket> answers = new HashMap<>();
-            ExecutorService executorService = Executors.newCachedThreadPool();
-            DataStore store = DataStoreConfig.getInstance();
-            // Pi sends an election message to every process with higher priority number
-            store.getNeighbours().forEach((identity, server) -> {
-                if (server.getPriority() > store.getCurrent().getPriority()) {
-                    executorService.execute(() -> {
-                        try {
-                            Socket socket = new Socket(server.getServerAddress(), server.getCoordinationPort());
-                            // Pi sends an election message.
-                            MessageSender.send(socket.getOutputStream(), MessageGenerator.electionMessage());
-                            socket.setSoTimeout(Math.toIntExact(t2));
-                            LOGGER.info("Sent election message to server {} ...", server.getServerId());
-                            // Pi waits for view messages for the interval T2
-                            JSONObject response = MessageReader.read(socket.getInputStream());
-                            LOGGER.info("Received answer from server {} ...", server.getServerId());
-                            if (Objects.nonNull(response) && response.get("type").equals("answer")) {
-                                synchronized (answers) {
-                                    answers.put(server.getServerId(), socket);
-                                }
-                            }
-                        } catch (SocketTimeoutException e) {
-                            LOGGER.error("Socket timed out ... {}", e.getMessage());
-                        } catch (Exception e) {
-                            LOGGER.error("An error occurred while connecting with server {} ... {}", identity, e.getMessage());
-                        }
-                    });
-                }
-            });
-            // Pi waits for view messages for the interval T2
-            LOGGER.info("Waiting for receiving the neighbour answers ...");
-            executorService.shutdown();
-            if (executorService.awaitTermination(t2, TimeUnit.MILLISECONDS)) {
-                return electLeaderFromAnswers(answers);
-            }
+            return startElectionAsync().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Election starting error ... {}", e.getMessage());
             return false;
-        } catch (Exception e) {
-            LOGGER.error("Election starting error ... {}", e.getMessage(), e);
+        } catch (ExecutionException e) {
+            LOGGER.error("Election starting error ... {}", e.getCause().getMessage(), e.getCause());
             return false;
         }
     }
 
-    private boolean electLeaderFromAnswers(Map<String, Socket> answers) {
-        try {
-            DataStore store = DataStoreConfig.getInstance();
-            long t3 = 10000;
-            if (answers.isEmpty()) {
-                // Pi is the coordinator
-                store.setLeader(store.getCurrent());
-                LOGGER.info("Updated leader as myself since there are no answers ...");
-                // update lower priority neighbours
-                broadcastToLowerNeighbours();
-                return true;
-            }
-            boolean isLeaderUpdated = false;
-            while (!answers.isEmpty()) {
-                String leaderServerId = comparePriorities(new ArrayList<>(answers.keySet()));
-                JSONObject response;
-                try {
-                    // Pi determines the highest priority number of the answering processes
-                    Socket socket = answers.get(leaderServerId);
-                    MessageSender.send(socket.getOutputStream(),
-                            MessageGenerator.nominationMessage(store.getCurrent().getServerId()));
-                    LOGGER.info("Sent nomination message to server {} ...", leaderServerId);
-                    // Pi waits for a coordinator message for the interval T3.
-                    socket.setSoTimeout(Math.toIntExact(t3));
-                    response = MessageReader.read(socket.getInputStream());
-                    Thread.sleep(t3);
-                    if (response.get("type").equals("coordinator")) {
-                        socket.close();
-                        isLeaderUpdated = true;
-                        break;
+    @Override
+    public CompletableFuture<Boolean> startElectionAsync() {
+        long t2 = 10000;
+        LOGGER.info("Starting the election since the leader is not available ...");
+        List<CompletableFuture<String>> answers = new ArrayList<>();
+        DataStore store = DataStoreConfig.getInstance();
+        // Pi sends an election message to every process with higher priority number
+        store.getNeighbours().forEach((identity, server) -> {
+            if (server.getPriority() > store.getCurrent().getPriority()) {
+                // Pi sends an election message and waits for the answer for the interval T2
+                answers.add(CompletableFuture.supplyAsync(() -> {
+                    LOGGER.info("Sending election message to server {} ...", server.getServerId());
+                    return pool.requestAsync(server, MessageGenerator.electionMessage(), t2);
+                }, TaskExecutor.getInstance()).thenCompose(Function.identity()).handle((response, e) -> {
+                    if (Objects.isNull(e)) {
+                        LOGGER.info("Received answer from server {} ...", server.getServerId());
+                        return Objects.nonNull(response) && response.get("type").equals("answer") ? server.getServerId() : null;
+                    } else if (unwrap(e) instanceof SocketTimeoutException) {
+                        LOGGER.error("Socket timed out ... {}", unwrap(e).getMessage());
+                    } else {
+                        LOGGER.error("An error occurred while connecting with server {} ... {}", identity, unwrap(e).getMessage());
                     }
-                } catch (SocketTimeoutException e) {
-                    LOGGER.error("Socket timed out ... {}", e.getMessage());
-                    answers.remove(leaderServerId);
-                } catch (Exception e) {
-                    LOGGER.error("An error occurred ... {}", e.getMessage(), e);
-                }
+                    return null;
+                }));
             }
-            if (!isLeaderUpdated) {
-                LOGGER.info("Restart the election since the leader is not updated ...");
-                startElection();
+        });
+        // Pi waits for view messages for the interval T2
+        LOGGER.info("Waiting for receiving the neighbour answers ...");
+        return CompletableFuture.allOf(answers.toArray(new CompletableFuture<?>[0])).thenComposeAsync(ignored ->
+                electLeaderFromAnswers(answers.stream().map(CompletableFuture::join).filter(Objects::nonNull)
+                        .collect(Collectors.toList())), TaskExecutor.getInstance());
+    }
+
+    private CompletableFuture<Boolean> electLeaderFromAnswers(List<String> answers) {
+        DataStore store = DataStoreConfig.getInstance();
+        if (answers.isEmpty()) {
+            // Pi is the coordinator
+            store.setLeader(store.getCurrent());
+            LOGGER.info("Updated leader as myself since there are no answers ...");
+            // update lower priority neighbours
+            broadcastToLowerNeighbours();
+            return CompletableFuture.completedFuture(true);
+        }
+        return nominate(answers);
+    }
+
+    /**
+     * Nominates the answering servers in the order of their priorities until one of them takes over.
+     */
+    private CompletableFuture<Boolean> nominate(List<String> answers) {
+        long t3 = 10000;
+        if (answers.isEmpty()) {
+            LOGGER.info("Restart the election since the leader is not updated ...");
+            return startElectionAsync().thenApply(ignored -> true);
+        }
+        DataStore store = DataStoreConfig.getInstance();
+        // Pi determines the highest priority number of the answering processes
+        String leaderServerId = comparePriorities(new ArrayList<>(answers));
+        LOGGER.info("Sending nomination message to server {} ...", leaderServerId);
+        // Pi waits for a coordinator message for the interval T3, the nominee sends it as soon as it took over
+        return pool.requestAsync(store.getNeighbourById(leaderServerId),
+                MessageGenerator.nominationMessage(store.getCurrent().getServerId()), t3).handle((response, e) -> {
+            if (Objects.isNull(e)) {
+                if (Objects.nonNull(response) && response.get("type").equals("coordinator")) {
+                    store.setLeader(store.getNeighbourById(leaderServerId));
+                    return true;
+                }
+            } else if (unwrap(e) instanceof SocketTimeoutException) {
+                LOGGER.error("Socket timed out ... {}", unwrap(e).getMessage());
+            } else {
+                LOGGER.error("An error occurred ... {}", unwrap(e).getMessage(), unwrap(e));
             }
-            return true;
-        } catch (Exception e) {
-            LOGGER.error("Leader electing error ... {}", e.getMessage(), e);
             return false;
-        }
+        }).thenComposeAsync(isLeaderUpdated -> {
+            if (isLeaderUpdated) {
+                return CompletableFuture.completedFuture(true);
+            }
+            answers.remove(leaderServerId);
+            return nominate(answers);
+        }, TaskExecutor.getInstance());
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && Objects.nonNull(error.getCause()) ? error.getCause() : error;
     }
 
     @Override
     public void broadcastToLowerNeighbours() {
         DataStore store = DataStoreConfig.getInstance();
-        store.getNeighbours().forEach((identity, server) -> new Thread(() -> {
+        store.getNeighbours().forEach((identity, server) -> TaskExecutor.execute(() -> {
             try {
                 if (server.getPriority() < store.getCurrent().getPriority()) {
-                    Socket socket = new Socket(server.getServerAddress(), server.getCoordinationPort());
-                    MessageSender.send(socket.getOutputStream(),
-                            MessageGenerator.coordinatorMessage(store.getCurrent().getServerId()));
+                    pool.send(server, MessageGenerator.coordinatorMessage(store.getCurrent().getServerId()));
                     LOGGER.info("Sent coordinator message to server {} ...", server.getServerId());
                 }
             } catch (IOException e) {
                 LOGGER.error("Message broadcasting error ... {}", e.getMessage(), e);
             }
-        }).start());
+        }));
     }
 
     @Override
@@ -142,15 +148,14 @@ public class FastBullyElectionServiceImpl implements FastBullyElectionService {
         long t2 = 1000;
         try {
             DataStore store = DataStoreConfig.getInstance();
-            ExecutorService executorService = Executors.newCachedThreadPool();
+            List<Runnable> tasks = new ArrayList<>();
             HashMap<String, String> views = new HashMap<>();
-            store.getNeighbours().forEach((identity, server) -> executorService.execute(() -> {
+            store.getNeighbours().forEach((identity, server) -> tasks.add(() -> {
                 try {
-                    Socket socket = new Socket(server.getServerAddress(), server.getCoordinationPort());
                     // Pi sends an IamUp message.
-                    MessageSender.send(socket.getOutputStream(), MessageGenerator.iamUpMessage(store.getCurrent().getServerId()));
-                    LOGGER.info("Sent IamUp message to server {} ...", server.getServerId());
-                    JSONObject response = MessageReader.read(socket.getInputStream());
+                    LOGGER.info("Sending IamUp message to server {} ...", server.getServerId());
+                    JSONObject response = pool.request(server,
+                            MessageGenerator.iamUpMessage(store.getCurrent().getServerId()), t2);
                     LOGGER.info("Received views from server {} ...", server.getServerId());
                     if (Objects.nonNull(response) && response.get("type").equals("view")) {
                         store.addNewGlobalChatRoom("MainHall-"+identity, identity);
@@ -164,8 +169,7 @@ public class FastBullyElectionServiceImpl implements FastBullyElectionService {
             }));
             // Pi waits for view messages for the interval T2
             LOGGER.info("Waiting for receiving the neighbour views ...");
-            executorService.shutdown();
-            if (executorService.awaitTermination(t2, TimeUnit.MILLISECONDS) && !views.isEmpty()) {
+            if (TaskExecutor.executeAll(tasks, t2) && !views.isEmpty()) {
                 LOGGER.info("Received the views of {} running server(s) ...", views.size());
                 // Pi compares its view with the received views
                 List<String> serverView = new ArrayList<>(views.values());
@@ -190,14 +194,16 @@ public class FastBullyElectionServiceImpl implements FastBullyElectionService {
                     store.setLeader(tmpServer);
                     LOGGER.info("Updated leader as server {} with the highest priority ...", leaderServer);
                 }
-                Socket tmpSocket = new Socket(tmpServer.getServerAddress(), tmpServer.getCoordinationPort());
-                MessageSender.send(tmpSocket.getOutputStream(), MessageGenerator.requestGlobalsMessage());
                 LOGGER.info("Retrieving global clients and chat rooms ...");
-                JSONObject response = MessageReader.read(tmpSocket.getInputStream());
-                if (Objects.nonNull(response) && response.get("type").equals("globals")) {
-                    store.updateGlobalClients((List<String>) response.get("clients"));
-                    store.updateGlobalChatRooms((Map<String, String>) response.get("chatrooms"));
-                    LOGGER.info("Updated the global clients and chat rooms with server {} data ...", tmpServer.getServerId());
+                // the servers are asked in turn, starting with the leader, until one of them responds within T2
+                List<ChatServer> sources = new ArrayList<>();
+                sources.add(tmpServer);
+                activeNeighbours.stream().map(store::getNeighbourById)
+                        .filter(server -> Objects.nonNull(server) && server != tmpServer).forEach(sources::add);
+                for (ChatServer source : sources) {
+                    if (retrieveGlobals(store, source, t2)) {
+                        break;
+                    }
                 }
             } else {
                 // Pi is the coordinator
@@ -209,6 +215,62 @@ public class FastBullyElectionServiceImpl implements FastBullyElectionService {
         }
     }
 
+    /**
+     * Retrieves the global clients and chat rooms from the given server, as the changes since the last version
+     * received from it if the server still has them.
+     *
+     * @return false if the server did not respond within the timeout
+     */
+    private boolean retrieveGlobals(DataStore store, ChatServer server, long timeout) {
+        long since = store.getGlobalSyncVersion(server.getServerId());
+        long epoch = store.getGlobalSyncEpoch(server.getServerId());
+        JSONObject response;
+        try {
+            response = pool.request(server, MessageGenerator.requestGlobalsMessage(since, epoch), timeout);
+        } catch (IOException e) {
+            LOGGER.error("Unable to retrieve the globals from server {} ... {}", server.getServerId(), e.getMessage());
+            return false;
+        }
+        if (Objects.nonNull(response) && response.get("type").equals("globals")) {
+            if (Objects.nonNull(response.get("changes"))) {
+                @SuppressWarnings("unchecked")
+                List<JSONObject> changes = (List<JSONObject>) response.get("changes");
+                changes.forEach(change -> applyGlobalChange(store, change));
+                LOGGER.info("Applied {} global changes since version {} of server {} ...", changes.size(), since,
+                        server.getServerId());
+            } else {
+                store.updateGlobalClients((List<String>) response.get("clients"));
+                store.updateGlobalChatRooms((Map<String, String>) response.get("chatrooms"));
+                LOGGER.info("Updated the global clients and chat rooms with server {} data ...", server.getServerId());
+            }
+            // servers without a change log do not send their version
+            if (Objects.nonNull(response.get("version")) && Objects.nonNull(response.get("epoch"))) {
+                store.setGlobalSyncVersion(server.getServerId(), ((Number) response.get("epoch")).longValue(),
+                        ((Number) response.get("version")).longValue());
+            }
+        }
+        return true;
+    }
+
+    private void applyGlobalChange(DataStore store, JSONObject change) {
+        switch (GlobalChangeType.valueOf(change.get("type").toString())) {
+            case ADD_CLIENT:
+                store.addNewGlobalClient(change.get("identity").toString());
+                break;
+            case REMOVE_CLIENT:
+                store.deleteGlobalClient(change.get("identity").toString());
+                break;
+            case ADD_CHAT_ROOM:
+                store.addNewGlobalChatRoom(change.get("roomid").toString(), change.get("serverid").toString());
+                break;
+            case REMOVE_CHAT_ROOM:
+                store.deleteGlobalChatRoom(change.get("roomid").toString());
+                break;
+            default:
+                break;
+        }
+    }
+
     @Override
     public List<String> compareViews(List<String> currentView, List<String> serverView) {
         LOGGER.info("Comparing the views ...");
@@ -0,0 +1,107 @@
+package com.groot.server.chat.service;
+
+import com.groot.server.chat.config.DataStoreConfig;
+import com.groot.server.chat.config.ServerConfig;
+import com.groot.server.chat.database.DataStore;
+import com.groot.server.chat.database.GlobalChange;
+import com.groot.server.chat.util.MessageGenerator;
+import com.groot.server.chat.util.ServerBroadcaster;
+import com.groot.server.chat.util.ServerMetrics;
+import com.groot.server.chat.util.TaskExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Gathers the changes of the global clients and chat rooms for the batch window and broadcasts them to the
+ * other servers in one message, which they apply at once. The leader adds the clients and chat rooms it
+ * registered with their versions, any server adds the clients and chat rooms it deleted without a version.
+ * The batches are broadcast one after the other, so every server receives the changes in order.
+ */
+public class GlobalDeltaBatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GlobalDeltaBatcher.class);
+    private static GlobalDeltaBatcher batcher;
+    private final Object broadcastLock = new Object();
+    private List<GlobalChange> changes = new ArrayList<>();
+    // latest version of the leader in the batch, -1 while the batch only has deletions
+    private long version = -1;
+    private boolean scheduled;
+
+    private GlobalDeltaBatcher() {
+    }
+
+    public static GlobalDeltaBatcher getInstance() {
+        if (Objects.isNull(batcher)) {
+            synchronized (GlobalDeltaBatcher.class) {
+                if (Objects.isNull(batcher)) {
+                    batcher = new GlobalDeltaBatcher();
+                }
+            }
+        }
+        return batcher;
+    }
+
+    /**
+     * @return false if the changes are not batched, so the change has to be broadcast by itself
+     */
+    public static boolean isEnabled() {
+        return ServerConfig.getInstance().getBatchWindow() > 0;
+    }
+
+    /**
+     * Adds a change registered by the leader, which carries the version it produced.
+     */
+    public void addVersioned(GlobalChange change) {
+        add(change, change.getVersion());
+    }
+
+    /**
+     * Adds a deletion of a client or chat room of the current server.
+     */
+    public void addDeletion(GlobalChange change) {
+        add(change, -1);
+    }
+
+    private void add(GlobalChange change, long changeVersion) {
+        synchronized (this) {
+            changes.add(change);
+            version = Math.max(version, changeVersion);
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        TaskExecutor.schedule(this::broadcast, ServerConfig.getInstance().getBatchWindow());
+    }
+
+    private void broadcast() {
+        // a batch taken after another one is also broadcast after it
+        synchronized (broadcastLock) {
+            List<GlobalChange> batch;
+            long batchVersion;
+            synchronized (this) {
+                batch = changes;
+                batchVersion = version;
+                changes = new ArrayList<>();
+                version = -1;
+                scheduled = false;
+            }
+            try {
+                DataStore store = DataStoreConfig.getInstance();
+                // the followers remember the version, so it is announced only once the whole batch survives a restart
+                if (batchVersion >= 0) {
+                    store.awaitGlobalPersisted(batchVersion);
+                }
+                ServerBroadcaster.broadcast(MessageGenerator.globalDeltaMessage(batch, batchVersion, store.getGlobalEpoch()));
+                ServerMetrics.increment("registry.delta.batches");
+                ServerMetrics.add("registry.delta.changes", batch.size());
+                LOGGER.info("Broadcast {} global changes up to version {} ...", batch.size(), batchVersion);
+            } catch (Exception e) {
+                LOGGER.error("Global changes broadcasting error ... {}", e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -1,8 +1,8 @@
 package com.groot.server.chat.service;
 
-import java.net.Socket;
+import com.groot.server.chat.connection.ReplyHandle;
 
 public interface HeartBeatService {
     void start();
-    void sendResponse(Socket socket, String serverId);
+    void sendResponse(ReplyHandle reply, String serverId);
 }
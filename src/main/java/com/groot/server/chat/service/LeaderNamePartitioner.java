@@ -0,0 +1,18 @@
+package com.groot.server.chat.service;
+
+import com.groot.server.chat.config.DataStoreConfig;
+
+/**
+ * Leaves every name to the leader.
+ */
+public class LeaderNamePartitioner implements NamePartitioner {
+    @Override
+    public String getOwner(String name) {
+        return DataStoreConfig.getInstance().getLeader().getServerId();
+    }
+
+    @Override
+    public boolean isOwner(String name) {
+        return DataStoreConfig.getInstance().isLeaderMyself();
+    }
+}
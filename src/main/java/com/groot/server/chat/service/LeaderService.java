@@ -1,15 +1,15 @@
 package com.groot.server.chat.service;
 
-import java.net.Socket;
+import com.groot.server.chat.connection.ReplyHandle;
 
 /**
  * @author Melanga Kasun
  * @date (Wed) 02-Mar-2022
  */
 public interface LeaderService {
-    void checkClientRegistered(Socket socket, String identity, String serverId);
-    void checkChatRoomRegistered(Socket socket, String roomId, String serverId);
+    void checkClientRegistered(ReplyHandle reply, String identity, String serverId);
+    void checkChatRoomRegistered(ReplyHandle reply, String roomId, String serverId);
     void createGlobalClient(String identity);
-    void createGlobalChatRoom(String roomId);
-    void getServerByChatRoomId(Socket socket, String roomId);
+    void createGlobalChatRoom(String roomId, String serverId);
+    void getServerByChatRoomId(ReplyHandle reply, String roomId);
 }
@@ -1,14 +1,17 @@
 package com.groot.server.chat.service;
 
+import com.groot.server.chat.config.NamePartitionerConfig;
+import com.groot.server.chat.connection.ReplyHandle;
+import com.groot.server.chat.constants.GlobalChangeType;
+import com.groot.server.chat.database.GlobalChange;
 import com.groot.server.chat.repository.CoordinationRepository;
 import com.groot.server.chat.repository.LeaderRepository;
 import com.groot.server.chat.util.MessageGenerator;
-import com.groot.server.chat.util.MessageSender;
 import com.groot.server.chat.util.ServerBroadcaster;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.net.Socket;
+import java.util.Objects;
 
 /**
  * @author Melanga Kasun
@@ -20,15 +23,19 @@ public class LeaderServiceImpl implements LeaderService {
     private final CoordinationRepository coordinationRepository = new CoordinationRepository();
 
     @Override
-    public void checkClientRegistered(Socket socket, String identity, String serverId) {
+    public void checkClientRegistered(ReplyHandle reply, String identity, String serverId) {
         try {
             LOGGER.info("Checking the client {} global availability ...", identity);
-            if (coordinationRepository.isGlobalClient(identity) || repository.isPendingClient(identity)) {
+            if (!NamePartitionerConfig.getInstance().isOwner(identity)) {
+                // the range of the identity moved to another server since the requester looked it up
+                LOGGER.error("Client {} is decided by another server ...", identity);
+                reply.send(MessageGenerator.clientAvailabilityMessage(identity, "false", serverId));
+            } else if (coordinationRepository.isGlobalClient(identity) || repository.isPendingClient(identity)) {
                 LOGGER.error("Client {} already exists ...", identity);
-                MessageSender.send(socket.getOutputStream(), MessageGenerator.clientAvailabilityMessage(identity, "false", serverId));
+                reply.send(MessageGenerator.clientAvailabilityMessage(identity, "false", serverId));
             } else {
                 LOGGER.info("Client {} not exists ...", identity);
-                MessageSender.send(socket.getOutputStream(), MessageGenerator.clientAvailabilityMessage(identity, "true", serverId));
+                reply.send(MessageGenerator.clientAvailabilityMessage(identity, "true", serverId));
             }
         } catch (Exception e) {
             LOGGER.error("Client register data checking error ... {}", e.getMessage(), e);
@@ -36,15 +43,18 @@ public class LeaderServiceImpl implements LeaderService {
     }
 
     @Override
-    public void checkChatRoomRegistered(Socket socket, String roomId, String serverId) {
+    public void checkChatRoomRegistered(ReplyHandle reply, String roomId, String serverId) {
         try {
             LOGGER.info("Checking the chat room {} global availability ...", roomId);
-            if (coordinationRepository.isGlobalChatRoom(roomId) || repository.isPendingChatRoom(roomId, serverId)) {
+            if (!NamePartitionerConfig.getInstance().isOwner(roomId)) {
+                LOGGER.error("Chat room {} is decided by another server ...", roomId);
+                reply.send(MessageGenerator.chatRoomAvailabilityMessage(roomId, "false", serverId));
+            } else if (coordinationRepository.isGlobalChatRoom(roomId) || repository.isPendingChatRoom(roomId, serverId)) {
                 LOGGER.error("Chat room {} already exists ...", roomId);
-                MessageSender.send(socket.getOutputStream(), MessageGenerator.chatRoomAvailabilityMessage(roomId, "false", serverId));
+                reply.send(MessageGenerator.chatRoomAvailabilityMessage(roomId, "false", serverId));
             } else {
                 LOGGER.info("Chat room {} not exists ...", roomId);
-                MessageSender.send(socket.getOutputStream(), MessageGenerator.chatRoomAvailabilityMessage(roomId, "true", serverId));
+                reply.send(MessageGenerator.chatRoomAvailabilityMessage(roomId, "true", serverId));
             }
         } catch (Exception e) {
             LOGGER.error("Chat room register data checking error ... {}", e.getMessage(), e);
@@ -55,43 +65,58 @@ public class LeaderServiceImpl implements LeaderService {
     public void createGlobalClient(String identity) {
         try {
             LOGGER.info("Adding the client {} to global list ...", identity);
+            // add client to the global list before releasing the reservation, so no check in between approves it
+            long version = coordinationRepository.addNewGlobalClient(identity);
+            LOGGER.info("Successfully added the client {} to global list ...", identity);
             // remove client from pending
             repository.removePendingClient(identity);
             LOGGER.info("Successfully removed the client {} from pending list ...", identity);
-            // add client to the global list
-            coordinationRepository.addNewGlobalClient(identity);
-            LOGGER.info("Successfully added the client {} to global list ...", identity);
-            ServerBroadcaster.broadcast(MessageGenerator.updateGlobalClientsMessage(identity));
+            if (GlobalDeltaBatcher.isEnabled()) {
+                GlobalDeltaBatcher.getInstance().addVersioned(new GlobalChange(version, GlobalChangeType.ADD_CLIENT, identity, null));
+                return;
+            }
+            // the followers remember the version, so it is announced only once it survives a restart
+            coordinationRepository.awaitGlobalPersisted(version);
+            ServerBroadcaster.broadcast(MessageGenerator.updateGlobalClientsMessage(identity, version,
+                    coordinationRepository.getGlobalEpoch()));
         } catch (Exception e) {
             LOGGER.error("Global client creation error ... {}", e.getMessage(), e);
         }
     }
 
     @Override
-    public void createGlobalChatRoom(String roomId) {
+    public void createGlobalChatRoom(String roomId, String serverId) {
         try {
             LOGGER.info("Adding the chat room {} to global list ...", roomId);
-            // remove client from pending
-            String serverId = repository.removePendingChatRoom(roomId);
-            LOGGER.info("Successfully removed the chat room {} from pending list ...", roomId);
-            // add client to the global list
-            coordinationRepository.addNewGlobalChatRoom(roomId, serverId);
+            if (Objects.isNull(serverId)) {
+                serverId = repository.getPendingChatRoomServer(roomId);
+            }
+            // add chat room to the global list before releasing the reservation, so no check in between approves it
+            long version = coordinationRepository.addNewGlobalChatRoom(roomId, serverId);
             LOGGER.info("Successfully added the chat room {} to global list ...", roomId);
-            ServerBroadcaster.broadcast(MessageGenerator.updateGlobalChatRoomsMessage(roomId, serverId));
+            // remove chat room from pending
+            repository.removePendingChatRoom(roomId);
+            LOGGER.info("Successfully removed the chat room {} from pending list ...", roomId);
+            if (GlobalDeltaBatcher.isEnabled()) {
+                GlobalDeltaBatcher.getInstance().addVersioned(new GlobalChange(version, GlobalChangeType.ADD_CHAT_ROOM, roomId, serverId));
+                return;
+            }
+            coordinationRepository.awaitGlobalPersisted(version);
+            ServerBroadcaster.broadcast(MessageGenerator.updateGlobalChatRoomsMessage(roomId, serverId, version,
+                    coordinationRepository.getGlobalEpoch()));
         } catch (Exception e) {
             LOGGER.error("Global chat room creation error ... {}", e.getMessage(), e);
         }
     }
 
     @Override
-    public void getServerByChatRoomId(Socket socket, String roomId) {
+    public void getServerByChatRoomId(ReplyHandle reply, String roomId) {
         try {
             LOGGER.info("Getting the server of the chat room {} ...", roomId);
             // remove client from pending
             String globalServerId = coordinationRepository.getGlobalServerByChatRoomId(roomId);
             LOGGER.info("Successfully retrieved the server {} of the chat room {} ...", globalServerId, roomId);
-            MessageSender.send(socket.getOutputStream(),
-                    MessageGenerator.chatRoomOwningServerMessage(roomId, globalServerId));
+            reply.send(MessageGenerator.chatRoomOwningServerMessage(roomId, globalServerId));
         } catch (Exception e) {
             LOGGER.error("Server retrieving error ... {}", e.getMessage(), e);
         }
@@ -0,0 +1,115 @@
+package com.groot.server.chat.service;
+
+import com.groot.server.chat.config.DataStoreConfig;
+import com.groot.server.chat.database.DataStore;
+import com.groot.server.chat.util.MessageGenerator;
+import com.groot.server.chat.util.ServerBroadcaster;
+import com.groot.server.chat.util.TaskExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Lets the leader lease the ranges of the name hashes to the servers in its view for a limited time.
+ * The SLOTS ranges are spread over the leader and the servers in the order of their ids and the leader renews
+ * the leases of the servers still in its view every LEASE_RENEWAL. A server approves the names of its ranges
+ * while their leases last and asks the holder of any other range, or the leader once the lease of the range lapsed.
+ * <p>
+ * A holder counts its lease from the time it received it while the leader counts LEASE_MARGIN more from the time
+ * it sent it, so a range moves to another server only after the previous holder stopped approving its names.
+ * The margin has to cover the delay of a lease message.
+ */
+public class LeasedNamePartitioner implements NamePartitioner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LeasedNamePartitioner.class);
+    private static final int SLOTS = 64;
+    private static final long LEASE_DURATION = 15000;
+    private static final long LEASE_RENEWAL = 5000;
+    private static final long LEASE_MARGIN = 1000;
+    // holder of every range, empty while the range belongs to the leader
+    private final String[] holders = new String[SLOTS];
+    private final long[] expiresAt = new long[SLOTS];
+
+    public LeasedNamePartitioner() {
+        Arrays.fill(holders, "");
+        TaskExecutor.schedule(this::renew, LEASE_RENEWAL);
+    }
+
+    @Override
+    public synchronized String getOwner(String name) {
+        int slot = slotOf(name);
+        return isLeased(slot, System.currentTimeMillis()) ? holders[slot]
+                : DataStoreConfig.getInstance().getLeader().getServerId();
+    }
+
+    @Override
+    public synchronized boolean isOwner(String name) {
+        DataStore store = DataStoreConfig.getInstance();
+        int slot = slotOf(name);
+        if (isLeased(slot, System.currentTimeMillis())) {
+            return holders[slot].equals(store.getCurrent().getServerId());
+        }
+        return store.isLeaderMyself();
+    }
+
+    /**
+     * Takes over the leases announced by the leader.
+     *
+     * @param leased    holder of every range, empty for the ranges of the leader
+     * @param durations milliseconds every lease lasts from now
+     */
+    public synchronized void updateLeases(List<String> leased, List<Long> durations) {
+        long now = System.currentTimeMillis();
+        for (int slot = 0; slot < SLOTS && slot < leased.size() && slot < durations.size(); slot++) {
+            holders[slot] = leased.get(slot);
+            expiresAt[slot] = now + durations.get(slot);
+        }
+    }
+
+    private void renew() {
+        try {
+            DataStore store = DataStoreConfig.getInstance();
+            if (Objects.nonNull(store.getLeader()) && store.isLeaderMyself()) {
+                String current = store.getCurrent().getServerId();
+                List<String> servers = new ArrayList<>(store.getViews().keySet());
+                servers.add(current);
+                Collections.sort(servers);
+                List<String> leased = new ArrayList<>(SLOTS);
+                List<Long> durations = new ArrayList<>(SLOTS);
+                long now = System.currentTimeMillis();
+                synchronized (this) {
+                    for (int slot = 0; slot < SLOTS; slot++) {
+                        String holder = servers.get(slot % servers.size());
+                        if (holder.equals(current)) {
+                            holder = "";
+                        }
+                        // a range moving to another server stays with its previous holder until the lease lapses
+                        if (holder.equals(holders[slot]) || !isLeased(slot, now)) {
+                            holders[slot] = holder;
+                            expiresAt[slot] = holder.isEmpty() ? 0 : now + LEASE_DURATION + LEASE_MARGIN;
+                        }
+                        leased.add(holders[slot]);
+                        durations.add(holders[slot].isEmpty() ? 0 : Math.max(0, expiresAt[slot] - LEASE_MARGIN - now));
+                    }
+                }
+                ServerBroadcaster.broadcast(MessageGenerator.leaseMessage(leased, durations));
+            }
+        } catch (Exception e) {
+            LOGGER.error("Name lease renewing error ... {}", e.getMessage(), e);
+        } finally {
+            TaskExecutor.schedule(this::renew, LEASE_RENEWAL);
+        }
+    }
+
+    private boolean isLeased(int slot, long now) {
+        return !holders[slot].isEmpty() && now < expiresAt[slot];
+    }
+
+    private static int slotOf(String name) {
+        return (NamePartitioner.hash(name) & Integer.MAX_VALUE) % SLOTS;
+    }
+}
@@ -0,0 +1,26 @@
+package com.groot.server.chat.service;
+
+/**
+ * Assigns the identities and chat room ids to the server which decides about their uniqueness.
+ * The owner of a name keeps the pending reservations of it, while the created names are still recorded
+ * by the leader and replicated to every server.
+ */
+public interface NamePartitioner {
+    /**
+     * @return id of the server to ask whether the name is available
+     */
+    String getOwner(String name);
+
+    /**
+     * @return whether the current server may decide about the name
+     */
+    boolean isOwner(String name);
+
+    /**
+     * Spreads the names evenly, the same name hashes to the same value on every server.
+     */
+    static int hash(String name) {
+        int hash = name.hashCode() * 0x9e3779b9;
+        return hash ^ (hash >>> 16);
+    }
+}
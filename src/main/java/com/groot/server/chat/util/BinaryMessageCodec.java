@@ -0,0 +1,236 @@
+package com.groot.server.chat.util;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Length prefixed binary encoding of the coordination messages.
+ * A frame is a four byte length followed by the encoded message. Values are tagged, integers and lengths
+ * are variable length, and the keys used by the coordination messages are sent as a single byte index.
+ */
+public class BinaryMessageCodec {
+    private static final int MAX_FRAME = 16 * 1024 * 1024;
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte LONG = 2;
+    private static final byte TRUE = 3;
+    private static final byte FALSE = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte LIST = 6;
+    private static final byte MAP = 7;
+    // new keys may only be appended, the index of a key is part of the wire format
+    private static final String[] KEYS = {"type", "cid", "serverid", "identity", "roomid", "approved", "created",
+            "leader", "views", "clients", "chatrooms", "former", "format", "formats"};
+    private static final Map<String, Integer> KEY_INDEXES = new HashMap<>();
+
+    static {
+        for (int i = 0; i < KEYS.length; i++) {
+            KEY_INDEXES.put(KEYS[i], i + 1);
+        }
+    }
+
+    private BinaryMessageCodec() {
+    }
+
+    /**
+     * @return the frame of the message including the length prefix
+     */
+    public static byte[] encode(JSONObject message) {
+        Output output = new Output();
+        output.writeInt(0);
+        writeValue(output, message);
+        byte[] frame = output.toByteArray();
+        ByteBuffer.wrap(frame).putInt(frame.length - 4);
+        return frame;
+    }
+
+    public static void send(OutputStream stream, JSONObject message) throws IOException {
+        stream.write(encode(message));
+        stream.flush();
+    }
+
+    /**
+     * @return the next message of the stream or null if the stream is closed
+     */
+    public static JSONObject read(DataInputStream stream) throws IOException {
+        int length;
+        try {
+            length = stream.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < 0 || length > MAX_FRAME) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        byte[] payload = new byte[length];
+        stream.readFully(payload);
+        return decode(payload);
+    }
+
+    public static JSONObject decode(byte[] payload) throws IOException {
+        try {
+            Object message = readValue(ByteBuffer.wrap(payload));
+            if (!(message instanceof JSONObject)) {
+                throw new IOException("Frame does not contain a message");
+            }
+            return (JSONObject) message;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated frame", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeValue(Output output, Object value) {
+        if (value == null) {
+            output.write(NULL);
+        } else if (value instanceof Boolean) {
+            output.write((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Double || value instanceof Float) {
+            output.write(DOUBLE);
+            output.writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof Number) {
+            output.write(LONG);
+            long number = ((Number) value).longValue();
+            output.writeVarLong((number << 1) ^ (number >> 63));
+        } else if (value instanceof Map) {
+            Map<Object, Object> map = (Map<Object, Object>) value;
+            output.write(MAP);
+            output.writeVarLong(map.size());
+            map.forEach((key, entry) -> {
+                Integer index = KEY_INDEXES.get(String.valueOf(key));
+                if (index != null) {
+                    output.writeVarLong(index);
+                } else {
+                    output.writeVarLong(0);
+                    output.writeString(String.valueOf(key));
+                }
+                writeValue(output, entry);
+            });
+        } else if (value instanceof Collection) {
+            Collection<Object> list = (Collection<Object>) value;
+            output.write(LIST);
+            output.writeVarLong(list.size());
+            list.forEach(entry -> writeValue(output, entry));
+        } else {
+            output.write(STRING);
+            output.writeString(value.toString());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object readValue(ByteBuffer input) throws IOException {
+        byte tag = input.get();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(input);
+            case LONG:
+                long number = readVarLong(input);
+                return (number >>> 1) ^ -(number & 1);
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case DOUBLE:
+                return Double.longBitsToDouble(input.getLong());
+            case LIST:
+                int size = readSize(input);
+                JSONArray list = new JSONArray();
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(input));
+                }
+                return list;
+            case MAP:
+                int entries = readSize(input);
+                JSONObject map = new JSONObject();
+                for (int i = 0; i < entries; i++) {
+                    long index = readVarLong(input);
+                    String key;
+                    if (index == 0) {
+                        key = readString(input);
+                    } else if (index > 0 && index <= KEYS.length) {
+                        key = KEYS[(int) index - 1];
+                    } else {
+                        throw new IOException("Unknown key index " + index);
+                    }
+                    map.put(key, readValue(input));
+                }
+                return map;
+            default:
+                throw new IOException("Unknown value tag " + tag);
+        }
+    }
+
+    private static String readString(ByteBuffer input) throws IOException {
+        int length = readSize(input);
+        String value = new String(input.array(), input.arrayOffset() + input.position(), length, StandardCharsets.UTF_8);
+        input.position(input.position() + length);
+        return value;
+    }
+
+    private static int readSize(ByteBuffer input) throws IOException {
+        long size = readVarLong(input);
+        // every string byte and every list or map entry takes at least one byte of the frame
+        if (size < 0 || size > input.remaining()) {
+            throw new IOException("Invalid size " + size);
+        }
+        return (int) size;
+    }
+
+    private static long readVarLong(ByteBuffer input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = input.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+
+    private static class Output extends ByteArrayOutputStream {
+        private Output() {
+            super(64);
+        }
+
+        private void writeInt(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        private void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        private void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.groot.server.chat.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes the responses of the client protocol straight into their newline terminated UTF-8 frames.
+ * The fields are written in a fixed order without building an intermediate JSON object or string.
+ */
+public final class ClientMessageEncoder {
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private byte[] bytes = new byte[128];
+    private int length;
+
+    private ClientMessageEncoder(String type) {
+        writeAscii("{\"type\":\"");
+        writeAscii(type);
+        write('"');
+    }
+
+    public static EncodedMessage roomListMessage(List<String> roomList) {
+        return new ClientMessageEncoder("roomlist").field("rooms", roomList).end();
+    }
+
+    public static EncodedMessage roomContentsMessage(String roomId, String owner, List<String> clients) {
+        return new ClientMessageEncoder("roomcontents").field("roomid", roomId).field("owner", owner)
+                .field("identities", clients).end();
+    }
+
+    public static EncodedMessage createRoomMessage(String roomId, String isApproved) {
+        return new ClientMessageEncoder("createroom").field("roomid", roomId).field("approved", isApproved).end();
+    }
+
+    public static EncodedMessage roomChangeMessage(String identity, String former, String roomId) {
+        return new ClientMessageEncoder("roomchange").field("identity", identity).field("former", former)
+                .field("roomid", roomId).end();
+    }
+
+    public static EncodedMessage routeMessage(String roomId, String serverAddress, int clientsPort) {
+        return new ClientMessageEncoder("route").field("roomid", roomId).field("host", serverAddress)
+                .field("port", String.valueOf(clientsPort)).end();
+    }
+
+    public static EncodedMessage message(String identity, String content) {
+        return new ClientMessageEncoder("message").field("identity", identity).field("content", content).end();
+    }
+
+    public static EncodedMessage newIdentityMessage(String isApproved) {
+        return new ClientMessageEncoder("newidentity").field("approved", isApproved).end();
+    }
+
+    public static EncodedMessage serverChangeMessage(String serverId, String isApproved) {
+        return new ClientMessageEncoder("serverchange").field("approved", isApproved).field("serverid", serverId).end();
+    }
+
+    public static EncodedMessage deleteRoomMessageToClient(String roomId, String isApproved) {
+        return new ClientMessageEncoder("deleteroom").field("roomid", roomId).field("approved", isApproved).end();
+    }
+
+    private ClientMessageEncoder field(String name, String value) {
+        key(name);
+        string(value);
+        return this;
+    }
+
+    private ClientMessageEncoder field(String name, List<String> values) {
+        key(name);
+        if (values == null) {
+            writeAscii("null");
+            return this;
+        }
+        write('[');
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                write(',');
+            }
+            string(values.get(i));
+        }
+        write(']');
+        return this;
+    }
+
+    private EncodedMessage end() {
+        write('}');
+        write('\n');
+        return EncodedMessage.wrap(Arrays.copyOf(bytes, length));
+    }
+
+    private void key(String name) {
+        writeAscii(",\"");
+        writeAscii(name);
+        writeAscii("\":");
+    }
+
+    private void string(String value) {
+        if (value == null) {
+            writeAscii("null");
+            return;
+        }
+        write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                write('\\');
+                write(c);
+            } else if (c == '\n') {
+                writeAscii("\\n");
+            } else if (c == '\r') {
+                writeAscii("\\r");
+            } else if (c == '\t') {
+                writeAscii("\\t");
+            } else if (c < 0x20) {
+                writeAscii("\\u00");
+                write(HEX[c >> 4]);
+                write(HEX[c & 0xf]);
+            } else if (c < 0x80) {
+                write(c);
+            } else if (c < 0x800) {
+                write(0xc0 | c >> 6);
+                write(0x80 | c & 0x3f);
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                write(0xf0 | codePoint >> 18);
+                write(0x80 | codePoint >> 12 & 0x3f);
+                write(0x80 | codePoint >> 6 & 0x3f);
+                write(0x80 | codePoint & 0x3f);
+            } else if (Character.isSurrogate(c)) {
+                // an unpaired surrogate is replaced the same way String.getBytes does
+                write('?');
+            } else {
+                write(0xe0 | c >> 12);
+                write(0x80 | c >> 6 & 0x3f);
+                write(0x80 | c & 0x3f);
+            }
+        }
+        write('"');
+    }
+
+    private void writeAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            write(text.charAt(i));
+        }
+    }
+
+    private void write(int b) {
+        if (length == bytes.length) {
+            bytes = Arrays.copyOf(bytes, length * 2);
+        }
+        bytes[length++] = (byte) b;
+    }
+}
@@ -0,0 +1,79 @@
+package com.groot.server.chat.util;
+
+import com.groot.server.chat.constants.MessageType;
+
+/**
+ * A request of a chat client decoded from its frame.
+ * The instance is reused for every request of a connection, so it must not be kept after the request is handled.
+ */
+public class ClientRequest {
+    private MessageType type;
+    private String identity;
+    private String roomId;
+    private String former;
+    private String content;
+
+    void reset() {
+        type = null;
+        identity = null;
+        roomId = null;
+        former = null;
+        content = null;
+    }
+
+    public MessageType getType() {
+        return type;
+    }
+
+    void setType(MessageType type) {
+        this.type = type;
+    }
+
+    public String getIdentity() {
+        return identity;
+    }
+
+    void setIdentity(String identity) {
+        this.identity = identity;
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    void setRoomId(String roomId) {
+        this.roomId = roomId;
+    }
+
+    public String getFormer() {
+        return former;
+    }
+
+    void setFormer(String former) {
+        this.former = former;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    void setContent(String content) {
+        this.content = content;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("{\"type\":\"").append(type).append('"');
+        append(text, "identity", identity);
+        append(text, "roomid", roomId);
+        append(text, "former", former);
+        append(text, "content", content);
+        return text.append('}').toString();
+    }
+
+    private static void append(StringBuilder text, String name, String value) {
+        if (value != null) {
+            text.append(",\"").append(name).append("\":\"").append(value).append('"');
+        }
+    }
+}
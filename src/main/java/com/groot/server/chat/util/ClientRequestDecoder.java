@@ -0,0 +1,257 @@
+package com.groot.server.chat.util;
+
+import com.groot.server.chat.constants.MessageType;
+import org.json.simple.parser.ParseException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming decoder of the client requests, which are flat JSON objects with a fixed set of fields.
+ * The fields are read straight from the frame bytes into a reused {@link ClientRequest}, the type is resolved
+ * without creating a string and unknown fields are skipped without being decoded.
+ */
+public class ClientRequestDecoder {
+    private static final byte[] TYPE = bytes("type");
+    private static final byte[] IDENTITY = bytes("identity");
+    private static final byte[] ROOM_ID = bytes("roomid");
+    private static final byte[] FORMER = bytes("former");
+    private static final byte[] CONTENT = bytes("content");
+
+    private final byte[] frame;
+    private final int end;
+    private int position;
+
+    private ClientRequestDecoder(byte[] frame, int offset, int length) {
+        this.frame = frame;
+        this.position = offset;
+        this.end = offset + length;
+    }
+
+    public static void decode(byte[] frame, int offset, int length, ClientRequest request) throws ParseException {
+        request.reset();
+        new ClientRequestDecoder(frame, offset, length).decodeObject(request);
+    }
+
+    private void decodeObject(ClientRequest request) throws ParseException {
+        expect('{');
+        if (peek() == '}') {
+            position++;
+        } else {
+            do {
+                expect('"');
+                int keyStart = position;
+                skipString();
+                int keyLength = position - keyStart - 1;
+                expect(':');
+                decodeField(request, keyStart, keyLength);
+            } while (next() == ',');
+            position--;
+            expect('}');
+        }
+        skipWhitespace();
+        if (position < end) {
+            throw error();
+        }
+    }
+
+    private void decodeField(ClientRequest request, int keyStart, int keyLength) throws ParseException {
+        if (matches(TYPE, keyStart, keyLength)) {
+            if (peek() == '"') {
+                position++;
+                int start = position;
+                boolean escaped = skipString();
+                request.setType(escaped ? MessageType.get(decodeString(start, position - 1))
+                        : MessageType.get(frame, start, position - start - 1));
+            } else {
+                request.setType(MessageType.get(decodeValue()));
+            }
+        } else if (matches(IDENTITY, keyStart, keyLength)) {
+            request.setIdentity(decodeValue());
+        } else if (matches(ROOM_ID, keyStart, keyLength)) {
+            request.setRoomId(decodeValue());
+        } else if (matches(FORMER, keyStart, keyLength)) {
+            request.setFormer(decodeValue());
+        } else if (matches(CONTENT, keyStart, keyLength)) {
+            request.setContent(decodeValue());
+        } else {
+            skipValue();
+        }
+    }
+
+    /**
+     * @return the string value, the text of a number or boolean, or null for a null, object or array
+     */
+    private String decodeValue() throws ParseException {
+        byte b = peek();
+        if (b == '"') {
+            position++;
+            int start = position;
+            boolean escaped = skipString();
+            return escaped ? decodeString(start, position - 1)
+                    : new String(frame, start, position - start - 1, StandardCharsets.UTF_8);
+        }
+        if (b == '{' || b == '[') {
+            skipValue();
+            return null;
+        }
+        int start = position;
+        skipLiteral();
+        String literal = new String(frame, start, position - start, StandardCharsets.US_ASCII);
+        return literal.equals("null") ? null : literal;
+    }
+
+    private void skipValue() throws ParseException {
+        byte b = peek();
+        if (b == '"') {
+            position++;
+            skipString();
+        } else if (b == '{' || b == '[') {
+            int depth = 0;
+            do {
+                b = frame[position++];
+                if (b == '"') {
+                    skipString();
+                } else if (b == '{' || b == '[') {
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    depth--;
+                }
+            } while (depth > 0 && position < end);
+            if (depth > 0) {
+                throw error();
+            }
+        } else {
+            skipLiteral();
+        }
+    }
+
+    /**
+     * Moves past the closing quote of a string whose opening quote is already consumed.
+     *
+     * @return true if the string contains escape sequences
+     */
+    private boolean skipString() throws ParseException {
+        boolean escaped = false;
+        while (position < end) {
+            byte b = frame[position++];
+            if (b == '"') {
+                return escaped;
+            }
+            if (b == '\\') {
+                escaped = true;
+                position++;
+            }
+        }
+        throw error();
+    }
+
+    private void skipLiteral() throws ParseException {
+        int start = position;
+        while (position < end) {
+            byte b = frame[position];
+            if (b == ',' || b == '}' || b == ']' || isWhitespace(b)) {
+                break;
+            }
+            position++;
+        }
+        if (position == start) {
+            throw error();
+        }
+    }
+
+    private String decodeString(int start, int stop) throws ParseException {
+        StringBuilder text = new StringBuilder(stop - start);
+        int segment = start;
+        for (int i = start; i < stop; i++) {
+            if (frame[i] != '\\') {
+                continue;
+            }
+            text.append(new String(frame, segment, i - segment, StandardCharsets.UTF_8));
+            char escape = (char) frame[++i];
+            switch (escape) {
+                case 'b':
+                    text.append('\b');
+                    break;
+                case 'f':
+                    text.append('\f');
+                    break;
+                case 'n':
+                    text.append('\n');
+                    break;
+                case 'r':
+                    text.append('\r');
+                    break;
+                case 't':
+                    text.append('\t');
+                    break;
+                case 'u':
+                    if (i + 4 >= stop) {
+                        throw error();
+                    }
+                    try {
+                        text.append((char) Integer.parseInt(new String(frame, i + 1, 4, StandardCharsets.US_ASCII), 16));
+                    } catch (NumberFormatException e) {
+                        throw error();
+                    }
+                    i += 4;
+                    break;
+                default:
+                    text.append(escape);
+                    break;
+            }
+            segment = i + 1;
+        }
+        return text.append(new String(frame, segment, stop - segment, StandardCharsets.UTF_8)).toString();
+    }
+
+    private boolean matches(byte[] key, int start, int length) {
+        if (key.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (frame[start + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void expect(char expected) throws ParseException {
+        if (next() != expected) {
+            throw error();
+        }
+    }
+
+    private byte next() throws ParseException {
+        byte b = peek();
+        position++;
+        return b;
+    }
+
+    private byte peek() throws ParseException {
+        skipWhitespace();
+        if (position >= end) {
+            throw error();
+        }
+        return frame[position];
+    }
+
+    private void skipWhitespace() {
+        while (position < end && isWhitespace(frame[position])) {
+            position++;
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private ParseException error() {
+        int at = Math.min(position, end - 1);
+        return new ParseException(at, ParseException.ERROR_UNEXPECTED_CHAR, at >= 0 ? (char) frame[at] : null);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
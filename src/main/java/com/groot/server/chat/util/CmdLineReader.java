@@ -1,5 +1,12 @@
 package com.groot.server.chat.util;
 
+import com.groot.server.chat.constants.ClientIoMode;
+import com.groot.server.chat.constants.FlushMode;
+import com.groot.server.chat.constants.NameRegistryMode;
+import com.groot.server.chat.constants.RoomExecutionMode;
+import com.groot.server.chat.constants.SlowConsumerPolicy;
+import com.groot.server.chat.constants.ThreadMode;
+import com.groot.server.chat.constants.WireFormat;
 import org.kohsuke.args4j.Option;
 
 /**
@@ -13,6 +20,48 @@ public class CmdLineReader {
     @Option(required = true, name = "-c", aliases = "--servers_conf", usage = "Server Configuration File")
     private String serversConfiguration;
 
+    @Option(name = "-m", aliases = "--client_io", usage = "Client IO Mode (BLOCKING or REACTOR)")
+    private ClientIoMode clientIoMode = ClientIoMode.BLOCKING;
+
+    @Option(name = "-r", aliases = "--reactor_threads", usage = "Number of Reactor Threads in REACTOR mode")
+    private int reactorThreads = 2;
+
+    @Option(name = "-t", aliases = "--threads", usage = "Thread Mode of the handlers (PLATFORM or VIRTUAL)")
+    private ThreadMode threadMode = ThreadMode.PLATFORM;
+
+    @Option(name = "-q", aliases = "--outbound_queue", usage = "Maximum Number of Queued Messages per Client")
+    private int outboundQueueCapacity = 1024;
+
+    @Option(name = "-p", aliases = "--slow_consumer", usage = "Policy for a Full Client Queue (DROP_OLDEST, DROP_NEWEST or DISCONNECT)")
+    private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.DISCONNECT;
+
+    @Option(name = "-f", aliases = "--flush", usage = "Flush Mode of the Client Messages (IMMEDIATE or COALESCE)")
+    private FlushMode flushMode = FlushMode.COALESCE;
+
+    @Option(name = "-w", aliases = "--coalesce_window", usage = "Milliseconds to Wait for More Client Messages before a Coalesced Write")
+    private int coalesceWindow = 0;
+
+    @Option(name = "-e", aliases = "--peer_format", usage = "Preferred Wire Format of the Coordination Messages (BINARY or JSON)")
+    private WireFormat peerWireFormat = WireFormat.BINARY;
+
+    @Option(name = "-x", aliases = "--room_execution", usage = "Execution Mode of the Chat Room Events (CALLER or MAILBOX)")
+    private RoomExecutionMode roomExecutionMode = RoomExecutionMode.CALLER;
+
+    @Option(name = "-d", aliases = "--data_dir", usage = "Directory to Persist the Global Clients and Chat Rooms")
+    private String dataDirectory;
+
+    @Option(name = "-g", aliases = "--sync_budget", usage = "Milliseconds a Persisted Global Change may Wait to be Synced to the Disk")
+    private int syncBudget = 5;
+
+    @Option(name = "-n", aliases = "--name_registry", usage = "Server Deciding the Availability of the Names (LEADER, LEASED or CONSISTENT_HASH)")
+    private NameRegistryMode nameRegistryMode = NameRegistryMode.LEADER;
+
+    @Option(name = "-b", aliases = "--batch_window", usage = "Milliseconds to Gather the Global Changes before Broadcasting them Together")
+    private int batchWindow = 0;
+
+    @Option(name = "-u", aliases = "--pending_timeout", usage = "Milliseconds a Reserved Name Waits for its Creation to be Confirmed")
+    private int pendingTimeout = 30000;
+
     public String getServerId() {
         return serverId;
     }
@@ -20,4 +69,60 @@ public class CmdLineReader {
     public String getServersConfiguration() {
         return serversConfiguration;
     }
+
+    public ClientIoMode getClientIoMode() {
+        return clientIoMode;
+    }
+
+    public int getReactorThreads() {
+        return reactorThreads;
+    }
+
+    public ThreadMode getThreadMode() {
+        return threadMode;
+    }
+
+    public int getOutboundQueueCapacity() {
+        return outboundQueueCapacity;
+    }
+
+    public SlowConsumerPolicy getSlowConsumerPolicy() {
+        return slowConsumerPolicy;
+    }
+
+    public FlushMode getFlushMode() {
+        return flushMode;
+    }
+
+    public int getCoalesceWindow() {
+        return coalesceWindow;
+    }
+
+    public WireFormat getPeerWireFormat() {
+        return peerWireFormat;
+    }
+
+    public RoomExecutionMode getRoomExecutionMode() {
+        return roomExecutionMode;
+    }
+
+    public String getDataDirectory() {
+        return dataDirectory;
+    }
+
+    public int getSyncBudget() {
+        return syncBudget;
+    }
+
+    public NameRegistryMode getNameRegistryMode() {
+        return nameRegistryMode;
+    }
+
+    public int getBatchWindow() {
+        return batchWindow;
+    }
+
+    public int getPendingTimeout() {
+        return pendingTimeout;
+    }
 }
@@ -0,0 +1,46 @@
+package com.groot.server.chat.util;
+
+import org.json.simple.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A message serialized once into its newline terminated UTF-8 frame.
+ * The bytes are never modified after encoding, so one instance can be shared by every recipient of a broadcast.
+ */
+public final class EncodedMessage {
+    private final byte[] frame;
+
+    private EncodedMessage(byte[] frame) {
+        this.frame = frame;
+    }
+
+    public static EncodedMessage of(JSONObject message) {
+        return new EncodedMessage((message.toJSONString() + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Takes ownership of an already encoded frame, the caller must not modify the bytes afterwards.
+     */
+    static EncodedMessage wrap(byte[] frame) {
+        return new EncodedMessage(frame);
+    }
+
+    public void writeTo(OutputStream stream) throws IOException {
+        stream.write(frame);
+    }
+
+    /**
+     * @return a read-only view with its own position, the underlying bytes are not copied
+     */
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(frame).asReadOnlyBuffer();
+    }
+
+    public int length() {
+        return frame.length;
+    }
+}
@@ -0,0 +1,106 @@
+package com.groot.server.chat.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Splits the bytes received on a connection into newline delimited frames.
+ * A decoder lives as long as its connection, so a frame split across reads is completed by the next
+ * read and several pipelined frames in one read are all delivered in order.
+ */
+public class FrameDecoder {
+    private static final int MAX_FRAME_LENGTH = 64 * 1024;
+    private byte[] frame = new byte[256];
+    private int length;
+    private int frameLength = -1;
+    // set once a frame overflows, the bytes up to its newline are dropped instead of starting a new frame
+    private boolean discarding;
+
+    /**
+     * Receives a completed frame, the bytes are reused by the decoder once the consumer returns.
+     */
+    @FunctionalInterface
+    public interface FrameConsumer {
+        void accept(byte[] frame, int length);
+    }
+
+    public void decode(byte[] bytes, int offset, int count, Consumer<String> frames) throws FrameTooLongException {
+        for (int i = offset; i < offset + count; i++) {
+            if (append(bytes[i])) {
+                frames.accept(new String(frame, 0, frameLength, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    public void decode(ByteBuffer buffer, FrameConsumer frames) throws FrameTooLongException {
+        while (buffer.hasRemaining()) {
+            if (append(buffer.get())) {
+                frames.accept(frame, frameLength);
+            }
+        }
+    }
+
+    /**
+     * Consumes the bytes up to the end of the next frame, the remaining bytes are left for the next call.
+     * A completed frame stays available from {@link #getFrame()} until the decoder is used again.
+     *
+     * @return the number of bytes consumed
+     */
+    public int decodeFrame(byte[] bytes, int offset, int count) throws FrameTooLongException {
+        frameLength = -1;
+        for (int i = offset; i < offset + count; i++) {
+            if (append(bytes[i])) {
+                return i - offset + 1;
+            }
+        }
+        return count;
+    }
+
+    public boolean hasFrame() {
+        return frameLength >= 0;
+    }
+
+    public byte[] getFrame() {
+        return frame;
+    }
+
+    public int getFrameLength() {
+        return frameLength;
+    }
+
+    /**
+     * @return true if the byte completed a frame
+     */
+    private boolean append(byte b) throws FrameTooLongException {
+        if (b == '\n') {
+            if (discarding) {
+                discarding = false;
+                return false;
+            }
+            // drop the carriage return of CRLF terminated frames
+            int end = length > 0 && frame[length - 1] == '\r' ? length - 1 : length;
+            length = 0;
+            if (end > 0) {
+                frameLength = end;
+                return true;
+            }
+            return false;
+        }
+        frameLength = -1;
+        if (discarding) {
+            return false;
+        }
+        if (length == frame.length) {
+            if (length == MAX_FRAME_LENGTH) {
+                length = 0;
+                discarding = true;
+                throw new FrameTooLongException(MAX_FRAME_LENGTH);
+            }
+            frame = Arrays.copyOf(frame, Math.min(length * 2, MAX_FRAME_LENGTH));
+        }
+        frame[length++] = b;
+        return false;
+    }
+}
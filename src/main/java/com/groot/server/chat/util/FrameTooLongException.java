@@ -0,0 +1,15 @@
+package com.groot.server.chat.util;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a peer sends a frame longer than the decoder accepts. The connection cannot be trusted to
+ * follow the protocol after it, so the connection is closed and its client removed.
+ */
+public class FrameTooLongException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public FrameTooLongException(int maxLength) {
+        super("Frame exceeds " + maxLength + " bytes");
+    }
+}
@@ -1,5 +1,7 @@
 package com.groot.server.chat.util;
 
+import com.groot.server.chat.database.GlobalChange;
+import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
 import java.util.List;
@@ -11,33 +13,6 @@ import java.util.Map;
  */
 public class MessageGenerator {
 
-    @SuppressWarnings("unchecked")
-    public static JSONObject roomListMessage(List<String> roomList) {
-        JSONObject message = new JSONObject();
-        message.put("type", "roomlist");
-        message.put("rooms", roomList);
-        return message;
-    }
-
-    @SuppressWarnings("unchecked")
-    public static JSONObject roomContentsMessage(String roomId, String owner, List<String> clients) {
-        JSONObject message = new JSONObject();
-        message.put("type", "roomcontents");
-        message.put("roomid", roomId);
-        message.put("owner", owner);
-        message.put("identities", clients);
-        return message;
-    }
-
-    @SuppressWarnings("unchecked")
-    public static JSONObject createRoomMessage(String roomId, String isApproved) {
-        JSONObject message = new JSONObject();
-        message.put("type", "createroom");
-        message.put("roomid", roomId);
-        message.put("approved", isApproved);
-        return message;
-    }
-
     @SuppressWarnings("unchecked")
     public static JSONObject chatRoomAvailabilityMessage(String roomId, String isApproved, String serverId) {
         JSONObject message = new JSONObject();
@@ -49,58 +24,24 @@ public class MessageGenerator {
     }
 
     @SuppressWarnings("unchecked")
-    public static JSONObject addGlobalChatRoomMessage(String roomId) {
+    public static JSONObject addGlobalChatRoomMessage(String roomId, String serverId) {
         JSONObject message = new JSONObject();
         message.put("type", "createroom");
         message.put("roomid", roomId);
         message.put("created", "true");
+        message.put("serverid", serverId);
         return message;
     }
 
     @SuppressWarnings("unchecked")
-    public static JSONObject updateGlobalChatRoomsMessage(String roomId, String serverId) {
+    public static JSONObject updateGlobalChatRoomsMessage(String roomId, String serverId, long version, long epoch) {
         JSONObject message = new JSONObject();
         message.put("type", "createroom");
         message.put("roomid", roomId);
         message.put("approved", "true");
         message.put("serverid", serverId);
-        return message;
-    }
-
-    @SuppressWarnings("unchecked")
-    public static JSONObject roomChangeMessage(String identity, String former, String roomId) {
-        JSONObject message = new JSONObject();
-        message.put("type", "roomchange");
-        message.put("identity", identity);
-        message.put("former", former);
-        message.put("roomid", roomId);
-        return message;
-    }
-
-    @SuppressWarnings("unchecked")
-    public static JSONObject routeMessage(String roomId, String serverAddress, int clientsPort) {
-        JSONObject message = new JSONObject();
-        message.put("type", "route");
-        message.put("roomid", roomId);
-        message.put("host", serverAddress);
-        message.put("port", String.valueOf(clientsPort));
-        return message;
-    }
-
-    @SuppressWarnings("unchecked")
-    public static JSONObject message(String identity, String content) {
-        JSONObject message = new JSONObject();
-        message.put("type", "message");
-        message.put("identity", identity);
-        message.put("content", content);
-        return message;
-    }
-
-    @SuppressWarnings("unchecked")
-    public static JSONObject newIdentityMessage(String isApproved) {
-        JSONObject message = new JSONObject();
-        message.put("type", "newidentity");
-        message.put("approved", isApproved);
+        message.put("version", version);
+        message.put("epoch", epoch);
         return message;
     }
 
@@ -124,29 +65,13 @@ public class MessageGenerator {
     }
 
     @SuppressWarnings("unchecked")
-    public static JSONObject updateGlobalClientsMessage(String identity) {
+    public static JSONObject updateGlobalClientsMessage(String identity, long version, long epoch) {
         JSONObject message = new JSONObject();
         message.put("type", "newidentity");
         message.put("identity", identity);
         message.put("approved", "true");
-        return message;
-    }
-
-    @SuppressWarnings("unchecked")
-    public static JSONObject serverChangeMessage(String serverId, String isApproved) {
-        JSONObject message = new JSONObject();
-        message.put("type", "serverchange");
-        message.put("approved", isApproved);
-        message.put("serverid", serverId);
-        return message;
-    }
-
-    @SuppressWarnings("unchecked")
-    public static JSONObject deleteRoomMessageToClient(String roomId, String isApproved) {
-        JSONObject message = new JSONObject();
-        message.put("type", "deleteroom");
-        message.put("roomid", roomId);
-        message.put("approved", isApproved);
+        message.put("version", version);
+        message.put("epoch", epoch);
         return message;
     }
 
@@ -248,18 +173,106 @@ public class MessageGenerator {
     }
 
     @SuppressWarnings("unchecked")
-    public static JSONObject requestGlobalsMessage() {
+    public static JSONObject requestGlobalsMessage(long since, long epoch) {
         JSONObject message = new JSONObject();
         message.put("type", "globals");
+        message.put("since", since);
+        message.put("epoch", epoch);
         return message;
     }
 
     @SuppressWarnings("unchecked")
-    public static JSONObject globalDataMessage(List<String> clients, Map<String, String> chatRooms) {
+    public static JSONObject globalDataMessage(List<String> clients, Map<String, String> chatRooms, long version, long epoch) {
         JSONObject message = new JSONObject();
         message.put("type", "globals");
         message.put("clients", clients);
         message.put("chatrooms", chatRooms);
+        message.put("version", version);
+        message.put("epoch", epoch);
+        return message;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static JSONObject globalChangesMessage(List<GlobalChange> changes, long version, long epoch) {
+        JSONObject message = new JSONObject();
+        message.put("type", "globals");
+        message.put("changes", globalChangeEntries(changes));
+        message.put("version", version);
+        message.put("epoch", epoch);
+        return message;
+    }
+
+    /**
+     * @param version latest version of the leader among the changes, or -1 if none of them has one
+     */
+    @SuppressWarnings("unchecked")
+    public static JSONObject globalDeltaMessage(List<GlobalChange> changes, long version, long epoch) {
+        JSONObject message = new JSONObject();
+        message.put("type", "globaldelta");
+        message.put("changes", globalChangeEntries(changes));
+        if (version >= 0) {
+            message.put("version", version);
+            message.put("epoch", epoch);
+        }
+        return message;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONArray globalChangeEntries(List<GlobalChange> changes) {
+        JSONArray entries = new JSONArray();
+        for (GlobalChange change : changes) {
+            JSONObject entry = new JSONObject();
+            entry.put("type", change.getType().name());
+            switch (change.getType()) {
+                case ADD_CLIENT:
+                case REMOVE_CLIENT:
+                    entry.put("identity", change.getId());
+                    break;
+                default:
+                    entry.put("roomid", change.getId());
+                    if (change.getServerId() != null) {
+                        entry.put("serverid", change.getServerId());
+                    }
+                    break;
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static JSONObject leaseMessage(List<String> holders, List<Long> durations) {
+        JSONObject message = new JSONObject();
+        message.put("type", "lease");
+        message.put("holders", holders);
+        message.put("durations", durations);
+        return message;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static JSONObject helloMessage(List<String> formats) {
+        JSONObject message = new JSONObject();
+        message.put("type", "hello");
+        message.put("formats", formats);
+        return message;
+    }
+
+    /**
+     * Answers a request of a type the server does not handle, for instance one of a newer version.
+     */
+    @SuppressWarnings("unchecked")
+    public static JSONObject errorMessage(String requestType) {
+        JSONObject message = new JSONObject();
+        message.put("type", "error");
+        message.put("request", requestType);
+        return message;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static JSONObject helloResponse(String format) {
+        JSONObject message = new JSONObject();
+        message.put("type", "hello");
+        message.put("format", format);
         return message;
     }
 }
@@ -4,11 +4,10 @@ import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Queue;
 
 /**
  * @author Melanga Kasun
@@ -16,7 +15,38 @@ import java.nio.charset.StandardCharsets;
  */
 public class MessageReader {
     private static final JSONParser JSON_PARSER = new JSONParser();
-    public static JSONObject read(InputStream stream) throws IOException, ParseException {
-        return (JSONObject) JSON_PARSER.parse(new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8)).readLine());
+    private final InputStream stream;
+    private final byte[] buffer = new byte[8192];
+    private final FrameDecoder decoder = new FrameDecoder();
+    // the parser keeps state while parsing, so each connection owns one instead of sharing JSON_PARSER
+    private final JSONParser parser = new JSONParser();
+    private final Queue<String> frames = new ArrayDeque<>();
+
+    /**
+     * Creates a reader for a connection which carries many messages, the reader has to be kept for the
+     * lifetime of the connection since it may hold frames received ahead of the current one.
+     */
+    public MessageReader(InputStream stream) {
+        this.stream = stream;
+    }
+
+    /**
+     * @return the next message of the connection or null if the stream is closed
+     */
+    public JSONObject next() throws IOException, ParseException {
+        while (frames.isEmpty()) {
+            int count = stream.read(buffer);
+            if (count < 0) {
+                return null;
+            }
+            decoder.decode(buffer, 0, count, frames::add);
+        }
+        return (JSONObject) parser.parse(frames.poll());
+    }
+
+    public static JSONObject parse(String frame) throws ParseException {
+        synchronized (JSON_PARSER) {
+            return (JSONObject) JSON_PARSER.parse(frame);
+        }
     }
 }
@@ -2,10 +2,9 @@ package com.groot.server.chat.util;
 
 import org.json.simple.JSONObject;
 
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 /**
  * @author Melanga Kasun
@@ -13,8 +12,21 @@ import java.nio.charset.StandardCharsets;
  */
 public class MessageSender {
     public static void send(OutputStream stream, JSONObject message) throws IOException {
-        DataOutputStream response = new DataOutputStream(stream);
-        response.write((message.toJSONString() + "\n").getBytes(StandardCharsets.UTF_8));
-        response.flush();
+        send(stream, EncodedMessage.of(message));
+    }
+
+    public static void send(OutputStream stream, EncodedMessage message) throws IOException {
+        message.writeTo(stream);
+        stream.flush();
+    }
+
+    /**
+     * Writes all the messages before flushing, so a buffered stream sends them with a single write.
+     */
+    public static void send(OutputStream stream, List<EncodedMessage> messages) throws IOException {
+        for (EncodedMessage message : messages) {
+            message.writeTo(stream);
+        }
+        stream.flush();
     }
 }
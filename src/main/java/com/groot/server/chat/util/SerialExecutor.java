@@ -0,0 +1,47 @@
+package com.groot.server.chat.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs the submitted tasks one at a time in submission order on the shared task executor.
+ * No thread is held while the queue is empty, so any number of instances can share the executor.
+ */
+public class SerialExecutor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SerialExecutor.class);
+    // tasks run before the drain yields the thread to the other instances
+    private static final int MAX_BATCH = 64;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (scheduled.compareAndSet(false, true)) {
+            TaskExecutor.execute(this::drain);
+        }
+    }
+
+    public int getQueuedTasks() {
+        return tasks.size();
+    }
+
+    private void drain() {
+        Runnable task;
+        for (int i = 0; i < MAX_BATCH && (task = tasks.poll()) != null; i++) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                LOGGER.error("An error occurred in a queued task ... {}", e.getMessage(), e);
+            }
+        }
+        scheduled.set(false);
+        // a task added after the last poll must not be left behind
+        if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+            TaskExecutor.execute(this::drain);
+        }
+    }
+}
@@ -1,18 +1,16 @@
 package com.groot.server.chat.util;
 
 import com.groot.server.chat.config.DataStoreConfig;
+import com.groot.server.chat.connection.PeerConnectionPool;
 import com.groot.server.chat.database.ChatServer;
 import com.groot.server.chat.database.DataStore;
 import org.json.simple.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.net.Socket;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 /**
  * @author Melanga Kasun
@@ -23,13 +21,13 @@ public class ServerBroadcaster {
 
     public static void broadcast(JSONObject message) throws InterruptedException {
         DataStore store = DataStoreConfig.getInstance();
-        ExecutorService executorService = Executors.newCachedThreadPool();
-        List<String> disconnected = new ArrayList<>();
+        PeerConnectionPool pool = PeerConnectionPool.getInstance();
+        List<Runnable> tasks = new ArrayList<>();
+        List<String> disconnected = Collections.synchronizedList(new ArrayList<>());
         for (ChatServer server : store.getViews().values()) {
-            executorService.execute(() -> {
+            tasks.add(() -> {
                 try {
-                    Socket socket = new Socket(server.getServerAddress(), server.getCoordinationPort());
-                    MessageSender.send(socket.getOutputStream(), message);
+                    pool.send(server, message);
                     LOGGER.info("Sent message to server {} ...", server.getServerId());
                 } catch (Exception e) {
                     LOGGER.error("An error occurred while broadcasting to server {} ... {}",
@@ -38,9 +36,9 @@ public class ServerBroadcaster {
                 }
             });
         }
-        executorService.shutdown();
-        if (executorService.awaitTermination(10000, TimeUnit.MILLISECONDS) && !disconnected.isEmpty()) {
+        if (TaskExecutor.executeAll(tasks, 10000) && !disconnected.isEmpty()) {
             store.removeViews(disconnected);
+            disconnected.forEach(pool::evict);
         }
     }
 }
@@ -0,0 +1,99 @@
+package com.groot.server.chat.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Named counters and gauges of the current server, reported periodically in the log.
+ */
+public class ServerMetrics {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServerMetrics.class);
+    private static final Map<String, AtomicLong> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, Supplier<Object>> GAUGES = new ConcurrentHashMap<>();
+    private static final Map<String, Samples> SAMPLES = new ConcurrentHashMap<>();
+
+    private ServerMetrics() {
+    }
+
+    public static void increment(String name) {
+        add(name, 1);
+    }
+
+    public static void add(String name, long delta) {
+        COUNTERS.computeIfAbsent(name, key -> new AtomicLong()).addAndGet(delta);
+    }
+
+    public static long get(String name) {
+        AtomicLong counter = COUNTERS.get(name);
+        return counter == null ? 0 : counter.get();
+    }
+
+    /**
+     * Records the milliseconds since the JVM started under the given name, only the first time it is reached.
+     */
+    public static void markSinceStart(String name) {
+        long elapsed = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        if (Objects.isNull(COUNTERS.putIfAbsent(name, new AtomicLong(elapsed)))) {
+            LOGGER.info("Reached {} after {} ms ...", name, elapsed);
+        }
+    }
+
+    /**
+     * Keeps a measured value, the snapshot reports the median and the 99th percentile of the latest values.
+     */
+    public static void sample(String name, long value) {
+        SAMPLES.computeIfAbsent(name, key -> new Samples()).add(value);
+    }
+
+    public static void registerGauge(String name, Supplier<Object> gauge) {
+        GAUGES.put(name, gauge);
+    }
+
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new TreeMap<>();
+        COUNTERS.forEach((name, counter) -> snapshot.put(name, counter.get()));
+        SAMPLES.forEach((name, samples) -> {
+            long[] sorted = samples.sorted();
+            if (sorted.length > 0) {
+                snapshot.put(name + ".p50", sorted[(sorted.length - 1) / 2]);
+                snapshot.put(name + ".p99", sorted[(sorted.length - 1) * 99 / 100]);
+            }
+        });
+        GAUGES.forEach((name, gauge) -> {
+            try {
+                snapshot.put(name, gauge.get());
+            } catch (Exception e) {
+                LOGGER.error("Gauge {} reading error ... {}", name, e.getMessage());
+            }
+        });
+        return snapshot;
+    }
+
+    /**
+     * The latest SIZE values of a measurement.
+     */
+    private static class Samples {
+        private static final int SIZE = 1024;
+        private final long[] values = new long[SIZE];
+        private long count;
+
+        private synchronized void add(long value) {
+            values[(int) (count++ % SIZE)] = value;
+        }
+
+        private synchronized long[] sorted() {
+            long[] sorted = Arrays.copyOf(values, (int) Math.min(count, SIZE));
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.groot.server.chat.util;
+
+import com.groot.server.chat.config.ServerConfig;
+import com.groot.server.chat.constants.ThreadMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+
+/**
+ * Executor shared by the client handlers, the server handlers and the coordination fan-outs.
+ * Depending on the configured thread mode every task gets its own virtual thread or runs on a cached
+ * pool of platform threads.
+ */
+public class TaskExecutor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskExecutor.class);
+    private static ExecutorService executor;
+    private static ScheduledExecutorService scheduler;
+
+    private TaskExecutor() {
+    }
+
+    public static ExecutorService getInstance() {
+        if (Objects.isNull(executor)) {
+            synchronized (TaskExecutor.class) {
+                if (Objects.isNull(executor)) {
+                    executor = createExecutor(ServerConfig.getInstance().getThreadMode());
+                }
+            }
+        }
+        return executor;
+    }
+
+    public static void execute(Runnable task) {
+        getInstance().execute(task);
+    }
+
+    /**
+     * Runs the task on the shared executor once the delay has elapsed.
+     */
+    public static void schedule(Runnable task, long delay) {
+        if (Objects.isNull(scheduler)) {
+            synchronized (TaskExecutor.class) {
+                if (Objects.isNull(scheduler)) {
+                    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "task-scheduler");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        scheduler.schedule(() -> execute(task), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return a future completed like the given one, or failed with a TimeoutException if the given one is not
+     * completed within the timeout
+     */
+    public static <T> CompletableFuture<T> within(CompletableFuture<T> future, long timeout) {
+        CompletableFuture<T> bounded = new CompletableFuture<>();
+        future.whenComplete((value, error) -> {
+            if (Objects.isNull(error)) {
+                bounded.complete(value);
+            } else {
+                bounded.completeExceptionally(error);
+            }
+        });
+        if (!bounded.isDone()) {
+            schedule(() -> bounded.completeExceptionally(new TimeoutException("Not completed within " + timeout + " ms")),
+                    timeout);
+        }
+        return bounded;
+    }
+
+    /**
+     * Applies the function to the outcome of the future, right away if the future is completed already and otherwise
+     * on the shared executor, so the thread completing the future is never held by the function.
+     */
+    public static <T, U> CompletableFuture<U> handle(CompletableFuture<T> future,
+                                                     BiFunction<? super T, Throwable, ? extends U> function) {
+        return future.isDone() ? future.handle(function) : future.handleAsync(function, getInstance());
+    }
+
+    /**
+     * Runs the tasks concurrently and waits until all of them are completed.
+     *
+     * @return false if the tasks did not complete within the timeout
+     */
+    public static boolean executeAll(Collection<Runnable> tasks, long timeout) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(tasks.size());
+        for (Runnable task : tasks) {
+            getInstance().execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        return latch.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    private static ExecutorService createExecutor(ThreadMode mode) {
+        if (mode == ThreadMode.VIRTUAL) {
+            try {
+                // looked up reflectively to keep the default build runnable on older runtimes
+                ExecutorService virtualExecutor = (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                LOGGER.info("Running the handlers on virtual threads ...");
+                return virtualExecutor;
+            } catch (ReflectiveOperationException e) {
+                LOGGER.error("Virtual threads are not supported by the runtime {}, using platform threads ...",
+                        System.getProperty("java.version"));
+            }
+        }
+        return Executors.newCachedThreadPool();
+    }
+}
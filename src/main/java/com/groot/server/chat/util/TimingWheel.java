@@ -0,0 +1,142 @@
+package com.groot.server.chat.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed timing wheel running the tasks of many short deadlines with a single thread.
+ * Every tick the wheel moves to its next bucket and runs the tasks of the bucket whose deadline is reached,
+ * so scheduling and cancelling cost a constant time however many deadlines are pending. A deadline further
+ * away than a turn of the wheel waits in its bucket for the remaining rounds. Deadlines are only as precise
+ * as the tick, which suits timeouts rather than timers.
+ */
+public class TimingWheel {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TimingWheel.class);
+    private static final long TICK = 100;
+    private static final int BUCKETS = 512;
+    private static TimingWheel wheel;
+    // buckets are only touched by the worker, new timeouts are handed over through the queue
+    private final List<List<Timeout>> buckets = new ArrayList<>(BUCKETS);
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final long startedAt = System.currentTimeMillis();
+    private long tick;
+
+    /**
+     * A scheduled task, which is not run once cancelled.
+     */
+    public static class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private long rounds;
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private TimingWheel() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        Thread worker = new Thread(this::run, "timing-wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public static TimingWheel getInstance() {
+        if (Objects.isNull(wheel)) {
+            synchronized (TimingWheel.class) {
+                if (Objects.isNull(wheel)) {
+                    wheel = new TimingWheel();
+                }
+            }
+        }
+        return wheel;
+    }
+
+    /**
+     * Runs the task on the wheel thread once the delay has elapsed, the task should only hand over longer work.
+     */
+    public Timeout schedule(Runnable task, long delay) {
+        Timeout timeout = new Timeout(task, System.currentTimeMillis() + delay);
+        pending.incrementAndGet();
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * @return the number of scheduled tasks, including the cancelled ones not yet dropped
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                long sleep = startedAt + (tick + 1) * TICK - System.currentTimeMillis();
+                if (sleep > 0) {
+                    Thread.sleep(sleep);
+                }
+                tick++;
+                transferScheduled();
+                expire(buckets.get((int) (tick % BUCKETS)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                LOGGER.error("Timing wheel error ... {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void transferScheduled() {
+        Timeout timeout;
+        while (Objects.nonNull(timeout = scheduled.poll())) {
+            if (timeout.cancelled) {
+                pending.decrementAndGet();
+                continue;
+            }
+            // a deadline which has passed already expires with the current bucket
+            long ticks = Math.max(tick, (timeout.deadline - startedAt + TICK - 1) / TICK);
+            timeout.rounds = (ticks - tick) / BUCKETS;
+            buckets.get((int) (ticks % BUCKETS)).add(timeout);
+        }
+    }
+
+    private void expire(List<Timeout> bucket) {
+        // the timeouts staying for further rounds are compacted to the front of the bucket
+        int kept = 0;
+        for (int i = 0; i < bucket.size(); i++) {
+            Timeout timeout = bucket.get(i);
+            if (!timeout.cancelled && timeout.rounds > 0) {
+                timeout.rounds--;
+                bucket.set(kept++, timeout);
+                continue;
+            }
+            pending.decrementAndGet();
+            if (!timeout.cancelled) {
+                try {
+                    timeout.task.run();
+                } catch (Exception e) {
+                    LOGGER.error("An error occurred in an expired task ... {}", e.getMessage(), e);
+                }
+            }
+        }
+        bucket.subList(kept, bucket.size()).clear();
+    }
+}
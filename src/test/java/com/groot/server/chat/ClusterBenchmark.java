@@ -0,0 +1,268 @@
+package com.groot.server.chat;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Starts a cluster of chat servers in separate processes from the test class path and drives a login storm against
+ * it: every attempt connects to a random server and asks for an identity. A share of the attempts asks for an
+ * identity another client already holds, the approved clients stay connected so their identities remain taken.
+ * The stopped servers report their counters in their logs, which are summed up with the client side figures.
+ * Run it after the test classes are compiled with
+ * {@code java -cp target/classes:target/test-classes:<dependencies> com.groot.server.chat.ClusterBenchmark
+ * [servers] [name registry modes] [attempts] [collision share] [workers]}.
+ */
+public class ClusterBenchmark {
+    private static final Pattern METRICS = Pattern.compile("Server metrics \\.\\.\\. \\{(.*)}");
+    private static final Pattern COUNTER = Pattern.compile("([\\w.]+)=(\\d+)");
+    private static final String[] COUNTERS = {"leader.requests.identity", "owner.requests.identity", "identity.rejected.locally"};
+
+    public static void main(String[] args) throws Exception {
+        int servers = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        String modes = args.length > 1 ? args[1] : "LEADER";
+        int attempts = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        double collisions = args.length > 3 ? Double.parseDouble(args[3]) : 0.3;
+        int workers = args.length > 4 ? Integer.parseInt(args[4]) : 16;
+        // the modes given as a comma separated list run one after the other against a fresh cluster
+        for (String mode : modes.split(",")) {
+            run(servers, mode, attempts, collisions, workers);
+        }
+    }
+
+    private static void run(int servers, String mode, int attempts, double collisions, int workers) throws Exception {
+        Path directory = Files.createTempDirectory("cluster-benchmark");
+        List<InetSocketAddress> clientAddresses = new ArrayList<>();
+        List<Process> processes = new ArrayList<>();
+        try {
+            start(directory, servers, mode, clientAddresses, processes);
+            Storm storm = new Storm(clientAddresses, attempts, collisions);
+            storm.run(workers);
+            stop(processes);
+            Map<String, Long> counters = readCounters(directory, servers);
+            System.out.printf("%d servers, %s registry, %d attempts with %.0f%% collisions by %d workers%n",
+                    servers, mode, attempts, collisions * 100, workers);
+            System.out.printf("  %d approved, %d rejected in %d ms, %.0f attempts/s, %.0f approvals/s, latency p50 %d us, p99 %d us%n",
+                    storm.approved.get(), storm.rejected.get(), storm.elapsed, attempts * 1000.0 / storm.elapsed,
+                    storm.approved.get() * 1000.0 / storm.elapsed, storm.percentile(50), storm.percentile(99));
+            for (String counter : COUNTERS) {
+                long value = counters.getOrDefault(counter, 0L);
+                System.out.printf("  %-28s %8d %10.0f/s%n", counter, value, value * 1000.0 / storm.elapsed);
+            }
+        } finally {
+            stop(processes);
+            System.out.println("  server logs in " + directory);
+        }
+    }
+
+    private static void start(Path directory, int servers, String mode, List<InetSocketAddress> clientAddresses,
+                              List<Process> processes) throws Exception {
+        List<String> configuration = new ArrayList<>();
+        for (int i = 1; i <= servers; i++) {
+            int clientsPort = freePort();
+            configuration.add("s" + i + " 127.0.0.1 " + clientsPort + " " + freePort());
+            clientAddresses.add(new InetSocketAddress("127.0.0.1", clientsPort));
+        }
+        Path configurationFile = directory.resolve("servers.txt");
+        Files.write(configurationFile, configuration);
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        // the servers come up one after the other as the recovery of servers starting together does not agree on a leader
+        for (int i = 1; i <= clientAddresses.size(); i++) {
+            Path log = directory.resolve("s" + i + ".log");
+            processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    // logging every request would be measured as well, only the reports are kept
+                    "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn",
+                    "-Dorg.slf4j.simpleLogger.log.com.groot.server.chat.ChatServerRunner=info",
+                    "-Dorg.slf4j.simpleLogger.log.com.groot.server.chat.util.ServerMetrics=info",
+                    ChatServerRunner.class.getName(), "-c", configurationFile.toString(), "-i", "s" + i, "-n", mode)
+                    .redirectErrorStream(true).redirectOutput(log.toFile()).start());
+            long deadline = System.currentTimeMillis() + 60000;
+            while (!new String(Files.readAllBytes(log), StandardCharsets.UTF_8).contains("Reached startup.recovered.ms")) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("Server s" + i + " did not recover, see " + log);
+                }
+                Thread.sleep(100);
+            }
+        }
+        // the coordinator messages of the last recovery settle the leader
+        Thread.sleep(2000);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void stop(List<Process> processes) throws InterruptedException {
+        for (Process process : processes) {
+            process.destroy();
+        }
+        for (Process process : processes) {
+            process.waitFor();
+        }
+    }
+
+    /**
+     * @return the counters of the last report of every server, summed up
+     */
+    private static Map<String, Long> readCounters(Path directory, int servers) throws IOException {
+        Map<String, Long> counters = new TreeMap<>();
+        for (int i = 1; i <= servers; i++) {
+            String report = null;
+            for (String line : Files.readAllLines(directory.resolve("s" + i + ".log"), StandardCharsets.UTF_8)) {
+                Matcher matcher = METRICS.matcher(line);
+                if (matcher.find()) {
+                    report = matcher.group(1);
+                }
+            }
+            if (report != null) {
+                Matcher matcher = COUNTER.matcher(report);
+                while (matcher.find()) {
+                    counters.merge(matcher.group(1), Long.parseLong(matcher.group(2)), Long::sum);
+                }
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * The clients logging in, the approved ones are kept connected and their messages are read and dropped.
+     */
+    private static class Storm {
+        private final List<InetSocketAddress> servers;
+        private final int attempts;
+        private final double collisions;
+        private final AtomicInteger started = new AtomicInteger();
+        private final AtomicInteger approved = new AtomicInteger();
+        private final AtomicInteger rejected = new AtomicInteger();
+        private final List<String> taken = Collections.synchronizedList(new ArrayList<>());
+        private final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        private final Queue<SocketChannel> connected = new ConcurrentLinkedQueue<>();
+        private Selector selector;
+        private volatile boolean running = true;
+        private long elapsed;
+
+        Storm(List<InetSocketAddress> servers, int attempts, double collisions) {
+            this.servers = servers;
+            this.attempts = attempts;
+            this.collisions = collisions;
+        }
+
+        void run(int workers) throws Exception {
+            selector = Selector.open();
+            Thread drainer = new Thread(this::drain);
+            drainer.start();
+            List<Thread> threads = new ArrayList<>();
+            long begin = System.nanoTime();
+            for (int i = 0; i < workers; i++) {
+                Thread thread = new Thread(this::login);
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            elapsed = Math.max(1, (System.nanoTime() - begin) / 1000000);
+            running = false;
+            selector.wakeup();
+            drainer.join();
+        }
+
+        private void login() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int attempt = started.getAndIncrement(); attempt < attempts; attempt = started.getAndIncrement()) {
+                String identity = null;
+                if (random.nextDouble() < collisions) {
+                    synchronized (taken) {
+                        if (!taken.isEmpty()) {
+                            identity = taken.get(random.nextInt(taken.size()));
+                        }
+                    }
+                }
+                if (identity == null) {
+                    identity = "u" + Integer.toString(attempt + 100000, 36);
+                }
+                try {
+                    SocketChannel channel = SocketChannel.open(servers.get(random.nextInt(servers.size())));
+                    long begin = System.nanoTime();
+                    PrintWriter writer = new PrintWriter(Channels.newOutputStream(channel), true);
+                    writer.println("{\"type\":\"newidentity\",\"identity\":\"" + identity + "\"}");
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel),
+                            StandardCharsets.UTF_8));
+                    String response = reader.readLine();
+                    latencies.add((System.nanoTime() - begin) / 1000);
+                    if (response != null && response.contains("\"approved\":\"true\"")) {
+                        approved.incrementAndGet();
+                        taken.add(identity);
+                        connected.add(channel);
+                        selector.wakeup();
+                    } else {
+                        rejected.incrementAndGet();
+                        channel.close();
+                    }
+                } catch (IOException e) {
+                    System.err.println("Attempt for " + identity + " failed ... " + e.getMessage());
+                }
+            }
+        }
+
+        private void drain() {
+            ByteBuffer buffer = ByteBuffer.allocate(65536);
+            try {
+                while (running) {
+                    for (SocketChannel channel = connected.poll(); channel != null; channel = connected.poll()) {
+                        channel.configureBlocking(false);
+                        channel.register(selector, SelectionKey.OP_READ);
+                    }
+                    selector.select(100);
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        buffer.clear();
+                        if (((SocketChannel) key.channel()).read(buffer) < 0) {
+                            key.cancel();
+                        }
+                    }
+                    selector.selectedKeys().clear();
+                }
+                for (SelectionKey key : selector.keys()) {
+                    key.channel().close();
+                }
+                for (SocketChannel channel = connected.poll(); channel != null; channel = connected.poll()) {
+                    channel.close();
+                }
+                selector.close();
+            } catch (IOException e) {
+                System.err.println("Draining the clients failed ... " + e.getMessage());
+            }
+        }
+
+        long percentile(int percentile) {
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            return sorted.isEmpty() ? 0 : sorted.get((sorted.size() - 1) * percentile / 100);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.groot.server.chat.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the cost of a join followed by a leave and the member deliveries per second of a broadcast for rooms of
+ * 10 to 50k members, against a list guarded by the lock which a broadcast held for the whole fan-out before.
+ * Run it after the test classes are compiled with
+ * {@code java -cp target/classes:target/test-classes:<dependencies> com.groot.server.chat.database.ChatRoomMembershipBenchmark}.
+ * Each figure is the median of five rounds taken after a warm up round.
+ */
+public class ChatRoomMembershipBenchmark {
+    private static final int ROUNDS = 5;
+    private static volatile Object sink;
+
+    /**
+     * Room membership as it was kept before, every access takes the lock of the list.
+     */
+    private static class LockedMembers {
+        private final List<ChatClient> clients = new ArrayList<>();
+
+        synchronized void addClient(ChatClient client) {
+            clients.add(client);
+        }
+
+        synchronized void removeClient(ChatClient client) {
+            clients.remove(client);
+        }
+
+        synchronized int broadcast(String sender) {
+            int delivered = 0;
+            for (ChatClient member : clients) {
+                if (!member.getIdentity().equals(sender)) {
+                    sink = member;
+                    delivered++;
+                }
+            }
+            return delivered;
+        }
+    }
+
+    public static void main(String[] args) {
+        System.out.printf("%-8s %16s %16s %20s %20s%n", "members", "cow join+leave", "lock join+leave",
+                "cow deliveries/s", "lock deliveries/s");
+        for (int members : new int[]{10, 100, 1_000, 10_000, 50_000}) {
+            ChatRoom room = new ChatRoom("bench", "");
+            LockedMembers locked = new LockedMembers();
+            for (int i = 0; i < members; i++) {
+                ChatClient client = new ChatClient("member" + i, "bench", null);
+                room.addClient(client);
+                locked.addClient(client);
+            }
+            // the number of operations keeps every round around the same amount of copied or visited members
+            int operations = Math.max(20, 2_000_000 / members);
+            measure(room, locked, operations / 10);
+            long[] row = measure(room, locked, operations);
+            System.out.printf("%-8d %13d ns %13d ns %20d %20d%n", members, row[0], row[1], row[2], row[3]);
+        }
+    }
+
+    private static long[] measure(ChatRoom room, LockedMembers locked, int operations) {
+        ChatClient joiner = new ChatClient("joiner", "bench", null);
+        long[] cowChurn = new long[ROUNDS];
+        long[] lockChurn = new long[ROUNDS];
+        long[] cowBroadcast = new long[ROUNDS];
+        long[] lockBroadcast = new long[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < operations; i++) {
+                room.addClient(joiner);
+                room.removeClient(joiner);
+            }
+            cowChurn[round] = (System.nanoTime() - start) / operations;
+            start = System.nanoTime();
+            for (int i = 0; i < operations; i++) {
+                locked.addClient(joiner);
+                locked.removeClient(joiner);
+            }
+            lockChurn[round] = (System.nanoTime() - start) / operations;
+            long delivered = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < operations; i++) {
+                for (ChatClient member : room.getAllClients()) {
+                    if (!member.getIdentity().equals("member0")) {
+                        sink = member;
+                        delivered++;
+                    }
+                }
+            }
+            cowBroadcast[round] = delivered * 1_000_000_000L / Math.max(1, System.nanoTime() - start);
+            delivered = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < operations; i++) {
+                delivered += locked.broadcast("member0");
+            }
+            lockBroadcast[round] = delivered * 1_000_000_000L / Math.max(1, System.nanoTime() - start);
+        }
+        return new long[]{median(cowChurn), median(lockChurn), median(cowBroadcast), median(lockBroadcast)};
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
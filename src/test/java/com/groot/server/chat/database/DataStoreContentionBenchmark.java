@@ -0,0 +1,107 @@
+package com.groot.server.chat.database;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives many handler threads against one store with the mix of a chat node, mostly client and room lookups and
+ * member iterations of a broadcast, with a tenth of the operations moving a client to another room. Each mix runs
+ * against the store as it is and with every operation behind one lock, the way the store guarded its maps before.
+ * Run it after the test classes are compiled with
+ * {@code java -cp target/classes:target/test-classes:<dependencies> com.groot.server.chat.database.DataStoreContentionBenchmark [millis]}.
+ * Each figure is the median throughput of three runs taken after a warm up run.
+ */
+public class DataStoreContentionBenchmark {
+    private static final int RUNS = 3;
+    private static final int CLIENTS = 10_000;
+    private static final int ROOMS = 100;
+    private static final Object LOCK = new Object();
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 1_000;
+        DataStore store = new DataStore();
+        ChatClient[] clients = new ChatClient[CLIENTS];
+        for (int i = 0; i < ROOMS; i++) {
+            store.addChatRoom(new ChatRoom("room" + i, ""));
+        }
+        for (int i = 0; i < CLIENTS; i++) {
+            clients[i] = new ChatClient("client" + i, "room" + i % ROOMS, null);
+            store.addClient(clients[i]);
+            store.addToChatRoom(clients[i].getRoomId(), clients[i]);
+        }
+        System.out.printf("%-8s %16s %16s%n", "threads", "store ops/s", "one lock ops/s");
+        run(store, clients, 4, millis, false);
+        for (int threads : new int[]{1, 4, 16, 64}) {
+            long[] striped = new long[RUNS];
+            long[] locked = new long[RUNS];
+            for (int i = 0; i < RUNS; i++) {
+                striped[i] = run(store, clients, threads, millis, false);
+                locked[i] = run(store, clients, threads, millis, true);
+            }
+            System.out.printf("%-8d %16d %16d%n", threads, median(striped), median(locked));
+        }
+    }
+
+    private static long run(DataStore store, ChatClient[] clients, int threads, long millis, boolean oneLock)
+            throws InterruptedException {
+        AtomicLong operations = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + millis * 1_000_000;
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                while (System.nanoTime() < deadline) {
+                    for (int i = 0; i < 100; i++, count++) {
+                        int operation = random.nextInt(10);
+                        if (oneLock) {
+                            synchronized (LOCK) {
+                                operate(store, clients, random, operation);
+                            }
+                        } else {
+                            operate(store, clients, random, operation);
+                        }
+                    }
+                }
+                operations.addAndGet(count);
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        return operations.get() * 1000 / millis;
+    }
+
+    private static void operate(DataStore store, ChatClient[] clients, ThreadLocalRandom random, int operation) {
+        ChatClient client = clients[random.nextInt(clients.length)];
+        if (operation < 5) {
+            sink = store.getClient(client.getIdentity());
+        } else if (operation < 7) {
+            sink = store.getChatRoom("room" + random.nextInt(ROOMS));
+        } else if (operation < 9) {
+            int members = 0;
+            for (ChatClient member : store.getAllClientsOfChatRoom("room" + random.nextInt(ROOMS))) {
+                if (member != client) {
+                    members++;
+                }
+            }
+            sink = members;
+        } else {
+            // a client is only moved by the handler of its own connection
+            synchronized (client) {
+                String roomId = "room" + random.nextInt(ROOMS);
+                store.removeFromChatRoom(client.getRoomId(), client);
+                client.setRoomId(roomId);
+                store.addToChatRoom(roomId, client);
+            }
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,95 @@
+package com.groot.server.chat.database;
+
+import com.groot.server.chat.config.ServerConfig;
+import com.groot.server.chat.util.ServerMetrics;
+import com.groot.server.chat.util.TimingWheel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DataStoreTest {
+    private static final int PENDING_TIMEOUT = 300;
+
+    @BeforeEach
+    void shortenPendingTimeout() {
+        ServerConfig.getInstance().setPendingTimeout(PENDING_TIMEOUT);
+    }
+
+    @AfterEach
+    void restorePendingTimeout() {
+        ServerConfig.getInstance().setPendingTimeout(30000);
+    }
+
+    @Test
+    void unconfirmedReservationExpires() throws Exception {
+        DataStore store = new DataStore();
+        assertFalse(store.isPendingClient("alice"));
+        assertTrue(store.isPendingClient("alice"));
+        assertFalse(store.isPendingChatRoom("jokes", "s1"));
+        assertTrue(store.isPendingChatRoom("jokes", "s2"));
+        awaitUntil(() -> store.getPendingClientsCount() == 0 && store.getPendingChatRoomsCount() == 0);
+        // the names can be reserved again once released
+        assertFalse(store.isPendingClient("alice"));
+        assertFalse(store.isPendingChatRoom("jokes", "s2"));
+        assertEquals("s2", store.getPendingChatRoomServer("jokes"));
+    }
+
+    @Test
+    void confirmedReservationIsNotReleasedByItsExpiry() throws Exception {
+        DataStore store = new DataStore();
+        assertFalse(store.isPendingClient("alice"));
+        store.removePendingClient("alice");
+        // a new reservation of the same name keeps its own deadline
+        assertFalse(store.isPendingClient("alice"));
+        Thread.sleep(PENDING_TIMEOUT / 2);
+        assertEquals(1, store.getPendingClientsCount());
+        awaitUntil(() -> store.getPendingClientsCount() == 0);
+    }
+
+    /**
+     * Reserves many names, confirms half of them and reserves some again, after which every reservation and every
+     * deadline on the timing wheel has to be gone again.
+     */
+    @Test
+    void churnLeavesNoReservationsOrDeadlinesBehind() throws Exception {
+        int names = 5000;
+        DataStore store = new DataStore();
+        TimingWheel wheel = TimingWheel.getInstance();
+        long clientsExpired = ServerMetrics.get("registry.pending.clients.expired");
+        long roomsExpired = ServerMetrics.get("registry.pending.rooms.expired");
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < names; i++) {
+                store.isPendingClient("client-" + i);
+                store.isPendingChatRoom("room-" + i, "s" + (i % 3 + 1));
+                if (i % 2 == 0) {
+                    store.removePendingClient("client-" + i);
+                    store.removePendingChatRoom("room-" + i);
+                }
+            }
+        }
+        assertEquals(names / 2, store.getPendingClientsCount());
+        assertEquals(names / 2, store.getPendingChatRoomsCount());
+        assertTrue(wheel.getPending() >= names);
+        // deadlines left by other tests on the shared wheel are at most ten seconds away
+        awaitUntil(() -> store.getPendingClientsCount() == 0 && store.getPendingChatRoomsCount() == 0
+                && wheel.getPending() == 0);
+        assertEquals(names / 2, ServerMetrics.get("registry.pending.clients.expired") - clientsExpired);
+        assertEquals(names / 2, ServerMetrics.get("registry.pending.rooms.expired") - roomsExpired);
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("The reservations did not expire in time");
+            }
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.groot.server.chat.database;
+
+import com.groot.server.chat.config.ServerConfig;
+import com.groot.server.chat.util.TimingWheel;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measures what the deadlines of the pending reservations cost while 1k to 1M names are pending at once: a reservation
+ * followed by its confirmation, how long after the last deadline the timing wheel has dropped every reservation, and
+ * for comparison one sweep over the deadlines of all pending names, which an expiry scanning the names pays on every
+ * tick of 100 ms. The wheel pending figure is taken right after the names are filled.
+ * Run it after the test classes are compiled with
+ * {@code java -cp target/classes:target/test-classes:<dependencies> com.groot.server.chat.database.PendingExpiryBenchmark
+ * [pending counts]}.
+ * The reservation and sweep figures are the median of five rounds taken after a warm up round.
+ */
+public class PendingExpiryBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int OPERATIONS = 100_000;
+    private static final int TIMEOUT = 5_000;
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws InterruptedException {
+        String counts = args.length > 0 ? args[0] : "1000,10000,100000,1000000";
+        // the rounds run well within the deadline of the names filled before them
+        ServerConfig.getInstance().setPendingTimeout(TIMEOUT);
+        run(10_000, false);
+        System.out.printf("%-9s %12s %18s %14s %12s %14s%n", "pending", "reserve", "reserve+confirm", "wheel pending",
+                "expiry lag", "sweep");
+        for (String count : counts.split(",")) {
+            run(Integer.parseInt(count), true);
+        }
+    }
+
+    private static void run(int pending, boolean print) throws InterruptedException {
+        DataStore store = new DataStore();
+        long start = System.nanoTime();
+        for (int i = 0; i < pending; i++) {
+            store.isPendingClient("pending-" + i);
+        }
+        long reserve = (System.nanoTime() - start) / pending;
+        long lastDeadline = System.currentTimeMillis() + TIMEOUT;
+        int wheelPending = TimingWheel.getInstance().getPending();
+        reserveAndConfirm(store, OPERATIONS / 10, "warmup-");
+        long[] churn = new long[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            churn[round] = reserveAndConfirm(store, OPERATIONS, "round" + round + "-");
+        }
+        long sweep = sweep(pending);
+        if (store.getPendingClientsCount() < pending) {
+            System.out.println("  the rounds ran past the first deadlines, raise the timeout");
+        }
+        while (store.getPendingClientsCount() > 0) {
+            Thread.sleep(1);
+        }
+        long lag = System.currentTimeMillis() - lastDeadline;
+        if (print) {
+            System.out.printf("%-9d %9d ns %15d ns %14d %9d ms %11d us%n", pending, reserve, median(churn), wheelPending, lag,
+                    sweep / 1000);
+        }
+    }
+
+    /**
+     * @return the nanoseconds of a reservation of a new name followed by its confirmation
+     */
+    private static long reserveAndConfirm(DataStore store, int operations, String prefix) {
+        String[] names = new String[operations];
+        for (int i = 0; i < operations; i++) {
+            names[i] = prefix + i;
+        }
+        long start = System.nanoTime();
+        for (String name : names) {
+            store.isPendingClient(name);
+            store.removePendingClient(name);
+        }
+        return (System.nanoTime() - start) / operations;
+    }
+
+    /**
+     * @return the nanoseconds of one pass over the deadlines of the pending names looking for the expired ones
+     */
+    private static long sweep(int pending) {
+        Map<String, Long> deadlines = new HashMap<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < pending; i++) {
+            deadlines.put("pending-" + i, now + TIMEOUT);
+        }
+        long[] sweeps = new long[ROUNDS + 1];
+        for (int round = 0; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            long time = System.currentTimeMillis();
+            int expired = 0;
+            for (Map.Entry<String, Long> deadline : deadlines.entrySet()) {
+                if (deadline.getValue() <= time) {
+                    expired++;
+                }
+            }
+            sink = expired;
+            sweeps[round] = System.nanoTime() - start;
+        }
+        // the first pass warms up
+        return median(Arrays.copyOfRange(sweeps, 1, sweeps.length));
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
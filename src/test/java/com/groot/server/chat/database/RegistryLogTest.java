@@ -0,0 +1,199 @@
+package com.groot.server.chat.database;
+
+import com.groot.server.chat.util.ServerMetrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegistryLogTest {
+    private static final String FIRST_SEGMENT = "wal-0000000001.log";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replayTruncatesARecordTornByACrash() throws Exception {
+        DataStore store = new DataStore();
+        RegistryLog log = open(store, 1);
+        for (int i = 0; i < 9; i++) {
+            store.addNewGlobalClient("client-" + i);
+        }
+        // the position carries no version of its own, the change after it is awaited
+        store.setGlobalSyncVersion("s2", 7, 42);
+        store.addNewGlobalChatRoom("jokes", "s1");
+        assertTrue(log.await(store.getGlobalVersion()));
+        long complete = Files.size(directory.resolve(FIRST_SEGMENT));
+        long version = store.addNewGlobalClient("torn");
+        assertTrue(log.await(version));
+        // the process dies while the last record is only partly on the disk
+        truncate(directory.resolve(FIRST_SEGMENT), Files.size(directory.resolve(FIRST_SEGMENT)) - 3);
+
+        DataStore restored = new DataStore();
+        open(restored, 1);
+        assertEquals(version - 1, restored.getGlobalVersion());
+        assertEquals(store.getGlobalEpoch(), restored.getGlobalEpoch());
+        assertFalse(restored.isGlobalClient("torn"));
+        assertEquals(9, restored.getGlobalClients().size());
+        assertEquals("s1", restored.getGlobalServerByChatRoomId("jokes"));
+        assertEquals(42, restored.getGlobalSyncVersion("s2"));
+        assertEquals(7, restored.getGlobalSyncEpoch("s2"));
+        assertEquals(complete, Files.size(directory.resolve(FIRST_SEGMENT)));
+    }
+
+    @Test
+    void replayStopsAtARecordWithABadChecksum() throws Exception {
+        DataStore store = new DataStore();
+        RegistryLog log = open(store, 1);
+        store.addNewGlobalClient("alice");
+        assertTrue(log.await(store.getGlobalVersion()));
+        long complete = Files.size(directory.resolve(FIRST_SEGMENT));
+        store.addNewGlobalClient("bob");
+        store.addNewGlobalClient("carol");
+        assertTrue(log.await(store.getGlobalVersion()));
+        // a sector of the second record never made it to the disk
+        try (FileChannel channel = FileChannel.open(directory.resolve(FIRST_SEGMENT), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7f}), complete + 10);
+        }
+
+        DataStore restored = new DataStore();
+        open(restored, 1);
+        assertEquals(Collections.singletonList("alice"), restored.getGlobalClients());
+        assertEquals(1, restored.getGlobalVersion());
+        assertEquals(complete, Files.size(directory.resolve(FIRST_SEGMENT)));
+    }
+
+    @Test
+    void replayContinuesFromTheSnapshotWrittenOnRotation() throws Exception {
+        DataStore store = new DataStore();
+        RegistryLog log = open(store, 1);
+        // one more change than a segment holds moves the log to the next segment and writes a snapshot
+        for (int i = 0; i <= 50000; i++) {
+            store.addNewGlobalClient("client-" + i);
+        }
+        store.setGlobalSyncVersion("s3", 11, 50001);
+        assertTrue(log.await(store.getGlobalVersion()));
+        awaitFiles(files -> files.stream().anyMatch(name -> name.startsWith("snapshot-"))
+                && !files.contains(FIRST_SEGMENT));
+        // changes after the handover are only in the new segment
+        store.deleteGlobalClient("client-0");
+        store.addNewGlobalChatRoom("jokes", "s3");
+        store.addNewGlobalClient("late");
+        assertTrue(log.await(store.getGlobalVersion()));
+
+        DataStore restored = new DataStore();
+        open(restored, 1);
+        assertEquals(store.getGlobalVersion(), restored.getGlobalVersion());
+        assertEquals(store.getGlobalEpoch(), restored.getGlobalEpoch());
+        assertEquals(new HashSet<>(store.getGlobalClients()), new HashSet<>(restored.getGlobalClients()));
+        assertEquals(store.getGlobalChatRooms(), restored.getGlobalChatRooms());
+        assertEquals(50001, restored.getGlobalSyncVersion("s3"));
+        assertFalse(restored.isGlobalClient("client-0"));
+        assertTrue(restored.isGlobalClient("late"));
+    }
+
+    @Test
+    void awaitGivesUpOnAVersionWhichIsNeverSynced() throws Exception {
+        DataStore store = new DataStore();
+        RegistryLog log = open(store, 1);
+        long version = store.addNewGlobalClient("alice");
+        assertTrue(log.await(version));
+        long started = System.nanoTime();
+        assertFalse(log.await(version + 1));
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        assertTrue(waited >= 900 && waited < 5000, "waited " + waited + " ms");
+    }
+
+    /**
+     * Measures how long a change waits until it is synced while several threads register clients, and how
+     * many changes share a sync. Nearly every change should wait the sync budget at most, measured after a warm up round.
+     */
+    @Test
+    void syncsWithinTheBudgetUnderLoad() throws Exception {
+        int budget = 50;
+        int threads = 8;
+        int changesPerThread = 50;
+        DataStore store = new DataStore();
+        RegistryLog log = open(store, budget);
+        registerClients(store, log, threads, changesPerThread, "warmup");
+        long syncs = ServerMetrics.get("registry.log.syncs");
+        long records = ServerMetrics.get("registry.log.records");
+        List<Long> sorted = registerClients(store, log, threads, changesPerThread, "client");
+        syncs = ServerMetrics.get("registry.log.syncs") - syncs;
+        records = ServerMetrics.get("registry.log.records") - records;
+        Collections.sort(sorted);
+        long p50 = sorted.get(sorted.size() / 2);
+        long p99 = sorted.get(sorted.size() * 99 / 100);
+        System.out.printf("sync budget %d ms: %d changes in %d syncs, %.1f changes per sync, wait p50 %d us, p99 %d us%n",
+                budget, records, syncs, (double) records / syncs, p50, p99);
+        assertEquals(threads * changesPerThread, sorted.size());
+        assertTrue(syncs < records, "every change was synced alone");
+        // the margin covers a sync slower than every recent one and waking the threads on a loaded host
+        assertTrue(p99 <= TimeUnit.MILLISECONDS.toMicros(budget + budget / 2), "p99 wait " + p99 + " us");
+    }
+
+    /**
+     * @return the microseconds every change waited until it was synced
+     */
+    private static List<Long> registerClients(DataStore store, RegistryLog log, int threads, int changesPerThread,
+                                              String prefix) throws InterruptedException {
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            new Thread(() -> {
+                for (int i = 0; i < changesPerThread; i++) {
+                    long started = System.nanoTime();
+                    long version = store.addNewGlobalClient(prefix + "-" + thread + "-" + i);
+                    if (log.await(version)) {
+                        latencies.add(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started));
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        return new ArrayList<>(latencies);
+    }
+
+    private RegistryLog open(DataStore store, long syncBudget) throws IOException {
+        return RegistryLog.open(directory.toString(), store, syncBudget);
+    }
+
+    private static void truncate(Path path, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private void awaitFiles(Predicate<List<String>> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 30000;
+        while (System.currentTimeMillis() < deadline) {
+            try (Stream<Path> paths = Files.list(directory)) {
+                if (condition.test(paths.map(path -> path.getFileName().toString()).collect(Collectors.toList()))) {
+                    return;
+                }
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("The registry files did not change in time");
+    }
+}
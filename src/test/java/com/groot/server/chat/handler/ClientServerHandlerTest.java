@@ -0,0 +1,153 @@
+package com.groot.server.chat.handler;
+
+import com.groot.server.chat.config.DataStoreConfig;
+import com.groot.server.chat.config.ServerConfig;
+import com.groot.server.chat.connection.PeerConnectionPool;
+import com.groot.server.chat.constants.WireFormat;
+import com.groot.server.chat.database.ChatServer;
+import com.groot.server.chat.database.DataStore;
+import com.groot.server.chat.service.ChatRoomServiceImpl;
+import com.groot.server.chat.util.EncodedMessage;
+import com.groot.server.chat.util.MessageReader;
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClientServerHandlerTest {
+    private final DataStore store = DataStoreConfig.getInstance();
+    private ServerSocket clientsSocket;
+    private ServerSocket leaderSocket;
+
+    /**
+     * Runs the current server as the leader of a view of its own, so identities are approved locally.
+     */
+    @BeforeEach
+    void startServer() throws Exception {
+        ChatServer current = new ChatServer("s81", "127.0.0.1", 0, 0);
+        store.setCurrent(current);
+        store.setLeader(current);
+        store.markRecovered();
+        new ChatRoomServiceImpl().createMainHallChatRoom();
+        clientsSocket = new ServerSocket(0);
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        clientsSocket.close();
+        if (leaderSocket != null) {
+            PeerConnectionPool.getInstance().evict("s82");
+            leaderSocket.close();
+            ServerConfig.getInstance().setPeerWireFormat(WireFormat.BINARY);
+        }
+    }
+
+    @Test
+    void connectionIsServedWhileTheIdentityAwaitsTheLeader() throws Exception {
+        CountDownLatch approve = new CountDownLatch(1);
+        startLeader(approve);
+        try (Socket client = new Socket("127.0.0.1", clientsSocket.getLocalPort())) {
+            client.setSoTimeout(10000);
+            new Thread(new ClientServerHandler(clientsSocket.accept())).start();
+            BufferedReader responses = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+            OutputStream requests = client.getOutputStream();
+            requests.write("{\"type\":\"newidentity\",\"identity\":\"parked1\"}\n{\"type\":\"list\"}\n"
+                    .getBytes(StandardCharsets.UTF_8));
+            // the leader answers only after the request behind the parked identity was served
+            assertTrue(responses.readLine().startsWith("{\"type\":\"roomlist\""));
+            approve.countDown();
+            assertEquals("{\"type\":\"newidentity\",\"approved\":\"true\"}", responses.readLine());
+            assertEquals("{\"type\":\"roomchange\",\"identity\":\"parked1\",\"former\":\"\",\"roomid\":\""
+                    + store.getMainHall() + "\"}", responses.readLine());
+            assertEquals("parked1", store.getClient("parked1").getIdentity());
+        }
+    }
+
+    /**
+     * Makes a neighbour the leader, which approves an identity once the test allows it.
+     */
+    private void startLeader(CountDownLatch approve) throws Exception {
+        ServerConfig.getInstance().setPeerWireFormat(WireFormat.JSON);
+        leaderSocket = new ServerSocket(0);
+        ChatServer leader = new ChatServer("s82", "127.0.0.1", 0, leaderSocket.getLocalPort());
+        store.addNeighbour(leader);
+        store.setLeader(leader);
+        Thread acceptor = new Thread(() -> {
+            try (Socket socket = leaderSocket.accept()) {
+                MessageReader reader = new MessageReader(socket.getInputStream());
+                OutputStream output = socket.getOutputStream();
+                JSONObject request;
+                while ((request = reader.next()) != null) {
+                    if ("newidentity".equals(request.get("type")) && request.get("cid") != null) {
+                        approve.await(10, TimeUnit.SECONDS);
+                        EncodedMessage.of(approval(request)).writeTo(output);
+                        output.flush();
+                    }
+                }
+            } catch (Exception e) {
+                // the test closed the leader
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject approval(JSONObject request) {
+        JSONObject response = new JSONObject();
+        response.put("type", "newidentity");
+        response.put("identity", request.get("identity"));
+        response.put("approved", "true");
+        response.put("cid", request.get("cid"));
+        return response;
+    }
+
+    @Test
+    void clientSendingAnOversizedFrameIsClosedAndRemoved() throws Exception {
+        try (Socket client = new Socket("127.0.0.1", clientsSocket.getLocalPort())) {
+            client.setSoTimeout(10000);
+            Thread handler = new Thread(new ClientServerHandler(clientsSocket.accept()));
+            handler.start();
+            BufferedReader responses = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+            OutputStream requests = client.getOutputStream();
+            requests.write("{\"type\":\"newidentity\",\"identity\":\"oversized1\"}\n".getBytes(StandardCharsets.UTF_8));
+            assertEquals("{\"type\":\"newidentity\",\"approved\":\"true\"}", responses.readLine());
+            // the client joins the main hall after its approval
+            assertEquals("{\"type\":\"roomchange\",\"identity\":\"oversized1\",\"former\":\"\",\"roomid\":\""
+                    + store.getMainHall() + "\"}", responses.readLine());
+            assertTrue(store.isGlobalClient("oversized1"));
+            assertTrue(store.getChatRoom(store.getMainHall()).getAllClients().stream()
+                    .anyMatch(member -> member.getIdentity().equals("oversized1")));
+
+            byte[] oversized = new byte[64 * 1024 + 1];
+            Arrays.fill(oversized, (byte) 'a');
+            requests.write(oversized);
+            handler.join(10000);
+            assertFalse(handler.isAlive());
+            // the server closed the socket after the messages queued before the failure
+            String response;
+            do {
+                response = responses.readLine();
+            } while (response != null);
+        }
+        assertNull(store.getClient("oversized1"));
+        assertFalse(store.isGlobalClient("oversized1"));
+        assertFalse(store.getChatRoom(store.getMainHall()).getAllClients().stream()
+                .anyMatch(member -> member.getIdentity().equals("oversized1")));
+    }
+}
@@ -0,0 +1,78 @@
+package com.groot.server.chat.handler;
+
+import com.groot.server.chat.config.DataStoreConfig;
+import com.groot.server.chat.connection.PeerConnectionPool;
+import com.groot.server.chat.database.ChatServer;
+import com.groot.server.chat.util.MessageGenerator;
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ServerServerHandlerTest {
+    private final PeerConnectionPool pool = PeerConnectionPool.getInstance();
+    private ServerSocket coordinationSocket;
+    private ChatServer neighbour;
+    private final AtomicInteger accepted = new AtomicInteger();
+
+    /**
+     * Serves the coordination connections of a neighbour with the handler of the current server.
+     */
+    @BeforeEach
+    void startServer() throws Exception {
+        DataStoreConfig.getInstance().setCurrent(new ChatServer("s71", "127.0.0.1", 0, 0));
+        coordinationSocket = new ServerSocket(0);
+        neighbour = new ChatServer("s72", "127.0.0.1", 0, coordinationSocket.getLocalPort());
+        Thread acceptor = new Thread(() -> {
+            try {
+                while (true) {
+                    Socket socket = coordinationSocket.accept();
+                    accepted.incrementAndGet();
+                    new Thread(new ServerServerHandler(socket)).start();
+                }
+            } catch (Exception e) {
+                // the test closed the server
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        pool.evict(neighbour.getServerId());
+        coordinationSocket.close();
+    }
+
+    @Test
+    void unknownRequestIsAnsweredWithAnErrorAndKeepsTheConnection() throws Exception {
+        CompletableFuture<JSONObject> unknown = pool.requestAsync(neighbour, newerRequest(), 5000);
+        ExecutionException error = assertThrows(ExecutionException.class, () -> unknown.get(10, TimeUnit.SECONDS));
+        assertTrue(error.getCause() instanceof ProtocolException);
+        // an unknown message which awaits no response is dropped as well
+        pool.send(neighbour, newerRequest());
+        JSONObject response = pool.requestAsync(neighbour, MessageGenerator.heartBeatMessage("s72"), 5000)
+                .get(10, TimeUnit.SECONDS);
+        assertEquals("heartbeatresponse", response.get("type"));
+        assertEquals(1, accepted.get());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject newerRequest() {
+        JSONObject message = new JSONObject();
+        message.put("type", "newerrequest");
+        return message;
+    }
+}
@@ -0,0 +1,113 @@
+package com.groot.server.chat.repository;
+
+import com.groot.server.chat.config.DataStoreConfig;
+import com.groot.server.chat.connection.ClientConnection;
+import com.groot.server.chat.database.ChatClient;
+import com.groot.server.chat.util.EncodedMessage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the time to resolve the client of a connection through the client bound to the connection, against
+ * scanning every client of the node for the connection as the repository did before, at 1k, 10k and 100k clients.
+ * Run it after the test classes are compiled with
+ * {@code java -cp target/classes:target/test-classes:<dependencies> com.groot.server.chat.repository.ClientLookupBenchmark [lookups]}.
+ * Each figure is the median of five rounds taken after a warm up round.
+ */
+public class ClientLookupBenchmark {
+    private static final int ROUNDS = 5;
+    private static volatile Object sink;
+
+    /**
+     * Connection which only keeps the client bound to it.
+     */
+    private static class IdleConnection implements ClientConnection {
+        private ChatClient client;
+
+        @Override
+        public void send(EncodedMessage message) {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public int getQueuedMessages() {
+            return 0;
+        }
+
+        @Override
+        public ChatClient getClient() {
+            return client;
+        }
+
+        @Override
+        public void setClient(ChatClient client) {
+            this.client = client;
+        }
+    }
+
+    public static void main(String[] args) {
+        int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        ClientRepository repository = new ClientRepository();
+        List<ClientConnection> connections = new ArrayList<>();
+        Random random = new Random(42);
+        System.out.printf("%-10s %14s %14s%n", "clients", "session ns", "scan ns");
+        for (int clients : new int[]{1_000, 10_000, 100_000}) {
+            while (connections.size() < clients) {
+                ClientConnection connection = new IdleConnection();
+                repository.createClient(new ChatClient("client" + connections.size(), "MainHall-s1", connection));
+                connections.add(connection);
+            }
+            measure(repository, connections, random, lookups / 10);
+            long[] row = measure(repository, connections, random, lookups);
+            System.out.printf("%-10d %14d %14d%n", clients, row[0], row[1]);
+        }
+    }
+
+    private static long[] measure(ClientRepository repository, List<ClientConnection> connections, Random random, int lookups) {
+        ClientConnection[] targets = new ClientConnection[lookups];
+        for (int i = 0; i < lookups; i++) {
+            targets[i] = connections.get(random.nextInt(connections.size()));
+        }
+        long[] session = new long[ROUNDS];
+        long[] scan = new long[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (ClientConnection target : targets) {
+                sink = repository.getClientByConnection(target);
+            }
+            session[round] = (System.nanoTime() - start) / lookups;
+            start = System.nanoTime();
+            for (ClientConnection target : targets) {
+                sink = scan(target);
+            }
+            scan[round] = (System.nanoTime() - start) / lookups;
+        }
+        return new long[]{median(session), median(scan)};
+    }
+
+    private static ChatClient scan(ClientConnection connection) {
+        for (ChatClient client : DataStoreConfig.getInstance().getClients().values()) {
+            if (client.getConnection() == connection) {
+                return client;
+            }
+        }
+        return null;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,133 @@
+package com.groot.server.chat.service;
+
+import com.groot.server.chat.config.DataStoreConfig;
+import com.groot.server.chat.connection.ClientConnection;
+import com.groot.server.chat.database.ChatClient;
+import com.groot.server.chat.database.ChatRoom;
+import com.groot.server.chat.database.DataStore;
+import com.groot.server.chat.util.ClientMessageEncoder;
+import com.groot.server.chat.util.EncodedMessage;
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatRoomServiceImplTest {
+    private final DataStore store = DataStoreConfig.getInstance();
+    private final ChatRoomService service = new ChatRoomServiceImpl();
+
+    /**
+     * Connection of a room member which only counts the messages and bytes it is sent.
+     */
+    static class CountingConnection implements ClientConnection {
+        private ChatClient client;
+        long messages;
+        long bytes;
+
+        @Override
+        public void send(EncodedMessage message) {
+            messages++;
+            bytes += message.length();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public int getQueuedMessages() {
+            return 0;
+        }
+
+        @Override
+        public ChatClient getClient() {
+            return client;
+        }
+
+        @Override
+        public void setClient(ChatClient client) {
+            this.client = client;
+        }
+    }
+
+    @Test
+    void broadcastReachesEveryMemberButTheSender() {
+        ChatRoom room = createRoom("broadcast-members", 5);
+        service.broadCastMessage(ClientMessageEncoder.message("member0", "hi"), room.getRoomId(), "member0");
+        for (ChatClient member : room.getAllClients()) {
+            assertEquals(member.getIdentity().equals("member0") ? 0 : 1, ((CountingConnection) member.getConnection()).messages);
+        }
+    }
+
+    /**
+     * Measures the bytes allocated by a broadcast for growing rooms, which stay flat since the frame is encoded
+     * once, against encoding the message for every member as the rooms did before.
+     */
+    @Test
+    void broadcastAllocationStaysFlatWithRoomSize() throws Exception {
+        int[] sizes = {10, 100, 1000, 2000};
+        long[] shared = new long[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            ChatRoom room = createRoom("broadcast-allocation-" + sizes[i], sizes[i]);
+            JSONObject message = chatMessage("member0", "a chat line of a typical length for the room");
+            int broadcasts = 200;
+            // warm up both paths before measuring
+            allocatedPerBroadcast(room, message, broadcasts, false);
+            allocatedPerBroadcast(room, message, broadcasts, true);
+            shared[i] = allocatedPerBroadcast(room, message, broadcasts, false);
+            long perMember = allocatedPerBroadcast(room, message, broadcasts, true);
+            System.out.printf("room broadcast to %d members: %d bytes allocated when encoded once, %d bytes when encoded per member%n",
+                    sizes[i], shared[i], perMember);
+        }
+        // the allocation of the broadcast does not grow with the members, unlike a frame per member
+        assertTrue(shared[sizes.length - 1] < shared[0] + 1024,
+                "allocation grew from " + shared[0] + " to " + shared[sizes.length - 1] + " bytes");
+    }
+
+    private long allocatedPerBroadcast(ChatRoom room, JSONObject message, int broadcasts, boolean perMember) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long started = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < broadcasts; i++) {
+            if (perMember) {
+                for (ChatClient member : room.getAllClients()) {
+                    if (!member.getIdentity().equals("member0")) {
+                        member.getConnection().send(EncodedMessage.of(message));
+                    }
+                }
+            } else {
+                service.broadCastMessage(EncodedMessage.of(message), room.getRoomId(), "member0");
+            }
+        }
+        return (threads.getThreadAllocatedBytes(thread) - started) / broadcasts;
+    }
+
+    private ChatRoom createRoom(String roomId, int members) {
+        ChatRoom room = new ChatRoom(roomId, "");
+        store.addChatRoom(room);
+        for (int i = 0; i < members; i++) {
+            CountingConnection connection = new CountingConnection();
+            ChatClient client = new ChatClient("member" + i, roomId, connection);
+            connection.setClient(client);
+            room.addClient(client);
+        }
+        return room;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject chatMessage(String identity, String content) {
+        JSONObject message = new JSONObject();
+        message.put("type", "message");
+        message.put("identity", identity);
+        message.put("content", content);
+        return message;
+    }
+}
@@ -0,0 +1,62 @@
+package com.groot.server.chat.service;
+
+import com.groot.server.chat.config.DataStoreConfig;
+import com.groot.server.chat.database.ChatServer;
+import com.groot.server.chat.database.DataStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashNamePartitionerTest {
+    private final DataStore store = DataStoreConfig.getInstance();
+    private final NamePartitioner partitioner = new ConsistentHashNamePartitioner();
+
+    @BeforeEach
+    void startAlone() {
+        store.setCurrent(new ChatServer("s61", "127.0.0.1", 0, 0));
+        store.removeViews(Arrays.asList("s62", "s63"));
+    }
+
+    @AfterEach
+    void leaveTheView() {
+        store.removeViews(Arrays.asList("s62", "s63"));
+    }
+
+    @Test
+    void namesMoveWithTheView() {
+        assertEquals(0, owned("s62"));
+        store.addView(new ChatServer("s62", "127.0.0.1", 0, 0));
+        int moved = owned("s62");
+        assertTrue(moved > 300 && moved < 700, moved + " of 1000 names moved to the joined server");
+        store.addView(new ChatServer("s63", "127.0.0.1", 0, 0));
+        assertTrue(owned("s62") < moved, "the third server took none of the names of the second");
+        store.removeViews(Collections.singletonList("s62"));
+        assertEquals(0, owned("s62"));
+        store.removeViews(Collections.singletonList("s63"));
+        assertEquals(1000, owned("s61"));
+    }
+
+    @Test
+    void ringFollowsTheCurrentServer() {
+        assertEquals(1000, owned("s61"));
+        store.setCurrent(new ChatServer("s64", "127.0.0.1", 0, 0));
+        assertEquals(1000, owned("s64"));
+        assertTrue(partitioner.isOwner("alice"));
+    }
+
+    private int owned(String serverId) {
+        int owned = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (partitioner.getOwner("name" + i).equals(serverId)) {
+                owned++;
+            }
+        }
+        return owned;
+    }
+}
@@ -0,0 +1,137 @@
+package com.groot.server.chat.service;
+
+import com.groot.server.chat.config.DataStoreConfig;
+import com.groot.server.chat.config.ServerConfig;
+import com.groot.server.chat.connection.PeerConnectionPool;
+import com.groot.server.chat.constants.WireFormat;
+import com.groot.server.chat.database.ChatServer;
+import com.groot.server.chat.database.DataStore;
+import com.groot.server.chat.util.EncodedMessage;
+import com.groot.server.chat.util.MessageGenerator;
+import com.groot.server.chat.util.MessageReader;
+import com.groot.server.chat.util.ServerMetrics;
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CoordinationServiceImplTest {
+    private final DataStore store = DataStoreConfig.getInstance();
+    private final Queue<JSONObject> leaderRequests = new ConcurrentLinkedQueue<>();
+    private ServerSocket leaderSocket;
+    private ChatServer current;
+    private ChatServer leader;
+
+    /**
+     * Makes the current server a follower of a leader which answers every owner request with itself.
+     */
+    @BeforeEach
+    void startLeader() throws IOException {
+        ServerConfig.getInstance().setPeerWireFormat(WireFormat.JSON);
+        leaderSocket = new ServerSocket(0);
+        current = new ChatServer("s91", "127.0.0.1", 0, 0);
+        leader = new ChatServer("s92", "127.0.0.1", 0, leaderSocket.getLocalPort());
+        store.setCurrent(current);
+        store.setLeader(leader);
+        Thread acceptor = new Thread(() -> {
+            try (Socket socket = leaderSocket.accept()) {
+                MessageReader reader = new MessageReader(socket.getInputStream());
+                OutputStream output = socket.getOutputStream();
+                JSONObject request;
+                while ((request = reader.next()) != null) {
+                    leaderRequests.add(request);
+                    JSONObject response = MessageGenerator.chatRoomOwningServerMessage(
+                            request.get("roomid").toString(), leader.getServerId());
+                    tag(response, request.get("cid"));
+                    EncodedMessage.of(response).writeTo(output);
+                    output.flush();
+                }
+            } catch (Exception e) {
+                // the test closed the leader
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @AfterEach
+    void stopLeader() throws IOException {
+        PeerConnectionPool.getInstance().evict(leader.getServerId());
+        leaderSocket.close();
+        ServerConfig.getInstance().setPeerWireFormat(WireFormat.BINARY);
+    }
+
+    @Test
+    void replicatedRoomIsRoutedWithoutTheLeader() throws Exception {
+        CoordinationService service = new CoordinationServiceImpl();
+        store.addNewGlobalChatRoom("route-cached", "route-owner");
+        long hits = ServerMetrics.get("room.route.hits");
+        assertEquals("route-owner", service.getChatRoomOwningServerAsync("route-cached", 1000).getNow(null));
+        assertEquals("route-owner", service.getChatRoomOwningServer("route-cached", "alice"));
+        assertEquals(hits + 2, ServerMetrics.get("room.route.hits"));
+        assertTrue(leaderRequests.isEmpty());
+    }
+
+    @Test
+    void roomNotReplicatedYetIsRequestedFromTheLeader() throws Exception {
+        CoordinationService service = new CoordinationServiceImpl();
+        long misses = ServerMetrics.get("room.route.misses");
+        assertEquals(leader.getServerId(), service.getChatRoomOwningServerAsync("route-fresh", 1000).get(5, TimeUnit.SECONDS));
+        assertEquals(leader.getServerId(), service.getChatRoomOwningServer("route-fresh", "alice"));
+        assertEquals(misses + 2, ServerMetrics.get("room.route.misses"));
+        assertEquals(2, leaderRequests.size());
+        assertEquals("joinroom", leaderRequests.peek().get("type"));
+        assertEquals("route-fresh", leaderRequests.peek().get("roomid"));
+    }
+
+    @Test
+    void leaderAnswersAMissFromItsOwnRegistry() throws Exception {
+        CoordinationService service = new CoordinationServiceImpl();
+        store.setLeader(current);
+        long misses = ServerMetrics.get("room.route.misses");
+        assertNull(service.getChatRoomOwningServerAsync("route-unknown", 1000).getNow("pending"));
+        assertEquals(misses + 1, ServerMetrics.get("room.route.misses"));
+        assertTrue(leaderRequests.isEmpty());
+    }
+
+    /**
+     * Compares the time to route a join through the replicated registry with a round trip to the leader.
+     */
+    @Test
+    void cachedRouteAvoidsTheLeaderRoundTrip() throws Exception {
+        int joins = 2000;
+        CoordinationService service = new CoordinationServiceImpl();
+        store.addNewGlobalChatRoom("route-measured", "route-owner");
+        service.getChatRoomOwningServerAsync("route-warmup", 1000).get(5, TimeUnit.SECONDS);
+        long started = System.nanoTime();
+        for (int i = 0; i < joins; i++) {
+            service.getChatRoomOwningServer("route-measured", "alice");
+        }
+        long hit = (System.nanoTime() - started) / joins;
+        started = System.nanoTime();
+        for (int i = 0; i < joins; i++) {
+            service.getChatRoomOwningServer("route-missing-" + i, "alice");
+        }
+        long miss = (System.nanoTime() - started) / joins;
+        System.out.printf("room route over %d joins: hit %d ns, miss through the leader %d ns%n", joins, hit, miss);
+        assertEquals(joins + 1, leaderRequests.size());
+        assertTrue(hit < miss, "hit " + hit + " ns, miss " + miss + " ns");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void tag(JSONObject response, Object correlationId) {
+        response.put("cid", correlationId);
+    }
+}
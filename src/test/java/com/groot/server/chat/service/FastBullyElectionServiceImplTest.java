@@ -0,0 +1,102 @@
+package com.groot.server.chat.service;
+
+import com.groot.server.chat.config.DataStoreConfig;
+import com.groot.server.chat.config.ServerConfig;
+import com.groot.server.chat.connection.PeerConnectionPool;
+import com.groot.server.chat.constants.WireFormat;
+import com.groot.server.chat.database.ChatServer;
+import com.groot.server.chat.database.DataStore;
+import com.groot.server.chat.util.EncodedMessage;
+import com.groot.server.chat.util.MessageGenerator;
+import com.groot.server.chat.util.MessageReader;
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FastBullyElectionServiceImplTest {
+    private final DataStore store = DataStoreConfig.getInstance();
+    private final List<ServerSocket> sockets = new ArrayList<>();
+    private ChatServer leader;
+    private ChatServer follower;
+
+    /**
+     * Starts two neighbours of the recovering server, the leader never answers a globals request.
+     */
+    @BeforeEach
+    void startNeighbours() throws IOException {
+        ServerConfig.getInstance().setPeerWireFormat(WireFormat.JSON);
+        store.setCurrent(new ChatServer("s97", "127.0.0.1", 0, 0));
+        follower = startNeighbour("s98", true);
+        leader = startNeighbour("s99", false);
+    }
+
+    @AfterEach
+    void stopNeighbours() throws IOException {
+        PeerConnectionPool.getInstance().evict(leader.getServerId());
+        PeerConnectionPool.getInstance().evict(follower.getServerId());
+        for (ServerSocket socket : sockets) {
+            socket.close();
+        }
+        ServerConfig.getInstance().setPeerWireFormat(WireFormat.BINARY);
+    }
+
+    @Test
+    void recoveryRetrievesTheGlobalsFromTheNextServerWhenTheLeaderTimesOut() {
+        long started = System.currentTimeMillis();
+        new FastBullyElectionServiceImpl().recoverFromFailure();
+        long elapsed = System.currentTimeMillis() - started;
+        assertEquals(leader.getServerId(), store.getLeader().getServerId());
+        assertTrue(store.isGlobalClient("recovered-from-s98"));
+        assertTrue(elapsed < 5000, "recovery took " + elapsed + " ms");
+    }
+
+    private ChatServer startNeighbour(String serverId, boolean answersGlobals) throws IOException {
+        ServerSocket serverSocket = new ServerSocket(0);
+        sockets.add(serverSocket);
+        ChatServer server = new ChatServer(serverId, "127.0.0.1", 0, serverSocket.getLocalPort());
+        store.addNeighbour(server);
+        Thread acceptor = new Thread(() -> {
+            try (Socket socket = serverSocket.accept()) {
+                MessageReader reader = new MessageReader(socket.getInputStream());
+                OutputStream output = socket.getOutputStream();
+                JSONObject request;
+                while ((request = reader.next()) != null) {
+                    JSONObject response;
+                    if ("iamup".equals(request.get("type"))) {
+                        response = MessageGenerator.viewMessage(Collections.emptyList());
+                    } else if ("globals".equals(request.get("type")) && answersGlobals) {
+                        response = MessageGenerator.globalDataMessage(Collections.singletonList("recovered-from-" + serverId),
+                                Collections.emptyMap(), 1, 1);
+                    } else {
+                        continue;
+                    }
+                    tag(response, request.get("cid"));
+                    EncodedMessage.of(response).writeTo(output);
+                    output.flush();
+                }
+            } catch (Exception e) {
+                // the test closed the neighbour
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void tag(JSONObject response, Object correlationId) {
+        response.put("cid", correlationId);
+    }
+}
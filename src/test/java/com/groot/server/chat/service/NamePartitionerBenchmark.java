@@ -0,0 +1,70 @@
+package com.groot.server.chat.service;
+
+import com.groot.server.chat.config.DataStoreConfig;
+import com.groot.server.chat.database.ChatServer;
+import com.groot.server.chat.database.DataStore;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Measures the time to find the owner of a name on the hash ring for growing views, against copying the view into a
+ * sorted set for every lookup as the partitioner did before it kept the ring of the view.
+ * Run it after the test classes are compiled with
+ * {@code java -cp target/classes:target/test-classes:<dependencies> com.groot.server.chat.service.NamePartitionerBenchmark [lookups]}.
+ * Each figure is the median of five rounds taken after a warm up round.
+ */
+public class NamePartitionerBenchmark {
+    private static final int ROUNDS = 5;
+    private static volatile Object sink;
+
+    public static void main(String[] args) {
+        int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        DataStore store = DataStoreConfig.getInstance();
+        store.setCurrent(new ChatServer("s1", "127.0.0.1", 0, 0));
+        NamePartitioner partitioner = new ConsistentHashNamePartitioner();
+        String[] names = new String[4096];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "name" + i;
+        }
+        System.out.printf("%-8s %16s %22s%n", "servers", "owner ns", "owner + view copy ns");
+        int servers = 1;
+        for (int size : new int[]{1, 2, 4, 8, 16, 32, 64}) {
+            while (servers < size) {
+                servers++;
+                store.addView(new ChatServer("s" + servers, "127.0.0.1", 0, 0));
+            }
+            measure(store, partitioner, names, lookups / 10);
+            long[] row = measure(store, partitioner, names, lookups);
+            System.out.printf("%-8d %16d %22d%n", size, row[0], row[1]);
+        }
+    }
+
+    private static long[] measure(DataStore store, NamePartitioner partitioner, String[] names, int lookups) {
+        long[] cached = new long[ROUNDS];
+        long[] copied = new long[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                sink = partitioner.isOwner(names[i & (names.length - 1)]);
+            }
+            cached[round] = (System.nanoTime() - start) / lookups;
+            start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                Set<String> view = new TreeSet<>(store.getViews().keySet());
+                view.add(store.getCurrent().getServerId());
+                sink = view;
+                sink = partitioner.isOwner(names[i & (names.length - 1)]);
+            }
+            copied[round] = (System.nanoTime() - start) / lookups;
+        }
+        return new long[]{median(cached), median(copied)};
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
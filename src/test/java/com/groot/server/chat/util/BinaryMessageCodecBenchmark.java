@@ -0,0 +1,85 @@
+package com.groot.server.chat.util;
+
+import org.json.simple.JSONObject;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Measures the frame size and the encoding and decoding cost of every coordination message in both wire formats.
+ * Run it after the test classes are compiled with
+ * {@code java -cp target/classes:target/test-classes:<dependencies> com.groot.server.chat.util.BinaryMessageCodecBenchmark [iterations]}.
+ * Each figure is the median of five rounds taken after a warm up round.
+ */
+public class BinaryMessageCodecBenchmark {
+    private static final int ROUNDS = 5;
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        Map<String, JSONObject> messages = BinaryMessageCodecTest.messages();
+        warmUp(messages, iterations / 10);
+        System.out.printf("%-28s %10s %10s %12s %12s %12s %12s%n", "message", "json B", "binary B",
+                "json enc ns", "json dec ns", "bin enc ns", "bin dec ns");
+        long[] totals = new long[6];
+        for (Map.Entry<String, JSONObject> entry : messages.entrySet()) {
+            long[] row = measure(entry.getValue(), iterations);
+            for (int i = 0; i < row.length; i++) {
+                totals[i] += row[i];
+            }
+            print(entry.getKey(), row);
+        }
+        print("total", totals);
+    }
+
+    private static void warmUp(Map<String, JSONObject> messages, int iterations) throws Exception {
+        for (JSONObject message : messages.values()) {
+            measure(message, iterations);
+        }
+    }
+
+    private static long[] measure(JSONObject message, int iterations) throws Exception {
+        int jsonLength = EncodedMessage.of(message).length();
+        byte[] binary = BinaryMessageCodec.encode(message);
+        String text = message.toJSONString();
+        byte[] payload = Arrays.copyOfRange(binary, 4, binary.length);
+        long[] jsonEncode = new long[ROUNDS];
+        long[] jsonDecode = new long[ROUNDS];
+        long[] binaryEncode = new long[ROUNDS];
+        long[] binaryDecode = new long[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink = EncodedMessage.of(message);
+            }
+            jsonEncode[round] = (System.nanoTime() - start) / iterations;
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink = MessageReader.parse(text);
+            }
+            jsonDecode[round] = (System.nanoTime() - start) / iterations;
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink = BinaryMessageCodec.encode(message);
+            }
+            binaryEncode[round] = (System.nanoTime() - start) / iterations;
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink = BinaryMessageCodec.decode(payload);
+            }
+            binaryDecode[round] = (System.nanoTime() - start) / iterations;
+        }
+        return new long[]{jsonLength, binary.length, median(jsonEncode), median(jsonDecode), median(binaryEncode),
+                median(binaryDecode)};
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static void print(String name, long[] row) {
+        System.out.printf("%-28s %10d %10d %12d %12d %12d %12d%n", name, row[0], row[1], row[2], row[3], row[4], row[5]);
+    }
+}
@@ -0,0 +1,135 @@
+package com.groot.server.chat.util;
+
+import com.groot.server.chat.constants.GlobalChangeType;
+import com.groot.server.chat.database.GlobalChange;
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryMessageCodecTest {
+
+    /**
+     * @return one message of every kind built by the message generator, keyed by the generator method
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, JSONObject> messages() {
+        List<GlobalChange> changes = Arrays.asList(
+                new GlobalChange(41, GlobalChangeType.ADD_CLIENT, "alice", null),
+                new GlobalChange(42, GlobalChangeType.ADD_CHAT_ROOM, "lobby-2", "s2"),
+                new GlobalChange(-1, GlobalChangeType.REMOVE_CLIENT, "bob", null),
+                new GlobalChange(-1, GlobalChangeType.REMOVE_CHAT_ROOM, "jokes", null));
+        Map<String, String> chatRooms = new LinkedHashMap<>();
+        chatRooms.put("MainHall-s1", "s1");
+        chatRooms.put("MainHall-s2", "s2");
+        chatRooms.put("jokes", "s1");
+        Map<String, JSONObject> messages = new LinkedHashMap<>();
+        messages.put("chatRoomAvailability", MessageGenerator.chatRoomAvailabilityMessage("jokes", "true", "s1"));
+        messages.put("addGlobalChatRoom", MessageGenerator.addGlobalChatRoomMessage("jokes", "s1"));
+        messages.put("updateGlobalChatRooms", MessageGenerator.updateGlobalChatRoomsMessage("jokes", "s1", 1234, 3));
+        messages.put("clientAvailability", MessageGenerator.clientAvailabilityMessage("alice", "false", "s2"));
+        messages.put("addGlobalClient", MessageGenerator.addGlobalClientMessage("alice"));
+        messages.put("updateGlobalClients", MessageGenerator.updateGlobalClientsMessage("alice", 1235, 3));
+        messages.put("deleteRoomToServer", MessageGenerator.deleteRoomMessageToServer("jokes", "s1"));
+        messages.put("requestChatRoomOwningServer", MessageGenerator.requestChatRoomOwningServerMessage("jokes"));
+        messages.put("chatRoomOwningServer", MessageGenerator.chatRoomOwningServerMessage("jokes", "s1"));
+        messages.put("deleteClientToServer", MessageGenerator.deleteClientMessageToServer("alice", "s2"));
+        messages.put("iamUp", MessageGenerator.iamUpMessage("s1"));
+        messages.put("coordinator", MessageGenerator.coordinatorMessage("s3"));
+        messages.put("view", MessageGenerator.viewMessage(Arrays.asList("s1", "s2", "s3")));
+        messages.put("election", MessageGenerator.electionMessage());
+        messages.put("nomination", MessageGenerator.nominationMessage("s3"));
+        messages.put("answer", MessageGenerator.answerMessage());
+        messages.put("heartBeat", MessageGenerator.heartBeatMessage("s1"));
+        messages.put("heartBeatResponse", MessageGenerator.heartBeatResponse("s2"));
+        messages.put("requestGlobals", MessageGenerator.requestGlobalsMessage(1200, 3));
+        messages.put("globalData", MessageGenerator.globalDataMessage(Arrays.asList("alice", "bob", "carol"),
+                chatRooms, 1235, 3));
+        messages.put("globalChanges", MessageGenerator.globalChangesMessage(changes, 42, 3));
+        messages.put("globalDelta", MessageGenerator.globalDeltaMessage(changes, 42, 3));
+        messages.put("globalDeltaDeletions", MessageGenerator.globalDeltaMessage(changes.subList(2, 4), -1, 3));
+        messages.put("lease", MessageGenerator.leaseMessage(Arrays.asList("s1", "s2"), Arrays.asList(5000L, 4875L)));
+        messages.put("hello", MessageGenerator.helloMessage(Arrays.asList("BINARY", "JSON")));
+        messages.put("helloResponse", MessageGenerator.helloResponse("BINARY"));
+        messages.put("error", MessageGenerator.errorMessage("newerrequest"));
+        // requests over a coordination connection are tagged with their correlation ID
+        JSONObject tagged = MessageGenerator.requestChatRoomOwningServerMessage("jokes");
+        tagged.put("cid", 987654321L);
+        messages.put("taggedRequest", tagged);
+        return messages;
+    }
+
+    @Test
+    void jsonAndBinaryDecodeEveryMessageToEqualObjects() throws Exception {
+        for (Map.Entry<String, JSONObject> entry : messages().entrySet()) {
+            JSONObject json = decodeJson(entry.getValue());
+            JSONObject binary = decodeBinary(entry.getValue());
+            assertEquals(entry.getValue(), json, entry.getKey());
+            assertEquals(json, binary, entry.getKey());
+        }
+    }
+
+    @Test
+    void binaryFramesAreSmallerThanJsonFrames() {
+        for (Map.Entry<String, JSONObject> entry : messages().entrySet()) {
+            assertTrue(BinaryMessageCodec.encode(entry.getValue()).length < EncodedMessage.of(entry.getValue()).length(),
+                    entry.getKey());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void preservesValuesOutsideTheMessageGenerator() throws Exception {
+        JSONObject message = new JSONObject();
+        message.put("unknown key", "caf\u00e9 \u2615");
+        message.put("negative", -3L);
+        message.put("max", Long.MAX_VALUE);
+        message.put("ratio", 0.25);
+        message.put("flag", false);
+        message.put("empty", Collections.emptyList());
+        message.put("missing", null);
+        assertEquals(message, decodeBinary(message));
+    }
+
+    @Test
+    void readsConsecutiveFramesAndTheEndOfTheStream() throws Exception {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        BinaryMessageCodec.send(stream, MessageGenerator.electionMessage());
+        BinaryMessageCodec.send(stream, MessageGenerator.coordinatorMessage("s3"));
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(stream.toByteArray()));
+        assertEquals(MessageGenerator.electionMessage(), BinaryMessageCodec.read(input));
+        assertEquals(MessageGenerator.coordinatorMessage("s3"), BinaryMessageCodec.read(input));
+        assertNull(BinaryMessageCodec.read(input));
+    }
+
+    @Test
+    void rejectsTruncatedFrames() {
+        byte[] frame = BinaryMessageCodec.encode(MessageGenerator.viewMessage(Arrays.asList("s1", "s2")));
+        byte[] truncated = Arrays.copyOfRange(frame, 4, frame.length - 1);
+        assertThrows(IOException.class, () -> BinaryMessageCodec.decode(truncated));
+    }
+
+    static JSONObject decodeJson(JSONObject message) throws Exception {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        EncodedMessage.of(message).writeTo(stream);
+        return new MessageReader(new ByteArrayInputStream(stream.toByteArray())).next();
+    }
+
+    static JSONObject decodeBinary(JSONObject message) throws Exception {
+        byte[] frame = BinaryMessageCodec.encode(message);
+        return BinaryMessageCodec.read(new DataInputStream(new ByteArrayInputStream(frame)));
+    }
+}
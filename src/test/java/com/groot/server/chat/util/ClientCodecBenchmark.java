@@ -0,0 +1,152 @@
+package com.groot.server.chat.util;
+
+import com.groot.server.chat.constants.MessageType;
+import org.json.simple.JSONObject;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Measures the time and the bytes allocated to decode the client requests and encode the client responses with the
+ * streaming codec, against parsing them into a JSONObject and encoding a JSONObject as the client protocol did before.
+ * Run it after the test classes are compiled with
+ * {@code java -cp target/classes:target/test-classes:<dependencies> com.groot.server.chat.util.ClientCodecBenchmark [iterations]}.
+ * Each figure is the median of five rounds taken after a warm up round.
+ */
+public class ClientCodecBenchmark {
+    private static final int ROUNDS = 5;
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        System.out.printf("%-14s %12s %12s %14s %14s%n", "request", "json ns", "stream ns", "json B/op", "stream B/op");
+        for (Map.Entry<String, byte[]> entry : requests().entrySet()) {
+            byte[] frame = entry.getValue();
+            measureDecode(frame, iterations / 10);
+            print(entry.getKey(), measureDecode(frame, iterations));
+        }
+        System.out.printf("%n%-14s %12s %12s %14s %14s%n", "response", "json ns", "stream ns", "json B/op", "stream B/op");
+        for (String response : new String[]{"message", "roomchange", "roomcontents"}) {
+            measureEncode(response, iterations / 10);
+            print(response, measureEncode(response, iterations));
+        }
+    }
+
+    private static Map<String, byte[]> requests() {
+        Map<String, byte[]> requests = new LinkedHashMap<>();
+        requests.put("message", frame("{\"type\":\"message\",\"content\":\"a chat line of a typical length for the room\"}"));
+        requests.put("newidentity", frame("{\"type\":\"newidentity\",\"identity\":\"Adel\"}"));
+        requests.put("joinroom", frame("{\"type\":\"joinroom\",\"roomid\":\"comp-lab\"}"));
+        requests.put("movejoin", frame("{\"type\":\"movejoin\",\"former\":\"MainHall-s1\",\"roomid\":\"comp-lab\",\"identity\":\"Adel\"}"));
+        requests.put("who", frame("{\"type\":\"who\"}"));
+        return requests;
+    }
+
+    private static byte[] frame(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long[] measureDecode(byte[] frame, int iterations) throws Exception {
+        ClientRequest request = new ClientRequest();
+        long[] json = new long[ROUNDS];
+        long[] stream = new long[ROUNDS];
+        long[] jsonBytes = new long[ROUNDS];
+        long[] streamBytes = new long[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                JSONObject parsed = MessageReader.parse(new String(frame, StandardCharsets.UTF_8));
+                sink = MessageType.get(parsed.get("type").toString());
+            }
+            json[round] = (System.nanoTime() - start) / iterations;
+            jsonBytes[round] = (allocatedBytes() - allocated) / iterations;
+            allocated = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                ClientRequestDecoder.decode(frame, 0, frame.length, request);
+                sink = request.getType();
+            }
+            stream[round] = (System.nanoTime() - start) / iterations;
+            streamBytes[round] = (allocatedBytes() - allocated) / iterations;
+        }
+        return new long[]{median(json), median(stream), median(jsonBytes), median(streamBytes)};
+    }
+
+    private static long[] measureEncode(String response, int iterations) {
+        long[] json = new long[ROUNDS];
+        long[] stream = new long[ROUNDS];
+        long[] jsonBytes = new long[ROUNDS];
+        long[] streamBytes = new long[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink = EncodedMessage.of(jsonResponse(response));
+            }
+            json[round] = (System.nanoTime() - start) / iterations;
+            jsonBytes[round] = (allocatedBytes() - allocated) / iterations;
+            allocated = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink = streamResponse(response);
+            }
+            stream[round] = (System.nanoTime() - start) / iterations;
+            streamBytes[round] = (allocatedBytes() - allocated) / iterations;
+        }
+        return new long[]{median(json), median(stream), median(jsonBytes), median(streamBytes)};
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject jsonResponse(String response) {
+        JSONObject message = new JSONObject();
+        message.put("type", response);
+        switch (response) {
+            case "message":
+                message.put("identity", "Adel");
+                message.put("content", "a chat line of a typical length for the room");
+                break;
+            case "roomchange":
+                message.put("identity", "Adel");
+                message.put("former", "MainHall-s1");
+                message.put("roomid", "comp-lab");
+                break;
+            default:
+                message.put("roomid", "comp-lab");
+                message.put("owner", "Adel");
+                message.put("identities", Arrays.asList("Adel", "Chenhao", "Maria", "Nikos"));
+                break;
+        }
+        return message;
+    }
+
+    private static EncodedMessage streamResponse(String response) {
+        switch (response) {
+            case "message":
+                return ClientMessageEncoder.message("Adel", "a chat line of a typical length for the room");
+            case "roomchange":
+                return ClientMessageEncoder.roomChangeMessage("Adel", "MainHall-s1", "comp-lab");
+            default:
+                return ClientMessageEncoder.roomContentsMessage("comp-lab", "Adel",
+                        Arrays.asList("Adel", "Chenhao", "Maria", "Nikos"));
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static void print(String name, long[] row) {
+        System.out.printf("%-14s %12d %12d %14d %14d%n", name, row[0], row[1], row[2], row[3]);
+    }
+}
@@ -0,0 +1,66 @@
+package com.groot.server.chat.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FrameDecoderTest {
+
+    @Test
+    void completesFramesSplitAcrossReads() throws Exception {
+        FrameDecoder decoder = new FrameDecoder();
+        List<String> frames = new ArrayList<>();
+        decode(decoder, "{\"type\":\"li", frames);
+        decode(decoder, "st\"}\r\n{\"type\":\"who\"}\n\n", frames);
+        assertEquals(Arrays.asList("{\"type\":\"list\"}", "{\"type\":\"who\"}"), frames);
+    }
+
+    @Test
+    void discardsTheRestOfAnOversizedFrame() throws Exception {
+        FrameDecoder decoder = new FrameDecoder();
+        List<String> frames = new ArrayList<>();
+        byte[] oversized = new byte[64 * 1024 + 1];
+        Arrays.fill(oversized, (byte) 'a');
+        assertThrows(FrameTooLongException.class, () -> decoder.decode(oversized, 0, oversized.length, frames::add));
+        decode(decoder, "tail of the oversized frame\n{\"type\":\"list\"}\n", frames);
+        assertEquals(Arrays.asList("{\"type\":\"list\"}"), frames);
+    }
+
+    @Test
+    void completesFramesSplitAcrossBuffers() throws Exception {
+        FrameDecoder decoder = new FrameDecoder();
+        List<String> frames = new ArrayList<>();
+        decodeBuffer(decoder, "{\"type\":\"jo", frames);
+        decodeBuffer(decoder, "in\"}\r\n{\"type\":\"who\"}\n", frames);
+        assertEquals(Arrays.asList("{\"type\":\"join\"}", "{\"type\":\"who\"}"), frames);
+    }
+
+    @Test
+    void discardsTheRestOfAnOversizedFrameInABuffer() throws Exception {
+        FrameDecoder decoder = new FrameDecoder();
+        List<String> frames = new ArrayList<>();
+        byte[] oversized = new byte[64 * 1024 + 1];
+        Arrays.fill(oversized, (byte) 'a');
+        assertThrows(FrameTooLongException.class, () -> decoder.decode(ByteBuffer.wrap(oversized),
+                (frame, length) -> frames.add(new String(frame, 0, length, StandardCharsets.UTF_8))));
+        decodeBuffer(decoder, "tail of the oversized frame\n{\"type\":\"list\"}\n", frames);
+        assertEquals(Arrays.asList("{\"type\":\"list\"}"), frames);
+    }
+
+    private static void decodeBuffer(FrameDecoder decoder, String text, List<String> frames) throws Exception {
+        decoder.decode(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)),
+                (frame, length) -> frames.add(new String(frame, 0, length, StandardCharsets.UTF_8)));
+    }
+
+    private static void decode(FrameDecoder decoder, String text, List<String> frames) throws Exception {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        decoder.decode(bytes, 0, bytes.length, frames::add);
+    }
+}